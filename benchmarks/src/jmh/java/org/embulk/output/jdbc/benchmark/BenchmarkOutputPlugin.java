@@ -0,0 +1,75 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+import org.embulk.config.ConfigSource;
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin;
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.JdbcOutputConnector;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.MergeConfig;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+
+/**
+ * Builds {@link AbstractJdbcOutputPlugin.PluginPageOutput} in the same way as
+ * {@link AbstractJdbcOutputPlugin#open}, but without a database and with a given {@link BatchInsert}.
+ */
+public class BenchmarkOutputPlugin
+        extends AbstractJdbcOutputPlugin
+{
+    public static final String TABLE = "embulk_benchmark";
+
+    public PluginPageOutput newPageOutput(Schema schema, BatchInsert batch) throws SQLException
+    {
+        PluginTask task = newTask();
+        List<ColumnSetter> columnSetters = newColumnSetters(schema, batch);
+        return new PluginPageOutput(new PageReader(schema), batch, columnSetters, task.getBatchSize(), task);
+    }
+
+    /**
+     * Creates ColumnSetters for a new table of the schema, and prepares the BatchInsert for the table.
+     */
+    public List<ColumnSetter> newColumnSetters(Schema schema, BatchInsert batch) throws SQLException
+    {
+        PluginTask task = newTask();
+        JdbcSchema targetTableSchema = newJdbcSchemaForNewTable(schema);
+        List<ColumnSetter> columnSetters = newColumnSetters(
+                newColumnSetterFactory(batch, task.getDefaultTimeZone()),
+                targetTableSchema, schema,
+                task.getColumnOptions());
+        batch.prepare(new TableIdentifier(null, null, TABLE), targetTableSchema);
+        return columnSetters;
+    }
+
+    private PluginTask newTask()
+    {
+        ConfigSource config = CONFIG_MAPPER_FACTORY.newConfigSource()
+                .set("table", TABLE)
+                .set("mode", "insert_direct");
+        return CONFIG_MAPPER.map(config, PluginTask.class);
+    }
+
+    @Override
+    protected Features getFeatures(PluginTask task)
+    {
+        return new Features();
+    }
+
+    @Override
+    protected JdbcOutputConnector getConnector(PluginTask task, boolean retryableMetadataOperation)
+    {
+        return NoopJdbc.newConnector();
+    }
+
+    @Override
+    protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
+    {
+        throw new UnsupportedOperationException("BatchInsert is given by each benchmark.");
+    }
+}
@@ -0,0 +1,45 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.postgresql.AbstractPostgreSQLCopyBatchInsert;
+
+/**
+ * Writes COPY text files as PostgreSQLCopyBatchInsert does, and deletes them instead of sending them.
+ */
+public class DiscardingPostgreSQLCopyBatchInsert
+        extends AbstractPostgreSQLCopyBatchInsert
+{
+    public DiscardingPostgreSQLCopyBatchInsert() throws IOException
+    {
+        super();
+    }
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+    {
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        File file = closeCurrentFile();  // flush buffered data in writer
+        file.delete();
+        batchRows = 0;
+        openNewFile();
+    }
+
+    @Override
+    public void finish()
+    {
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        closeCurrentFile().delete();
+    }
+}
@@ -0,0 +1,47 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.redshift.RedshiftCopyBatchInsert;
+
+/**
+ * Writes gzipped COPY files as RedshiftCopyBatchInsert does, and deletes them instead of uploading them.
+ *
+ * The constructor of RedshiftCopyBatchInsert tries to get the region of the bucket. It fails with
+ * the dummy credentials and is only logged as a warning.
+ */
+public class DiscardingRedshiftCopyBatchInsert
+        extends RedshiftCopyBatchInsert
+{
+    public DiscardingRedshiftCopyBatchInsert() throws IOException, SQLException
+    {
+        super(NoopJdbc.newConnector(),
+                new AWSStaticCredentialsProvider(new BasicAWSCredentials("dummy", "dummy")),
+                "embulk-benchmark", "", null, false, 1, null, null);
+    }
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+    {
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        File file = closeCurrentFile();  // flush buffered data in writer
+        file.delete();
+        batchRows = 0;
+        openNewFile();
+    }
+
+    @Override
+    public void finish()
+    {
+    }
+}
@@ -0,0 +1,128 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Calendar;
+
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+
+/**
+ * BatchInsert which only counts rows, to measure PageReader and ColumnSetter alone.
+ */
+public class NoopBatchInsert
+        implements BatchInsert
+{
+    private int batchWeight;
+    private int batchRows;
+
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+    {
+    }
+
+    public int getBatchWeight()
+    {
+        return batchWeight;
+    }
+
+    public void add()
+    {
+        batchRows++;
+        batchWeight += 32;
+    }
+
+    public void close()
+    {
+    }
+
+    public void flush()
+    {
+        batchRows = 0;
+        batchWeight = 0;
+    }
+
+    public int[] getLastUpdateCounts()
+    {
+        return new int[]{};
+    }
+
+    public void finish()
+    {
+    }
+
+    public void setNull(int sqlType)
+    {
+        batchWeight += 4;
+    }
+
+    public void setBoolean(boolean v)
+    {
+        batchWeight += 5;
+    }
+
+    public void setByte(byte v)
+    {
+        batchWeight += 5;
+    }
+
+    public void setShort(short v)
+    {
+        batchWeight += 6;
+    }
+
+    public void setInt(int v)
+    {
+        batchWeight += 8;
+    }
+
+    public void setLong(long v)
+    {
+        batchWeight += 12;
+    }
+
+    public void setFloat(float v)
+    {
+        batchWeight += 8;
+    }
+
+    public void setDouble(double v)
+    {
+        batchWeight += 12;
+    }
+
+    public void setBigDecimal(BigDecimal v)
+    {
+        batchWeight += 12;
+    }
+
+    public void setString(String v)
+    {
+        batchWeight += v.length() * 2 + 8;
+    }
+
+    public void setNString(String v)
+    {
+        batchWeight += v.length() * 2 + 8;
+    }
+
+    public void setBytes(byte[] v)
+    {
+        batchWeight += v.length + 8;
+    }
+
+    public void setSqlDate(Instant v, Calendar cal)
+    {
+        batchWeight += 36;
+    }
+
+    public void setSqlTime(Instant v, Calendar cal)
+    {
+        batchWeight += 36;
+    }
+
+    public void setSqlTimestamp(Instant v, Calendar cal)
+    {
+        batchWeight += 36;
+    }
+}
@@ -0,0 +1,104 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+
+import org.embulk.output.jdbc.JdbcOutputConnection;
+import org.embulk.output.jdbc.JdbcOutputConnector;
+
+/**
+ * JDBC objects which accept everything and do nothing, so that a benchmark measures
+ * only the conversion layer in front of the driver.
+ */
+public class NoopJdbc
+{
+    private NoopJdbc()
+    {
+    }
+
+    public static JdbcOutputConnector newConnector()
+    {
+        return autoCommit -> new JdbcOutputConnection(newConnection(), null);
+    }
+
+    public static Connection newConnection()
+    {
+        final DatabaseMetaData metaData = newProxy(DatabaseMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getIdentifierQuoteString":
+                return "\"";
+            case "getDatabaseProductName":
+                return "Noop";
+            default:
+                return defaultValue(method);
+            }
+        });
+
+        return newProxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getMetaData":
+                return metaData;
+            case "prepareStatement":
+                return newPreparedStatement();
+            case "getTransactionIsolation":
+                return Connection.TRANSACTION_READ_COMMITTED;
+            default:
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static PreparedStatement newPreparedStatement()
+    {
+        final int[] batchRows = new int[1];
+        return newProxy(PreparedStatement.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "addBatch":
+                batchRows[0]++;
+                return null;
+            case "clearBatch":
+                batchRows[0] = 0;
+                return null;
+            case "executeBatch":
+                int[] updateCounts = new int[batchRows[0]];
+                Arrays.fill(updateCounts, 1);
+                return updateCounts;
+            default:
+                return defaultValue(method);
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> iface, InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(NoopJdbc.class.getClassLoader(), new Class<?>[] { iface }, handler);
+    }
+
+    private static Object defaultValue(Method method)
+    {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == float.class) {
+            return 0.0f;
+        } else if (type == double.class) {
+            return 0.0;
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.PluginPageOutput;
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.StandardBatchInsert;
+import org.embulk.spi.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the per-row cost of PluginPageOutput.add(Page), that is
+ * PageReader -> RowWriter -> ColumnSetter -> BatchInsert.
+ *
+ * One operation is one row. Run with the gc profiler to see the allocation rate per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PageOutputBenchmark
+{
+    static final int ROWS = 10000;
+
+    @Param({"wide_string", "numeric", "timestamp", "json", "wide_100"})
+    public String schema;
+
+    @Param({"noop", "standard", "postgresql_copy", "redshift_copy"})
+    public String batchInsert;
+
+    private SyntheticPages pages;
+    private PluginPageOutput output;
+    private List<Page> input;
+
+    @Setup(Level.Trial)
+    public void setUpOutput() throws IOException, SQLException
+    {
+        pages = new SyntheticPages(schema);
+        output = new BenchmarkOutputPlugin().newPageOutput(pages.getSchema(), newBatchInsert(batchInsert));
+    }
+
+    // A Page is released once it is read, so pages are built for each invocation.
+    @Setup(Level.Invocation)
+    public void setUpPages()
+    {
+        input = pages.build(ROWS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownOutput()
+    {
+        try {
+            output.finish();
+        } finally {
+            output.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void add()
+    {
+        for (Page page : input) {
+            output.add(page);
+        }
+    }
+
+    static BatchInsert newBatchInsert(String name) throws IOException, SQLException
+    {
+        switch (name) {
+        case "noop":
+            return new NoopBatchInsert();
+        case "standard":
+            return new StandardBatchInsert(NoopJdbc.newConnector(), Optional.empty());
+        case "postgresql_copy":
+            return new DiscardingPostgreSQLCopyBatchInsert();
+        case "redshift_copy":
+            return new DiscardingRedshiftCopyBatchInsert();
+        default:
+            throw new IllegalArgumentException("Unknown BatchInsert: " + name);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.PageReaderRecord;
+import org.embulk.output.jdbc.RecordCapture;
+import org.embulk.output.jdbc.RetryCaptureMode;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.output.jdbc.setter.ColumnSetterVisitor;
+import org.embulk.output.jdbc.setter.RowWriter;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares conversion of a row by ColumnSetterVisitor per column ("visitor") and by RowWriter ("row_writer"),
+ * writing to NoopBatchInsert so that only the conversion is measured.
+ *
+ * One operation is one row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RowWriterBenchmark
+{
+    @Param({"wide_100", "numeric"})
+    public String schema;
+
+    @Param({"visitor", "row_writer"})
+    public String writer;
+
+    private SyntheticPages pages;
+    private List<Column> columns;
+    private PageReaderRecord record;
+    private BatchInsert batch;
+    private List<ColumnSetterVisitor> visitors;
+    private RowWriter rowWriter;
+    private List<Page> input;
+
+    @Setup(Level.Trial)
+    public void setUpWriter() throws IOException, SQLException
+    {
+        pages = new SyntheticPages(schema);
+        Schema schema = pages.getSchema();
+        columns = schema.getColumns();
+        record = new PageReaderRecord(new PageReader(schema), new RecordCapture(columns, RetryCaptureMode.OFF, 0));
+        batch = new NoopBatchInsert();
+
+        List<ColumnSetter> columnSetters = new BenchmarkOutputPlugin().newColumnSetters(schema, batch);
+        visitors = new ArrayList<>();
+        for (ColumnSetter setter : columnSetters) {
+            visitors.add(new ColumnSetterVisitor(record, setter));
+        }
+        rowWriter = new RowWriter(columns, columnSetters);
+    }
+
+    // A Page is released once it is read, so pages are built for each invocation.
+    @Setup(Level.Invocation)
+    public void setUpPages()
+    {
+        input = pages.build(PageOutputBenchmark.ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PageOutputBenchmark.ROWS)
+    public void write() throws IOException, SQLException
+    {
+        boolean useVisitor = writer.equals("visitor");
+        for (Page page : input) {
+            record.setPage(page);
+            while (record.nextRecord()) {
+                if (useVisitor) {
+                    for (int i = 0; i < visitors.size(); i++) {
+                        columns.get(i).visit(visitors.get(i));
+                    }
+                } else {
+                    rowWriter.write(record);
+                }
+                batch.add();
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+/**
+ * Synthetic input pages. Values are generated from a fixed seed so that every run reads the same data.
+ */
+public class SyntheticPages
+{
+    private static final int PAGE_SIZE = 32 * 1024;  // same as the default page size of Embulk
+
+    private static final BufferAllocator ALLOCATOR = new BufferAllocator()
+    {
+        @Override
+        public Buffer allocate()
+        {
+            return allocate(PAGE_SIZE);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public Buffer allocate(int minimumCapacity)
+        {
+            return Buffer.allocate(Math.max(PAGE_SIZE, minimumCapacity));
+        }
+    };
+
+    private final Schema schema;
+    private final Random random = new Random(0);
+
+    public SyntheticPages(String kind)
+    {
+        this.schema = newSchema(kind);
+    }
+
+    public Schema getSchema()
+    {
+        return schema;
+    }
+
+    public static Schema newSchema(String kind)
+    {
+        Schema.Builder builder = Schema.builder();
+        switch (kind) {
+        case "wide_string":
+            for (int i = 0; i < 20; i++) {
+                builder.add("s" + i, Types.STRING);
+            }
+            break;
+        case "numeric":
+            builder.add("id", Types.LONG);
+            for (int i = 0; i < 6; i++) {
+                builder.add("l" + i, Types.LONG);
+            }
+            for (int i = 0; i < 6; i++) {
+                builder.add("d" + i, Types.DOUBLE);
+            }
+            builder.add("b0", Types.BOOLEAN);
+            builder.add("b1", Types.BOOLEAN);
+            break;
+        case "timestamp":
+            builder.add("id", Types.LONG);
+            for (int i = 0; i < 8; i++) {
+                builder.add("t" + i, Types.TIMESTAMP);
+            }
+            break;
+        case "wide_100":
+            // 100 columns of all types but json
+            builder.add("id", Types.LONG);
+            for (int i = 1; i < 100; i++) {
+                switch (i % 5) {
+                case 0:
+                    builder.add("b" + i, Types.BOOLEAN);
+                    break;
+                case 1:
+                    builder.add("l" + i, Types.LONG);
+                    break;
+                case 2:
+                    builder.add("d" + i, Types.DOUBLE);
+                    break;
+                case 3:
+                    builder.add("s" + i, Types.STRING);
+                    break;
+                default:
+                    builder.add("t" + i, Types.TIMESTAMP);
+                    break;
+                }
+            }
+            break;
+        case "json":
+            builder.add("id", Types.LONG);
+            builder.add("name", Types.STRING);
+            builder.add("j0", Types.JSON);
+            builder.add("j1", Types.JSON);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown schema: " + kind);
+        }
+        return builder.build();
+    }
+
+    @SuppressWarnings("deprecation")
+    public List<Page> build(int rows)
+    {
+        final List<Page> pages = new ArrayList<>();
+        PageOutput output = new PageOutput()
+        {
+            @Override
+            public void add(Page page)
+            {
+                pages.add(page);
+            }
+
+            @Override
+            public void finish()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+
+        try (PageBuilder builder = new PageBuilder(ALLOCATOR, schema, output)) {
+            for (int row = 0; row < rows; row++) {
+                for (Column column : schema.getColumns()) {
+                    setValue(builder, column, row);
+                }
+                builder.addRecord();
+            }
+            builder.finish();
+        }
+        return pages;
+    }
+
+    private void setValue(PageBuilder builder, Column column, int row)
+    {
+        if (column.getIndex() > 0 && random.nextInt(50) == 0) {
+            builder.setNull(column);
+            return;
+        }
+
+        String type = column.getType().getName();
+        switch (type) {
+        case "boolean":
+            builder.setBoolean(column, random.nextBoolean());
+            break;
+        case "long":
+            builder.setLong(column, column.getIndex() == 0 ? row : random.nextLong());
+            break;
+        case "double":
+            builder.setDouble(column, random.nextDouble() * 1000000);
+            break;
+        case "string":
+            builder.setString(column, newString(8 + random.nextInt(48)));
+            break;
+        case "timestamp":
+            // 2000-01-01 to 2030-01-01
+            builder.setTimestamp(column, Instant.ofEpochSecond(946684800L + random.nextInt(946684800), random.nextInt(1000000) * 1000));
+            break;
+        case "json":
+            builder.setJson(column, newJson(row));
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown type: " + type);
+        }
+    }
+
+    private String newString(int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int r = random.nextInt(100);
+            if (r == 0) {
+                // characters escaped by COPY
+                sb.append("\t\n\\".charAt(random.nextInt(3)));
+            } else if (r < 5) {
+                sb.append((char) ('あ' + random.nextInt(80)));  // multi-byte characters
+            } else {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return sb.toString();
+    }
+
+    private Value newJson(int row)
+    {
+        return ValueFactory.newMap(
+                ValueFactory.newString("id"), ValueFactory.newInteger(row),
+                ValueFactory.newString("name"), ValueFactory.newString(newString(16)),
+                ValueFactory.newString("tags"), ValueFactory.newArray(
+                        ValueFactory.newString(newString(8)),
+                        ValueFactory.newString(newString(8))),
+                ValueFactory.newString("score"), ValueFactory.newFloat(random.nextDouble()));
+    }
+}
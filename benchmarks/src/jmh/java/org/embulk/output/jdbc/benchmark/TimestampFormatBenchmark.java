@@ -0,0 +1,85 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.CachedTimestampFormatter;
+import org.embulk.util.timestamp.TimestampFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares formatting timestamps by TimestampFormatter ("formatter") and by CachedTimestampFormatter ("cached")
+ * with the default timestamp_format, for timestamps of events in the same second ("events")
+ * and timestamps which differ by minutes ("sparse").
+ *
+ * One operation is one timestamp.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimestampFormatBenchmark
+{
+    private static final int TIMESTAMPS = 4096;
+    private static final String FORMAT = "%Y-%m-%d %H:%M:%S.%6N";
+
+    @Param({"formatter", "cached"})
+    public String formatter;
+
+    @Param({"events", "sparse"})
+    public String timestamps;
+
+    @Param({"UTC", "America/New_York"})
+    public String zone;
+
+    private TimestampFormatter timestampFormatter;
+    private CachedTimestampFormatter cachedFormatter;
+    private Instant[] input;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        ZoneId zoneId = ZoneId.of(zone);
+        timestampFormatter = TimestampFormatter.builder(FORMAT, true).setDefaultZoneId(zoneId).build();
+        cachedFormatter = CachedTimestampFormatter.of(FORMAT, zoneId, timestampFormatter);
+
+        Random random = new Random(1);
+        input = new Instant[TIMESTAMPS];
+        long epochSecond = Instant.parse("2020-03-07T00:00:00Z").getEpochSecond();
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            if (timestamps.equals("events")) {
+                // about 100 events per second
+                epochSecond += random.nextInt(100) == 0 ? 1 : 0;
+            } else {
+                epochSecond += random.nextInt(600);
+            }
+            input[i] = Instant.ofEpochSecond(epochSecond, random.nextInt(1000000000));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TIMESTAMPS)
+    public void format(Blackhole blackhole)
+    {
+        if (formatter.equals("cached")) {
+            for (Instant v : input) {
+                blackhole.consume(cachedFormatter.format(v));
+            }
+        } else {
+            for (Instant v : input) {
+                blackhole.consume(timestampFormatter.format(v));
+            }
+        }
+    }
+}
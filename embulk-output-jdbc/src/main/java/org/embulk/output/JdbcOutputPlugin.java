@@ -9,6 +9,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Optional;
+import org.embulk.config.ConfigException;
+import org.embulk.spi.Schema;
 import org.embulk.util.config.Config;
 import org.embulk.util.config.ConfigDefault;
 import org.embulk.output.jdbc.*;
@@ -43,6 +45,16 @@ public class JdbcOutputPlugin
         @Config("max_table_name_length")
         @ConfigDefault("30")
         public int getMaxTableNameLength();
+
+        @Config("insert_method")
+        @ConfigDefault("\"normal\"")
+        public InsertMethod getInsertMethod();
+
+        @Config("multi_values_rows")
+        @ConfigDefault("256")
+        public int getMultiValuesRows();
+
+        public void setMultiValuesRows(int rows);
     }
 
     @Override
@@ -86,6 +98,29 @@ public class JdbcOutputPlugin
                 t.getSchema().orElse(null));
     }
 
+    @Override
+    protected void doBegin(JdbcOutputConnection con,
+            PluginTask task, final Schema schema, int taskCount, boolean resuming) throws SQLException
+    {
+        GenericPluginTask t = (GenericPluginTask) task;
+        if (t.getMultiValuesRows() < 1) {
+            throw new ConfigException("'multi_values_rows' must be positive.");
+        }
+
+        super.doBegin(con, task, schema, taskCount, resuming);
+
+        if (t.getInsertMethod() == InsertMethod.MULTI_VALUES) {
+            // rows x columns of a statement must not exceed the number of parameters the database accepts
+            int columnCount = JdbcSchema.filterSkipColumns(task.getTargetTableSchema()).getCount();
+            int maxRows = Math.max(1, con.getMaxParameterCount() / columnCount);
+            if (t.getMultiValuesRows() > maxRows) {
+                logger.info("'multi_values_rows' is limited to {} by the maximum number of parameters ({}) for {} columns",
+                        maxRows, con.getMaxParameterCount(), columnCount);
+                t.setMultiValuesRows(maxRows);
+            }
+        }
+    }
+
     private static class GenericOutputConnector
             implements JdbcOutputConnector
     {
@@ -131,6 +166,11 @@ public class JdbcOutputPlugin
     @Override
     protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
     {
+        GenericPluginTask t = (GenericPluginTask) task;
+        if (t.getInsertMethod() == InsertMethod.MULTI_VALUES) {
+            // merge modes are not supported by this plugin
+            return new MultiValuesBatchInsert(getConnector(task, true), t.getMultiValuesRows());
+        }
         return new StandardBatchInsert(getConnector(task, true), mergeConfig);
     }
 }
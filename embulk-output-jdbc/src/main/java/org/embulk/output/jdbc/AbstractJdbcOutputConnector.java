@@ -1,23 +1,76 @@
 package org.embulk.output.jdbc;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
 
 public abstract class AbstractJdbcOutputConnector implements JdbcOutputConnector
 {
     private final Optional<TransactionIsolation> transactionIsolation;
+    private ConnectionPool pool;
 
     public AbstractJdbcOutputConnector(Optional<TransactionIsolation> transactionIsolation)
     {
         this.transactionIsolation = transactionIsolation;
     }
 
+    /**
+     * Reuses connections through the pool shared in the JVM, if this connector supports it.
+     */
+    public AbstractJdbcOutputConnector useConnectionPool(int maxIdleConnections, long idleTimeoutMillis)
+    {
+        String key = getConnectionPoolKey();
+        if (key != null) {
+            this.pool = ConnectionPool.get(getClass().getName() + "\n" + key, maxIdleConnections, idleTimeoutMillis);
+        }
+        return this;
+    }
+
     public JdbcOutputConnection connect(boolean autoCommit) throws SQLException
     {
-        JdbcOutputConnection connection = connect();
+        JdbcOutputConnection connection = pool != null ? pool.borrow(this::connect) : connect();
         connection.initialize(autoCommit, transactionIsolation);
         return connection;
     }
 
     protected abstract JdbcOutputConnection connect() throws SQLException;
+
+    /**
+     * Returns the key of connections which are interchangeable, or null if connections can't be pooled.
+     */
+    protected String getConnectionPoolKey()
+    {
+        return null;
+    }
+
+    /**
+     * Builds the key from parameters of connections. The key is a digest of them, so that passwords in them
+     * are not kept in memory as plain text.
+     */
+    protected static String buildConnectionPoolKey(Object... parameters)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Object parameter : parameters) {
+            if (parameter instanceof Properties) {
+                // Properties doesn't keep order
+                parameter = new TreeMap<>((Properties) parameter);
+            }
+            sb.append(parameter).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is available on every Java platform
+            throw new IllegalStateException(ex);
+        }
+    }
 }
@@ -4,13 +4,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.io.File;
 import java.io.FileFilter;
@@ -24,11 +30,11 @@ import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.sql.Statement;
 import java.sql.Types;
 import java.sql.ResultSet;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.DateTimeException;
 import java.time.ZoneId;
 import java.util.Optional;
@@ -55,7 +61,9 @@ import org.embulk.spi.Page;
 import org.embulk.spi.PageReader;
 import org.embulk.output.jdbc.setter.ColumnSetter;
 import org.embulk.output.jdbc.setter.ColumnSetterFactory;
-import org.embulk.output.jdbc.setter.ColumnSetterVisitor;
+import org.embulk.output.jdbc.jfr.EventScope;
+import org.embulk.output.jdbc.jfr.JdbcOutputEvents;
+import org.embulk.output.jdbc.setter.RowWriter;
 import org.embulk.util.retryhelper.RetryExecutor;
 import org.embulk.util.retryhelper.RetryGiveupException;
 import org.embulk.util.retryhelper.Retryable;
@@ -135,6 +143,98 @@ public abstract class AbstractJdbcOutputPlugin
         @ConfigDefault("1800000") // 30 * 60 * 1000
         public int getMaxRetryWait();
 
+        @Config("retry_capture")
+        @ConfigDefault("null")
+        public Optional<RetryCaptureMode> getRetryCapture();
+
+        @Config("retry_capture_memory_limit")
+        @ConfigDefault("67108864") // 64 * 1024 * 1024
+        public long getRetryCaptureMemoryLimit();
+
+        @Config("max_in_flight_batches")
+        @ConfigDefault("0")
+        public int getMaxInFlightBatches();
+
+        @Config("batch_memory_limit")
+        @ConfigDefault("268435456") // 256 * 1024 * 1024
+        public long getBatchMemoryLimit();
+
+        @Config("adaptive_batch_size")
+        @ConfigDefault("false")
+        public boolean getAdaptiveBatchSize();
+
+        @Config("adaptive_batch_target_latency")
+        @ConfigDefault("1000")
+        public long getAdaptiveBatchTargetLatency();
+
+        @Config("max_batch_size")
+        @ConfigDefault("67108864") // 64 * 1024 * 1024
+        public int getMaxBatchSize();
+
+        @Config("connections_per_task")
+        @ConfigDefault("1")
+        public int getConnectionsPerTask();
+
+        @Config("connection_routing")
+        @ConfigDefault("null")
+        public Optional<ConnectionRouting> getConnectionRouting();
+
+        @Config("collect_chunk_size")
+        @ConfigDefault("0")
+        public int getCollectChunkSize();
+
+        @Config("collect_parallelism")
+        @ConfigDefault("1")
+        public int getCollectParallelism();
+
+        @Config("metadata_cache_ttl")
+        @ConfigDefault("0")
+        public long getMetadataCacheTtl();
+
+        @Config("metadata_cache_dir")
+        @ConfigDefault("null")
+        public Optional<String> getMetadataCacheDir();
+
+        @Config("connection_pool")
+        @ConfigDefault("false")
+        public boolean getConnectionPool();
+
+        @Config("connection_pool_max_idle")
+        @ConfigDefault("8")
+        public int getConnectionPoolMaxIdle();
+
+        @Config("connection_pool_idle_timeout")
+        @ConfigDefault("60")
+        public long getConnectionPoolIdleTimeout();
+
+        @Config("on_row_error")
+        @ConfigDefault("\"fail\"")
+        public OnRowError getOnRowError();
+
+        @Config("reject_file")
+        @ConfigDefault("null")
+        public Optional<String> getRejectFile();
+
+        @Config("reject_table")
+        @ConfigDefault("null")
+        public Optional<String> getRejectTable();
+
+        @Config("datetime_binding")
+        @ConfigDefault("\"legacy\"")
+        public DateTimeBinding getDateTimeBinding();
+
+        @Config("checkpoint_table")
+        @ConfigDefault("null")
+        public Optional<String> getCheckpointTable();
+
+        @Config("merge_key_partitions")
+        @ConfigDefault("0")
+        public int getMergeKeyPartitions();
+
+        @Config("deduplicate_merge_keys")
+        @ConfigDefault("false")
+        public boolean getDeduplicateMergeKeys();
+
         @Config("merge_rule")
         @ConfigDefault("null")
         public Optional<List<String>> getMergeRule();
@@ -155,6 +255,10 @@ public abstract class AbstractJdbcOutputPlugin
         public void setActualTable(TableIdentifier actualTable);
         public TableIdentifier getActualTable();
 
+        // identifies checkpoints of the transaction in checkpoint_table
+        public void setTransactionId(String transactionId);
+        public String getTransactionId();
+
         public void setMergeKeys(Optional<List<String>> keys);
 
         public void setFeatures(Features features);
@@ -348,6 +452,17 @@ public abstract class AbstractJdbcOutputPlugin
 
     protected abstract JdbcOutputConnector getConnector(PluginTask task, boolean retryableMetadataOperation);
 
+    /**
+     * Makes the connector reuse connections shared in the JVM if connection_pool is true.
+     */
+    protected <C extends AbstractJdbcOutputConnector> C configureConnectionPool(PluginTask task, C connector)
+    {
+        if (task.getConnectionPool()) {
+            connector.useConnectionPool(task.getConnectionPoolMaxIdle(), task.getConnectionPoolIdleTimeout() * 1000);
+        }
+        return connector;
+    }
+
     protected abstract BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException;
 
     protected JdbcOutputConnection newConnection(PluginTask task, boolean retryableMetadataOperation,
@@ -465,9 +580,92 @@ public abstract class AbstractJdbcOutputPlugin
             throw new ConfigException(String.format("This output type doesn't support '%s'. Supported modes are: %s", task.getMode(), features.getSupportedModes()));
         }
 
-        task = begin(task, schema, taskCount);
-        control.run(task.dump());
-        return commit(task, schema, taskCount);
+        if (task.getBatchMemoryLimit() <= 0) {
+            throw new ConfigException("'batch_memory_limit' must be positive.");
+        }
+        if (task.getMaxInFlightBatches() < 0) {
+            throw new ConfigException("'max_in_flight_batches' must not be negative.");
+        }
+        if (task.getAdaptiveBatchSize()) {
+            if (task.getMaxBatchSize() < task.getBatchSize()) {
+                throw new ConfigException("'max_batch_size' must not be less than 'batch_size'.");
+            }
+            if (task.getMaxBatchSize() > Integer.MAX_VALUE / 2) {
+                throw new ConfigException(String.format("'max_batch_size' must not be greater than %d.", Integer.MAX_VALUE / 2));
+            }
+        }
+        if (task.getConnectionsPerTask() < 1) {
+            throw new ConfigException("'connections_per_task' must be positive.");
+        }
+        ConnectionRouting routing = getConnectionRouting(task);
+        if (routing == ConnectionRouting.MERGE_KEYS && !task.getMode().isMerge()) {
+            throw new ConfigException("'connection_routing: merge_keys' is supported only in merge modes.");
+        }
+        if (getBatchInsertCount(task) > 1 && task.getMode() == Mode.MERGE_DIRECT && routing != ConnectionRouting.MERGE_KEYS) {
+            // batches flushed concurrently may merge the same key in a different order
+            throw new ConfigException("merge_direct mode with multiple connections requires 'connection_routing: merge_keys'.");
+        }
+
+        if (task.getConnectionPoolMaxIdle() < 0) {
+            throw new ConfigException("'connection_pool_max_idle' must not be negative.");
+        }
+        if (task.getCollectChunkSize() < 0) {
+            throw new ConfigException("'collect_chunk_size' must not be negative.");
+        }
+        if (task.getCollectParallelism() < 1) {
+            throw new ConfigException("'collect_parallelism' must be positive.");
+        }
+        if (task.getCollectParallelism() > 1 && task.getMode() != Mode.INSERT) {
+            // chunks are committed separately
+            throw new ConfigException("'collect_parallelism' is supported only in insert mode.");
+        }
+        if (task.getOnRowError() == OnRowError.REJECT) {
+            if (task.getRejectFile().isPresent() == task.getRejectTable().isPresent()) {
+                throw new ConfigException("'on_row_error: reject' requires either 'reject_file' or 'reject_table'.");
+            }
+        } else if (task.getRejectFile().isPresent() || task.getRejectTable().isPresent()) {
+            throw new ConfigException("'reject_file' and 'reject_table' are available only with 'on_row_error: reject'.");
+        }
+        if (task.getCheckpointTable().isPresent()) {
+            if (!task.getMode().isDirectModify()) {
+                throw new ConfigException("'checkpoint_table' is supported only in insert_direct and merge_direct modes.");
+            }
+            if (getBatchInsertCount(task) > 1) {
+                // batches flushed concurrently may be committed out of order
+                throw new ConfigException("'checkpoint_table' requires 'connections_per_task: 1' and 'max_in_flight_batches: 0'.");
+            }
+            if (task.getOnRowError() == OnRowError.REJECT) {
+                // rejected rows are not counted as committed rows
+                throw new ConfigException("'checkpoint_table' can't be used with 'on_row_error: reject'.");
+            }
+        }
+        if (task.getMergeKeyPartitions() < 0) {
+            throw new ConfigException("'merge_key_partitions' must not be negative.");
+        }
+        if (task.getMergeKeyPartitions() > 0) {
+            if (task.getMode() != Mode.MERGE_DIRECT) {
+                throw new ConfigException("'merge_key_partitions' is supported only in merge_direct mode.");
+            }
+            if (task.getCheckpointTable().isPresent()) {
+                // sorted rows are not committed in the order of input
+                throw new ConfigException("'merge_key_partitions' can't be used with 'checkpoint_table'.");
+            }
+        }
+        if (task.getDeduplicateMergeKeys()) {
+            if (task.getMode() != Mode.MERGE_DIRECT) {
+                throw new ConfigException("'deduplicate_merge_keys' is supported only in merge_direct mode.");
+            }
+            if (task.getCheckpointTable().isPresent()) {
+                // removed rows are not counted as committed rows
+                throw new ConfigException("'deduplicate_merge_keys' can't be used with 'checkpoint_table'.");
+            }
+        }
+
+        task.setTransactionId(UUID.randomUUID().toString());
+
+        task = begin(task, schema, taskCount, false);
+        List<TaskReport> taskReports = control.run(task.dump());
+        return commit(task, schema, taskCount, taskReports);
     }
 
     public ConfigDiff resume(TaskSource taskSource,
@@ -476,17 +674,18 @@ public abstract class AbstractJdbcOutputPlugin
     {
         PluginTask task = TASK_MAPPER.map(taskSource, this.getTaskClass());
 
-        if (!task.getMode().tempTablePerTask() || task.getSingleIntermediateTable()) {
+        boolean checkpointed = task.getMode().isDirectModify() && task.getCheckpointTable().isPresent();
+        if (!checkpointed && (!task.getMode().tempTablePerTask() || task.getSingleIntermediateTable())) {
             throw new UnsupportedOperationException("inplace mode is not resumable. You need to delete partially-loaded records from the database and restart the entire transaction.");
         }
 
-        task = begin(task, schema, taskCount);
-        control.run(task.dump());
-        return commit(task, schema, taskCount);
+        task = begin(task, schema, taskCount, true);
+        List<TaskReport> taskReports = control.run(task.dump());
+        return commit(task, schema, taskCount, taskReports);
     }
 
     private PluginTask begin(final PluginTask task,
-            final Schema schema, final int taskCount)
+            final Schema schema, final int taskCount, final boolean resuming)
     {
         try {
             withRetry(task, new IdempotentSqlRunnable() {  // no intermediate data if isDirectModify == true
@@ -494,8 +693,11 @@ public abstract class AbstractJdbcOutputPlugin
                 {
                     JdbcOutputConnection con = newConnection(task, true, false);
                     con.showDriverVersion();
-                    try {
-                        doBegin(con, task, schema, taskCount);
+                    try (EventScope event = JdbcOutputEvents.phase("begin", task.getTable(), task.getMode())) {
+                        doBegin(con, task, schema, taskCount, resuming);
+                        if (task.getCheckpointTable().isPresent()) {
+                            BatchCheckpoint.createTable(con, getCheckpointTable(con, task));
+                        }
                     } finally {
                         con.close();
                     }
@@ -507,16 +709,27 @@ public abstract class AbstractJdbcOutputPlugin
         return task;
     }
 
+    protected TableIdentifier getCheckpointTable(JdbcOutputConnection con, PluginTask task)
+    {
+        return new TableIdentifier(null, con.getSchemaName(), task.getCheckpointTable().get());
+    }
+
     private ConfigDiff commit(final PluginTask task,
-            Schema schema, final int taskCount)
+            Schema schema, final int taskCount, List<TaskReport> taskReports)
     {
-        if (!task.getMode().isDirectModify() || task.getAfterLoad().isPresent()) {  // no intermediate data if isDirectModify == true
+        if (task.getMode() == Mode.INSERT && task.getCollectParallelism() > 1) {
+            try (EventScope event = JdbcOutputEvents.phase("commit", task.getTable(), task.getMode())) {
+                collectInsertInParallel(task);
+            } catch (SQLException | InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        } else if (!task.getMode().isDirectModify() || task.getAfterLoad().isPresent()) {  // no intermediate data if isDirectModify == true
             try {
                 withRetry(task, new IdempotentSqlRunnable() {
                     public void run() throws SQLException
                     {
                         JdbcOutputConnection con = newConnection(task, false, false);
-                        try {
+                        try (EventScope event = JdbcOutputEvents.phase("commit", task.getTable(), task.getMode())) {
                             doCommit(con, task, taskCount);
                         } finally {
                             con.close();
@@ -527,7 +740,29 @@ public abstract class AbstractJdbcOutputPlugin
                 throw new RuntimeException(ex);
             }
         }
-        return CONFIG_MAPPER_FACTORY.newConfigDiff();
+
+        if (task.getCheckpointTable().isPresent()) {
+            // checkpoints of the transaction are not needed any more
+            try {
+                withRetry(task, new IdempotentSqlRunnable() {
+                    public void run() throws SQLException
+                    {
+                        JdbcOutputConnection con = newConnection(task, true, false);
+                        try {
+                            con.deleteCheckpoints(getCheckpointTable(con, task), task.getTransactionId());
+                        } finally {
+                            con.close();
+                        }
+                    }
+                });
+            } catch (SQLException | InterruptedException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        Map<String, Object> metrics = LoadMetrics.aggregate(taskReports);
+        logger.info("Load metrics: {}", metrics);
+        return CONFIG_MAPPER_FACTORY.newConfigDiff().set("load_metrics", metrics);
     }
 
     public void cleanup(TaskSource taskSource,
@@ -542,7 +777,7 @@ public abstract class AbstractJdbcOutputPlugin
                     public void run() throws SQLException
                     {
                         JdbcOutputConnection con = newConnection(task, true, true);
-                        try {
+                        try (EventScope event = JdbcOutputEvents.phase("cleanup", task.getTable(), task.getMode())) {
                             doCleanup(con, task, taskCount, successTaskReports);
                         } finally {
                             con.close();
@@ -555,8 +790,12 @@ public abstract class AbstractJdbcOutputPlugin
         }
     }
 
+    /**
+     * Prepares tables of the transaction. {@code resuming} is true when the transaction is resumed after some tasks
+     * committed rows, so that before_load is not executed again.
+     */
     protected void doBegin(JdbcOutputConnection con,
-            PluginTask task, final Schema schema, int taskCount) throws SQLException
+            PluginTask task, final Schema schema, int taskCount, boolean resuming) throws SQLException
     {
         if (schema.getColumnCount() == 0) {
             throw new ConfigException("No column.");
@@ -569,33 +808,23 @@ public abstract class AbstractJdbcOutputPlugin
             throw new ConfigException(String.format("%s mode does not support 'before_load' option.", mode));
         }
 
-        String actualTable;
-        if (con.tableExists(task.getTable())) {
-            actualTable = task.getTable();
+        final TableMetadataCache metadataCache = newTableMetadataCache(task);
+        TableMetadataCache.TableMetadata targetTableMetadata;
+        if (mode.ignoreTargetTableSchema()) {
+            targetTableMetadata = new TableMetadataCache.TableMetadata(findActualTableName(con, task.getTable()), Optional.<JdbcSchema>empty());
         } else {
-            String upperTable = task.getTable().toUpperCase();
-            String lowerTable = task.getTable().toLowerCase();
-            if (con.tableExists(upperTable)) {
-                if (con.tableExists(lowerTable)) {
-                    throw new ConfigException(String.format("Cannot specify table '%s' because both '%s' and '%s' exist.",
-                            task.getTable(), upperTable, lowerTable));
-                } else {
-                    actualTable = upperTable;
-                }
-            } else {
-                if (con.tableExists(lowerTable)) {
-                    actualTable = lowerTable;
-                } else {
-                    actualTable = task.getTable();
-                }
-            }
+            targetTableMetadata = metadataCache.get(con, task.getTable(), () -> {
+                Optional<String> tableName = findActualTableName(con, task.getTable());
+                return new TableMetadataCache.TableMetadata(tableName,
+                        tableName.isPresent() ?
+                            newJdbcSchemaFromExistingTable(con, new TableIdentifier(null, con.getSchemaName(), tableName.get())) :
+                            Optional.<JdbcSchema>empty());
+            });
         }
+        String actualTable = targetTableMetadata.getActualTableName().orElse(task.getTable());
         task.setActualTable(new TableIdentifier(null, con.getSchemaName(), actualTable));
 
-        Optional<JdbcSchema> initialTargetTableSchema =
-            mode.ignoreTargetTableSchema() ?
-                Optional.<JdbcSchema>empty() :
-                newJdbcSchemaFromTableIfExists(con, task.getActualTable());
+        Optional<JdbcSchema> initialTargetTableSchema = targetTableMetadata.getSchema();
 
         // TODO get CREATE TABLE statement from task if set
         JdbcSchema newTableSchema = applyColumnOptionsToNewTableSchema(
@@ -607,6 +836,10 @@ public abstract class AbstractJdbcOutputPlugin
                 }),
                 task.getColumnOptions());
 
+        if (task.getRejectTable().isPresent()) {
+            RejectSink.createRejectTable(con, new TableIdentifier(null, con.getSchemaName(), task.getRejectTable().get()));
+        }
+
         // create intermediate tables
         if (!mode.isDirectModify()) {
             // create the intermediate tables here
@@ -614,7 +847,7 @@ public abstract class AbstractJdbcOutputPlugin
         } else {
             // direct modify mode doesn't need intermediate tables.
             task.setIntermediateTables(Optional.<List<TableIdentifier>>empty());
-            if (task.getBeforeLoad().isPresent()) {
+            if (task.getBeforeLoad().isPresent() && !resuming) {
                 con.executeInNewStatement(task.getBeforeLoad().get());
             }
         }
@@ -626,20 +859,22 @@ public abstract class AbstractJdbcOutputPlugin
             task.setNewTableSchema(Optional.<JdbcSchema>empty());
         } else if (task.getIntermediateTables().isPresent() && !task.getIntermediateTables().get().isEmpty()) {
             TableIdentifier firstItermTable = task.getIntermediateTables().get().get(0);
-            targetTableSchema = newJdbcSchemaFromTableIfExists(con, firstItermTable).get();
+            targetTableSchema = newJdbcSchemaFromExistingTable(con, firstItermTable).get();
             task.setNewTableSchema(Optional.of(newTableSchema));
         } else {
             // also create the target table if not exists
             // CREATE TABLE IF NOT EXISTS xyz
             con.createTableIfNotExists(task.getActualTable(), newTableSchema, task.getCreateTableConstraint(), task.getCreateTableOption());
-            targetTableSchema = newJdbcSchemaFromTableIfExists(con, task.getActualTable()).get();
+            metadataCache.invalidate(con, task.getTable());
+            targetTableSchema = newJdbcSchemaFromExistingTable(con, task.getActualTable()).get();
             task.setNewTableSchema(Optional.<JdbcSchema>empty());
         }
         task.setTargetTableSchema(matchSchemaByColumnNames(schema, targetTableSchema));
 
         // validate column_options
         newColumnSetters(
-                newColumnSetterFactory(null, task.getDefaultTimeZone()),  // TODO create a dummy BatchInsert
+                newColumnSetterFactory(null, task.getDefaultTimeZone())  // TODO create a dummy BatchInsert
+                    .setDateTimeBinding(task.getDateTimeBinding()),
                 task.getTargetTableSchema(), schema,
                 task.getColumnOptions());
 
@@ -891,7 +1126,8 @@ public abstract class AbstractJdbcOutputPlugin
                 con.createTableIfNotExists(task.getActualTable(), task.getNewTableSchema().get(),
                         task.getCreateTableConstraint(), task.getCreateTableOption());
             }
-            con.collectInsert(task.getIntermediateTables().get(), schema, task.getActualTable(), false, task.getBeforeLoad(), task.getAfterLoad());
+            con.collectInsert(task.getIntermediateTables().get(), schema, task.getActualTable(), false, task.getBeforeLoad(), task.getAfterLoad(),
+                    task.getCollectChunkSize());
             break;
 
         case TRUNCATE_INSERT:
@@ -900,7 +1136,8 @@ public abstract class AbstractJdbcOutputPlugin
                 con.createTableIfNotExists(task.getActualTable(), task.getNewTableSchema().get(),
                         task.getCreateTableConstraint(), task.getCreateTableOption());
             }
-            con.collectInsert(task.getIntermediateTables().get(), schema, task.getActualTable(), true, task.getBeforeLoad(), task.getAfterLoad());
+            con.collectInsert(task.getIntermediateTables().get(), schema, task.getActualTable(), true, task.getBeforeLoad(), task.getAfterLoad(),
+                    task.getCollectChunkSize());
             break;
 
         case UPDATE_INSERT:
@@ -910,7 +1147,8 @@ public abstract class AbstractJdbcOutputPlugin
                         task.getCreateTableConstraint(), task.getCreateTableOption());
             }
             con.collectUpdateInsert(task.getIntermediateTables().get(), schema, task.getActualTable(),
-                    new MergeConfig(task.getMergeKeys().get(), task.getMergeRule()), task.getBeforeLoad(), task.getAfterLoad());
+                    new MergeConfig(task.getMergeKeys().get(), task.getMergeRule()), task.getBeforeLoad(), task.getAfterLoad(),
+                    task.getCollectChunkSize());
             break;
 
         case MERGE:
@@ -920,7 +1158,8 @@ public abstract class AbstractJdbcOutputPlugin
                         task.getCreateTableConstraint(), task.getCreateTableOption());
             }
             con.collectMerge(task.getIntermediateTables().get(), schema, task.getActualTable(),
-                    new MergeConfig(task.getMergeKeys().get(), task.getMergeRule()), task.getBeforeLoad(), task.getAfterLoad());
+                    new MergeConfig(task.getMergeKeys().get(), task.getMergeRule()), task.getBeforeLoad(), task.getAfterLoad(),
+                    task.getCollectChunkSize());
             break;
 
         case REPLACE:
@@ -928,6 +1167,115 @@ public abstract class AbstractJdbcOutputPlugin
             con.replaceTable(task.getIntermediateTables().get().get(0), schema, task.getActualTable(), task.getAfterLoad());
             break;
         }
+
+        if (task.getNewTableSchema().isPresent() || task.getMode().commitBySwapTable()) {
+            newTableMetadataCache(task).invalidate(con, task.getTable());
+        }
+    }
+
+    /**
+     * Inserts rows of intermediate tables into the target table in insert mode, by chunks of
+     * collect_chunk_size tables in collect_parallelism connections. Each chunk is committed
+     * and retried separately, so rows of chunks already committed are visible if another chunk fails.
+     */
+    private void collectInsertInParallel(final PluginTask task) throws SQLException, InterruptedException
+    {
+        final JdbcSchema schema = filterSkipColumns(task.getTargetTableSchema());
+        final List<TableIdentifier> intermediateTables = task.getIntermediateTables().get();
+        if (intermediateTables.isEmpty()) {
+            return;
+        }
+
+        withRetry(task, new IdempotentSqlRunnable() {
+            public void run() throws SQLException
+            {
+                JdbcOutputConnection con = newConnection(task, false, false);
+                try {
+                    if (task.getNewTableSchema().isPresent()) {
+                        con.createTableIfNotExists(task.getActualTable(), task.getNewTableSchema().get(),
+                                task.getCreateTableConstraint(), task.getCreateTableOption());
+                        newTableMetadataCache(task).invalidate(con, task.getTable());
+                    }
+                    if (task.getBeforeLoad().isPresent()) {
+                        con.executeInNewStatement(task.getBeforeLoad().get());
+                    }
+                } finally {
+                    con.close();
+                }
+            }
+        });
+
+        int chunkSize = task.getCollectChunkSize();
+        if (chunkSize == 0) {
+            chunkSize = (intermediateTables.size() + task.getCollectParallelism() - 1) / task.getCollectParallelism();
+        }
+        final List<List<TableIdentifier>> chunks = JdbcOutputConnection.partition(intermediateTables, chunkSize);
+        logger.info("Collecting {} intermediate tables by {} chunks in {} connections",
+                intermediateTables.size(), chunks.size(), task.getCollectParallelism());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(task.getCollectParallelism(), chunks.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                final int index = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws SQLException, InterruptedException
+                    {
+                        long startTime = System.currentTimeMillis();
+                        withRetry(task, new IdempotentSqlRunnable() {
+                            public void run() throws SQLException
+                            {
+                                JdbcOutputConnection con = newConnection(task, false, false);
+                                try {
+                                    con.collectInsert(chunks.get(index), schema, task.getActualTable(), false,
+                                            Optional.<String>empty(), Optional.<String>empty());
+                                } finally {
+                                    con.close();
+                                }
+                            }
+                        });
+                        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+                        logger.info(String.format("Collected chunk %d/%d (%d tables) in %.2f seconds",
+                                    index + 1, chunks.size(), chunks.get(index).size(), seconds));
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof SQLException) {
+                        throw (SQLException) cause;
+                    } else if (cause instanceof InterruptedException) {
+                        throw (InterruptedException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new RuntimeException(cause);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (task.getAfterLoad().isPresent()) {
+            withRetry(task, new IdempotentSqlRunnable() {
+                public void run() throws SQLException
+                {
+                    JdbcOutputConnection con = newConnection(task, false, false);
+                    try {
+                        con.executeInNewStatement(task.getAfterLoad().get());
+                    } finally {
+                        con.close();
+                    }
+                }
+            });
+        }
     }
 
     protected void doCleanup(JdbcOutputConnection con, PluginTask task, int taskCount,
@@ -993,6 +1341,35 @@ public abstract class AbstractJdbcOutputPlugin
         return new JdbcSchema(Collections.unmodifiableList(columns));
     }
 
+    protected TableMetadataCache newTableMetadataCache(PluginTask task)
+    {
+        return new TableMetadataCache(task.getMetadataCacheTtl(), task.getMetadataCacheDir());
+    }
+
+    /**
+     * Returns the name of the existing table among the name, the upper case name and the lower case name,
+     * looking them up at once.
+     */
+    private Optional<String> findActualTableName(JdbcOutputConnection con, String tableName) throws SQLException
+    {
+        String upperTable = tableName.toUpperCase();
+        String lowerTable = tableName.toLowerCase();
+        Set<String> existingTables = con.findExistingTables(new LinkedHashSet<>(Arrays.asList(tableName, upperTable, lowerTable)));
+        if (existingTables.contains(tableName)) {
+            return Optional.of(tableName);
+        } else if (existingTables.contains(upperTable)) {
+            if (existingTables.contains(lowerTable)) {
+                throw new ConfigException(String.format("Cannot specify table '%s' because both '%s' and '%s' exist.",
+                        tableName, upperTable, lowerTable));
+            }
+            return Optional.of(upperTable);
+        } else if (existingTables.contains(lowerTable)) {
+            return Optional.of(lowerTable);
+        } else {
+            return Optional.empty();
+        }
+    }
+
     public Optional<JdbcSchema> newJdbcSchemaFromTableIfExists(JdbcOutputConnection connection,
             TableIdentifier table) throws SQLException
     {
@@ -1000,7 +1377,15 @@ public abstract class AbstractJdbcOutputPlugin
             // DatabaseMetaData.getPrimaryKeys fails if table does not exist
             return Optional.empty();
         }
+        return newJdbcSchemaFromExistingTable(connection, table);
+    }
 
+    /**
+     * Same as newJdbcSchemaFromTableIfExists, but skips checking existence of the table.
+     */
+    protected Optional<JdbcSchema> newJdbcSchemaFromExistingTable(JdbcOutputConnection connection,
+            TableIdentifier table) throws SQLException
+    {
         DatabaseMetaData dbm = connection.getMetaData();
         String escape = dbm.getSearchStringEscape();
 
@@ -1068,15 +1453,19 @@ public abstract class AbstractJdbcOutputPlugin
         final PluginTask task = TASK_MAPPER.map(taskSource, this.getTaskClass());
         final Mode mode = task.getMode();
 
-        // instantiate BatchInsert without table name
-        BatchInsert batch = null;
+        // instantiate BatchInserts without table name.
+        // a BatchInsert is added for each batch flushed in background.
+        List<BatchInsert> batches = new ArrayList<>();
         try {
             Optional<MergeConfig> config = Optional.empty();
             if (task.getMode() == Mode.MERGE_DIRECT) {
                 config = Optional.of(new MergeConfig(task.getMergeKeys().get(), task.getMergeRule()));
             }
-            batch = newBatchInsert(task, config);
+            for (int i = 0; i < getBatchInsertCount(task); i++) {
+                batches.add(newBatchInsert(task, config));
+            }
         } catch (IOException | SQLException ex) {
+            closeBatchInserts(batches);
             throw new RuntimeException(ex);
         }
 
@@ -1084,10 +1473,16 @@ public abstract class AbstractJdbcOutputPlugin
             // configure PageReader -> BatchInsert
             PageReader reader = new PageReader(schema);
 
-            List<ColumnSetter> columnSetters = newColumnSetters(
-                    newColumnSetterFactory(batch, task.getDefaultTimeZone()),
-                    task.getTargetTableSchema(), schema,
-                    task.getColumnOptions());
+            if (task.getDateTimeBinding() == DateTimeBinding.JAVA_TIME && !batches.get(0).supportsJavaTimeBinding()) {
+                logger.warn("datetime_binding 'java_time' is ignored because {} doesn't support it.", batches.get(0).getClass().getSimpleName());
+            }
+            List<List<ColumnSetter>> columnSetters = new ArrayList<>();
+            for (BatchInsert batch : batches) {
+                columnSetters.add(newColumnSetters(
+                        newColumnSetterFactory(batch, task.getDefaultTimeZone()).setDateTimeBinding(task.getDateTimeBinding()),
+                        task.getTargetTableSchema(), schema,
+                        task.getColumnOptions()));
+            }
             JdbcSchema insertIntoSchema = filterSkipColumns(task.getTargetTableSchema());
             if (insertIntoSchema.getCount() == 0) {
                 throw new SQLException("No column to insert.");
@@ -1102,24 +1497,77 @@ public abstract class AbstractJdbcOutputPlugin
             } else {
                 destTable = task.getIntermediateTables().get().get(0);
             }
-            batch.prepare(destTable, insertIntoSchema);
+            BatchCheckpoint checkpoint = null;
+            if (task.getCheckpointTable().isPresent()) {
+                checkpoint = readCheckpoint(task, taskIndex);
+                if (!batches.get(0).setCheckpoint(checkpoint)) {
+                    throw new ConfigException(String.format("'checkpoint_table' is not supported by %s.", batches.get(0).getClass().getSimpleName()));
+                }
+            }
 
-            PluginPageOutput output = new PluginPageOutput(reader, batch, columnSetters, task.getBatchSize(), task);
-            batch = null;
+            for (BatchInsert batch : batches) {
+                batch.prepare(destTable, insertIntoSchema);
+            }
+
+            PluginPageOutput output = new PluginPageOutput(reader, batches, columnSetters, task.getBatchSize(), task,
+                    newRejectSink(task, schema, taskIndex));
+            if (checkpoint != null && checkpoint.getCommittedRows() > 0) {
+                logger.info("Resuming from batch {}. Skipping {} records committed before.",
+                        checkpoint.getBatchSequence(), checkpoint.getCommittedRows());
+                output.skipRecords(checkpoint.getCommittedRows());
+            }
+            batches = null;
             return output;
 
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
 
         } finally {
-            if (batch != null) {
-                try {
-                    batch.close();
-                } catch (IOException | SQLException ex) {
-                    throw new RuntimeException(ex);
+            if (batches != null) {
+                closeBatchInserts(batches);
+            }
+        }
+    }
+
+    protected BatchCheckpoint readCheckpoint(PluginTask task, int taskIndex) throws SQLException
+    {
+        TableIdentifier checkpointTable = new TableIdentifier(null, task.getActualTable().getSchemaName(), task.getCheckpointTable().get());
+        JdbcOutputConnection con = getConnector(task, true).connect(true);
+        try {
+            return BatchCheckpoint.read(con, checkpointTable, task.getTransactionId(), taskIndex);
+        } finally {
+            con.close();
+        }
+    }
+
+    protected RejectSink newRejectSink(PluginTask task, Schema schema, int taskIndex) throws SQLException
+    {
+        if (task.getOnRowError() != OnRowError.REJECT) {
+            return null;
+        }
+        if (task.getRejectFile().isPresent()) {
+            // tasks may run in the same process
+            return RejectSink.toFile(schema.getColumns(), task.getRejectFile().get() + "." + taskIndex);
+        }
+        TableIdentifier rejectTable = new TableIdentifier(null, task.getActualTable().getSchemaName(), task.getRejectTable().get());
+        return RejectSink.toTable(schema.getColumns(), getConnector(task, true), rejectTable, taskIndex);
+    }
+
+    private static void closeBatchInserts(List<BatchInsert> batches)
+    {
+        Exception exception = null;
+        for (BatchInsert batch : batches) {
+            try {
+                batch.close();
+            } catch (IOException | SQLException ex) {
+                if (exception == null) {
+                    exception = ex;
                 }
             }
         }
+        if (exception != null) {
+            throw new RuntimeException(exception);
+        }
     }
 
     public static File findPluginRoot(Class<?> cls)
@@ -1149,64 +1597,298 @@ public abstract class AbstractJdbcOutputPlugin
             implements TransactionalPageOutput
     {
         protected final List<Column> columns;
-        protected final List<ColumnSetter> columnSetters;
-        protected final List<ColumnSetterVisitor> columnVisitors;
+        private final PageReader reader;
         private final PageReaderRecord pageReader;
-        private final BatchInsert batch;
+        private final List<Lane> lanes;
+        private final MergeKeyHash mergeKeyHash;
+        private final MergeKeyPartitioner partitioner;
+        private final PageReaderRecord partitionReader;
+        private final MergeKeyDeduplicator deduplicator;
+        private final ExecutorService flushExecutor;
         private final int batchSize;
-        private final int forceBatchFlushSize;
+        private final AdaptiveBatchSizer batchSizer;
+        private final LoadMetrics metrics = new LoadMetrics();
+        private final RejectSink rejectSink;
+        private long recordsToSkip;
+        private long blockedNanos;
         private final PluginTask task;
+        private Lane lane;
 
         public PluginPageOutput(PageReader pageReader,
                 BatchInsert batch, List<ColumnSetter> columnSetters,
                 int batchSize, PluginTask task)
         {
-            this.pageReader = new PageReaderRecord(pageReader);
-            this.batch = batch;
-            this.columns = pageReader.getSchema().getColumns();
-            this.columnSetters = columnSetters;
+            this(pageReader, Collections.singletonList(batch), Collections.singletonList(columnSetters), batchSize, task);
+        }
 
-            this.columnVisitors = Collections.unmodifiableList((ArrayList<ColumnSetterVisitor>) columnSetters.stream().map(setter -> {
-                                return new ColumnSetterVisitor(PluginPageOutput.this.pageReader, setter);
-                    }).collect(Collectors.toCollection(ArrayList::new)));
-            this.batchSize = batchSize;
+        /**
+         * Creates PluginPageOutput which writes records through multiple BatchInserts.
+         * While a batch is flushed in background, following records are added to the next BatchInsert
+         * (round_robin), or to the BatchInsert chosen by hash of merge keys of each record (merge_keys).
+         */
+        public PluginPageOutput(PageReader pageReader,
+                List<BatchInsert> batches, List<List<ColumnSetter>> columnSetters,
+                int batchSize, PluginTask task)
+        {
+            this(pageReader, batches, columnSetters, batchSize, task, null);
+        }
+
+        /**
+         * Creates PluginPageOutput which writes rows rejected by the database to rejectSink instead of failing.
+         * Rows of a failed batch are flushed again in halves until each failed row is isolated.
+         */
+        public PluginPageOutput(PageReader pageReader,
+                List<BatchInsert> batches, List<List<ColumnSetter>> columnSetters,
+                int batchSize, PluginTask task, RejectSink rejectSink)
+        {
+            this.columns = pageReader.getSchema().getColumns();
             this.task = task;
-            this.forceBatchFlushSize = batchSize * 2;
+            this.batchSize = batchSize;
+            if (task.getAdaptiveBatchSize()) {
+                // batch size can shrink down to 1/16 of batch_size
+                this.batchSizer = new AdaptiveBatchSizer(batchSize,
+                        Math.max(1, batchSize / 16), task.getMaxBatchSize(),
+                        task.getAdaptiveBatchTargetLatency());
+            } else {
+                this.batchSizer = null;
+            }
+
+            ArrayList<Lane> lanes = new ArrayList<>();
+            for (int i = 0; i < batches.size(); i++) {
+                lanes.add(new Lane(i, batches.get(i), columnSetters.get(i)));
+            }
+            this.lanes = Collections.unmodifiableList(lanes);
+            this.lane = lanes.get(0);
+            this.rejectSink = rejectSink;
+            if (rejectSink != null && lane.capture.getMode() == RetryCaptureMode.OFF) {
+                throw new ConfigException(String.format("'on_row_error: reject' is not supported by %s, or with 'retry_capture: off'.",
+                            lane.batch.getClass().getSimpleName()));
+            }
+            this.reader = pageReader;
+            this.pageReader = new PageReaderRecord(pageReader, lane.capture);
+
+            if (lanes.size() > 1) {
+                this.flushExecutor = Executors.newFixedThreadPool(lanes.size());
+            } else {
+                this.flushExecutor = null;
+            }
+
+            if (lanes.size() > 1 && getConnectionRouting(task) == ConnectionRouting.MERGE_KEYS) {
+                this.mergeKeyHash = new MergeKeyHash(getMergeKeyColumns(task));
+            } else {
+                this.mergeKeyHash = null;
+            }
+
+            if (task.getMergeKeyPartitions() > 0 || task.getDeduplicateMergeKeys()) {
+                // without merge_key_partitions, records are buffered in a single partition to be deduplicated
+                this.partitioner = new MergeKeyPartitioner(columns, getMergeKeyColumns(task), Math.max(1, task.getMergeKeyPartitions()));
+                // records are copied to the partitions, and captured when they are flushed
+                this.partitionReader = new PageReaderRecord(pageReader, new RecordCapture(columns, RetryCaptureMode.OFF, 0));
+            } else {
+                this.partitioner = null;
+                this.partitionReader = null;
+            }
+            if (task.getDeduplicateMergeKeys()) {
+                this.deduplicator = new MergeKeyDeduplicator(getMergeKeyColumns(task));
+            } else {
+                this.deduplicator = null;
+            }
+        }
+
+        private List<Column> getMergeKeyColumns(PluginTask task)
+        {
+            // the target table schema is ordered in the same order as the input schema
+            JdbcSchema targetTableSchema = task.getTargetTableSchema();
+            List<Column> keyColumns = new ArrayList<>();
+            for (String key : task.getMergeKeys().get()) {
+                Optional<JdbcColumn> column = targetTableSchema.findColumn(key);
+                if (column.isPresent() && !column.get().isSkipColumn()) {
+                    keyColumns.add(columns.get(targetTableSchema.getColumns().indexOf(column.get())));
+                }
+            }
+            return Collections.unmodifiableList(keyColumns);
         }
 
         @Override
         public void add(Page page)
         {
             try {
+                long startTime = System.nanoTime();
+                long blockedNanosBefore = blockedNanos;
                 pageReader.setPage(page);
                 while (pageReader.nextRecord()) {
-                    if (batch.getBatchWeight() > forceBatchFlushSize) {
-                        flush();
+                    if (recordsToSkip > 0) {
+                        recordsToSkip--;
+                        continue;
+                    }
+                    if (partitioner != null) {
+                        addToPartition();
+                        continue;
+                    }
+                    if (mergeKeyHash != null) {
+                        switchLane(lanes.get(mergeKeyHash.bucket(reader, lanes.size())));
+                    }
+                    if (isBatchFull(lane, getBatchSize() * 2)) {
+                        if (mergeKeyHash != null) {
+                            // the record must be added to this lane to keep the order of its keys,
+                            // so the batch is flushed before it, not in background
+                            flushAndWait(lane);
+                        } else {
+                            flush();
+                        }
                     }
                     handleColumnsSetters();
-                    batch.add();
+                    lane.batch.add();
+                    lane.rows++;
                 }
-                if (batch.getBatchWeight() > batchSize) {
+                if (partitioner != null) {
+                    // partitions are flushed when they are full
+                } else if (mergeKeyHash != null) {
+                    for (Lane lane : lanes) {
+                        if (lane.flushing == null && isBatchFull(lane, getBatchSize())) {
+                            switchLane(lane);
+                            flush();
+                        }
+                    }
+                } else if (isBatchFull(lane, getBatchSize())) {
                     flush();
                 }
+                metrics.addConversionNanos(System.nanoTime() - startTime - (blockedNanos - blockedNanosBefore));
             } catch (IOException | SQLException | InterruptedException ex) {
                 throw new RuntimeException(ex);
             }
         }
 
-        private void flush() throws SQLException, InterruptedException
+        /**
+         * Skips the first records, which were committed by the previous attempt of the task.
+         */
+        public void skipRecords(long records)
         {
-            withRetry(task, new IdempotentSqlRunnable() {
+            this.recordsToSkip = records;
+        }
+
+        private void addToPartition() throws IOException, SQLException, InterruptedException
+        {
+            int partition = partitioner.add(reader, partitionReader);
+            if (partitioner.getRecords(partition).getEstimatedBytes() > getBatchSize()) {
+                flushPartition(partition);
+            }
+        }
+
+        /**
+         * Writes records of the partition sorted by merge keys (merge_key_partitions), without records
+         * superseded by a later one with the same keys (deduplicate_merge_keys), to a batch, and flushes it.
+         * A partition is always written to the same lane so that records with the same keys are merged in order.
+         */
+        private void flushPartition(int partition) throws IOException, SQLException, InterruptedException
+        {
+            RecordBuffer records = partitioner.getRecords(partition);
+            int[] rows;
+            if (task.getMergeKeyPartitions() > 0) {
+                rows = partitioner.sortRows(partition);
+            } else {
+                rows = new int[records.size()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = i;
+                }
+            }
+            if (deduplicator != null) {
+                int[] deduplicated = deduplicator.deduplicate(records, rows);
+                metrics.addDeduplicated(rows.length - deduplicated.length);
+                rows = deduplicated;
+            }
+
+            switchLane(lanes.get(partition % lanes.size()));
+            for (int row : rows) {
+                records.seek(row);
+                if (lane.capture.getMode() != RetryCaptureMode.OFF) {
+                    lane.capture.addRow(records);
+                }
+                lane.rowWriter.write(records);
+                lane.batch.add();
+                lane.rows++;
+            }
+            partitioner.clear(partition);
+            flush();
+        }
+
+        private int getBatchSize()
+        {
+            return batchSizer != null ? batchSizer.getBatchSize() : batchSize;
+        }
+
+        private boolean isBatchFull(Lane lane, int batchSize)
+        {
+            // small values take more heap in the driver than their weight, so the heap is limited separately
+            return lane.batch.getBatchWeight() > batchSize || lane.batch.getBatchHeapBytes() > task.getBatchMemoryLimit();
+        }
+
+        private void flush() throws IOException, SQLException, InterruptedException
+        {
+            if (flushExecutor == null) {
+                flushAndWait(lane);
+                return;
+            }
+
+            // flush the lane in background, and add following records to the next lane
+            final Lane flushingLane = lane;
+            flushingLane.flushing = flushExecutor.submit(() -> {
+                flush(flushingLane);
+                return null;
+            });
+            if (mergeKeyHash == null) {
+                switchLane(lanes.get((lane.index + 1) % lanes.size()));
+            }
+        }
+
+        private void switchLane(Lane next) throws IOException, SQLException, InterruptedException
+        {
+            // the BatchInsert can't be used until its flush completes
+            waitForFlush(next);
+            if (next != lane) {
+                lane = next;
+                pageReader.setCapture(lane.capture);
+            }
+        }
+
+        private void flushAndWait(Lane lane) throws IOException, SQLException, InterruptedException
+        {
+            long startTime = System.nanoTime();
+            try {
+                flush(lane);
+            } finally {
+                addWaitNanos(System.nanoTime() - startTime);
+            }
+        }
+
+        private void addWaitNanos(long nanos)
+        {
+            blockedNanos += nanos;
+            metrics.addWaitNanos(nanos);
+        }
+
+        private void flush(final Lane lane) throws IOException, SQLException, InterruptedException
+        {
+            if (!lane.retryFlush) {
+                flushBatch(lane);
+                lane.capture.clear();
+                return;
+            }
+
+            IdempotentSqlRunnable op = new IdempotentSqlRunnable() {
                 private boolean first = true;
 
                 @Override
                 public void run() throws IOException, SQLException {
                     try {
                         if (!first) {
-                            retryColumnsSetters();
+                            metrics.addRetry();
+                        }
+                        if (!first && lane.capture.getMode() != RetryCaptureMode.OFF) {
+                            retryColumnsSetters(lane);
                         }
 
-                        batch.flush();
+                        flushBatch(lane);
 
                     } catch (IOException | SQLException ex) {
                         if (!first && !isRetryableException(ex)) {
@@ -1217,24 +1899,197 @@ public abstract class AbstractJdbcOutputPlugin
                         first = false;
                     }
                 }
-            });
+            };
 
-            pageReader.clearReadRecords();
+            try {
+                withRetry(task, op);
+            } catch (SQLException ex) {
+                if (rejectSink == null || isRetryableException(ex)) {
+                    throw ex;
+                }
+                rejectFailedRows(lane);
+            }
+
+            lane.capture.clear();
         }
 
-        @Override
-        public void finish()
+        private void rejectFailedRows(Lane lane) throws IOException, SQLException, InterruptedException
         {
+            // keeps rows which failed in the last flush, and flushes them again in halves
+            lane.capture.retry(lane.batch.getLastUpdateCounts(), () -> {});
+            RecordBuffer records = lane.capture.load();
+            int[] rows = new int[records.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = i;
+            }
+            logger.info("Isolating rows rejected in a batch of {} rows", rows.length);
+            bisect(lane, records, rows);
+        }
+
+        private void bisect(Lane lane, RecordBuffer records, int[] rows) throws IOException, SQLException, InterruptedException
+        {
+            if (rows.length <= 1) {
+                flushRows(lane, records, rows);
+                return;
+            }
+            int half = rows.length / 2;
+            flushRows(lane, records, Arrays.copyOfRange(rows, 0, half));
+            flushRows(lane, records, Arrays.copyOfRange(rows, half, rows.length));
+        }
+
+        private void flushRows(final Lane lane, final RecordBuffer records, int[] rows) throws IOException, SQLException, InterruptedException
+        {
+            if (rows.length == 0) {
+                return;
+            }
+            // rows not inserted yet, which are added again when the flush is retried
+            final int[][] pendingRows = new int[][] { rows };
+            addRows(lane, records, rows);
+
+            // same as flush(lane)
+            IdempotentSqlRunnable op = new IdempotentSqlRunnable() {
+                private boolean first = true;
+
+                @Override
+                public void run() throws IOException, SQLException {
+                    try {
+                        if (!first) {
+                            metrics.addRetry();
+                            pendingRows[0] = failedRows(lane.batch.getLastUpdateCounts(), pendingRows[0]);
+                            addRows(lane, records, pendingRows[0]);
+                        }
+
+                        flushBatch(lane);
+
+                    } catch (IOException | SQLException ex) {
+                        if (!first && !isRetryableException(ex)) {
+                            logger.error("Retry failed : ", ex);
+                        }
+                        throw ex;
+                    } finally {
+                        first = false;
+                    }
+                }
+            };
+
             try {
-                flush();
+                withRetry(task, op);
+            } catch (SQLException ex) {
+                if (isRetryableException(ex)) {
+                    throw ex;
+                }
+                if (pendingRows[0].length == 1) {
+                    records.seek(pendingRows[0][0]);
+                    rejectSink.reject(records, ex);
+                    metrics.addRejected();
+                    return;
+                }
+                bisect(lane, records, failedRows(lane.batch.getLastUpdateCounts(), pendingRows[0]));
+            }
+        }
 
-                withRetry(task, new IdempotentSqlRunnable() {
-                    @Override
-                    public void run() throws IOException, SQLException {
-                        batch.finish();
+        private void addRows(Lane lane, RecordBuffer records, int[] rows) throws IOException, SQLException
+        {
+            for (int row : rows) {
+                records.seek(row);
+                lane.rowWriter.write(records);
+                lane.batch.add();
+                lane.rows++;
+            }
+        }
+
+        private int[] failedRows(int[] updateCounts, int[] rows)
+        {
+            int[] failed = new int[rows.length];
+            int count = 0;
+            for (int i = 0; i < rows.length; i++) {
+                if (i >= updateCounts.length || updateCounts[i] == Statement.EXECUTE_FAILED) {
+                    failed[count++] = rows[i];
+                }
+            }
+            return Arrays.copyOf(failed, count);
+        }
+
+        private void flushBatch(Lane lane) throws IOException, SQLException
+        {
+            int weight = lane.batch.getBatchWeight();
+            int rows = lane.rows;
+            try (EventScope event = JdbcOutputEvents.phase("flush", task.getTable(), task.getMode())) {
+                event.setRows(rows).setBytes(weight);
+                long startTime = System.nanoTime();
+                lane.batch.flush();
+                long nanos = System.nanoTime() - startTime;
+                if (rows > 0) {
+                    metrics.addFlush(rows, weight, nanos);
+                    if (batchSizer != null) {
+                        batchSizer.observe(weight, rows, TimeUnit.NANOSECONDS.toMillis(nanos));
                     }
-                });
-            } catch (InterruptedException | SQLException ex) {
+                }
+            } finally {
+                // failed rows are counted again when they are retried
+                lane.rows = 0;
+            }
+        }
+
+        private void waitForFlush(Lane lane) throws IOException, SQLException, InterruptedException
+        {
+            if (lane.flushing == null) {
+                return;
+            }
+            long startTime = System.nanoTime();
+            try {
+                lane.flushing.get();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                } else if (cause instanceof InterruptedException) {
+                    throw (InterruptedException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw new RuntimeException(cause);
+                }
+            } finally {
+                lane.flushing = null;
+                addWaitNanos(System.nanoTime() - startTime);
+            }
+        }
+
+        @Override
+        public void finish()
+        {
+            try (EventScope event = JdbcOutputEvents.phase("finish", task.getTable(), task.getMode())) {
+                event.setRows(metrics.getRows());
+                if (partitioner != null) {
+                    for (int i = 0; i < partitioner.getPartitionCount(); i++) {
+                        if (partitioner.getRecords(i).size() > 0) {
+                            flushPartition(i);
+                        }
+                    }
+                }
+                for (Lane lane : lanes) {
+                    waitForFlush(lane);
+                    if (lane == this.lane || mergeKeyHash != null) {
+                        flushAndWait(lane);
+                    }
+                }
+
+                long startTime = System.nanoTime();
+                for (final Lane lane : lanes) {
+                    withRetry(task, new IdempotentSqlRunnable() {
+                        @Override
+                        public void run() throws IOException, SQLException {
+                            lane.batch.finish();
+                        }
+                    });
+                }
+                addWaitNanos(System.nanoTime() - startTime);
+            } catch (IOException | InterruptedException | SQLException ex) {
                 throw new RuntimeException(ex);
             }
         }
@@ -1242,10 +2097,38 @@ public abstract class AbstractJdbcOutputPlugin
         @Override
         public void close()
         {
-            try {
-                batch.close();
-            } catch (IOException | SQLException ex) {
-                throw new RuntimeException(ex);
+            if (flushExecutor != null) {
+                flushExecutor.shutdownNow();
+                try {
+                    flushExecutor.awaitTermination(60, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {}
+            }
+
+            Exception exception = null;
+            for (Lane lane : lanes) {
+                try {
+                    try {
+                        lane.capture.close();
+                    } finally {
+                        lane.batch.close();
+                    }
+                } catch (IOException | SQLException ex) {
+                    if (exception == null) {
+                        exception = ex;
+                    }
+                }
+            }
+            if (rejectSink != null) {
+                try {
+                    rejectSink.close();
+                } catch (IOException | SQLException ex) {
+                    if (exception == null) {
+                        exception = ex;
+                    }
+                }
+            }
+            if (exception != null) {
+                throw new RuntimeException(exception);
             }
         }
 
@@ -1257,40 +2140,88 @@ public abstract class AbstractJdbcOutputPlugin
         @Override
         public TaskReport commit()
         {
-            return CONFIG_MAPPER_FACTORY.newTaskReport();
+            TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+            metrics.report(report);
+            if (batchSizer != null) {
+                logger.info("Adaptive batch size: {}", batchSizer.getBatchSize());
+                report.set("batch_size", batchSizer.getBatchSize());
+            }
+            return report;
+        }
+
+        protected void handleColumnsSetters() throws IOException, SQLException
+        {
+            lane.rowWriter.write(pageReader);
         }
 
-        protected void handleColumnsSetters()
+        protected void retryColumnsSetters(final Lane lane) throws IOException, SQLException
         {
-            int size = columnVisitors.size();
-            for (int i=0; i < size; i++) {
-                columns.get(i).visit(columnVisitors.get(i));
-            }
+            // retry failed records
+            lane.capture.retry(lane.batch.getLastUpdateCounts(), () -> {
+                lane.rowWriter.write(lane.capture.getRecords());
+                lane.batch.add();
+                lane.rows++;
+            });
         }
 
-        protected void retryColumnsSetters() throws IOException, SQLException
+        /**
+         * BatchInsert with its ColumnSetters and records kept for retry.
+         */
+        protected class Lane
         {
-            int size = columnVisitors.size();
-            int[] updateCounts = batch.getLastUpdateCounts();
-            int index = 0;
-            for (Iterator<? extends Record> it = pageReader.getReadRecords().iterator(); it.hasNext();) {
-                Record record = it.next();
-                // retry failed records
-                if (index >= updateCounts.length || updateCounts[index] == Statement.EXECUTE_FAILED) {
-                    for (int i = 0; i < size; i++) {
-                        ColumnSetterVisitor columnVisitor = new ColumnSetterVisitor(record, columnSetters.get(i));
-                        columns.get(i).visit(columnVisitor);
-                    }
-                    batch.add();
-                } else {
-                    // remove for re-retry
-                    it.remove();
-                }
-                index++;
+            private final int index;
+            private final BatchInsert batch;
+            private final RowWriter rowWriter;
+            private final RecordCapture capture;
+            private final boolean retryFlush;
+            private Future<Void> flushing;
+            private int rows;
+
+            private Lane(int index, BatchInsert batch, List<ColumnSetter> columnSetters)
+            {
+                this.index = index;
+                this.batch = batch;
+                this.rowWriter = new RowWriter(columns, columnSetters);
+                this.capture = new RecordCapture(columns,
+                        getRetryCaptureMode(task, batch), task.getRetryCaptureMemoryLimit());
+                // records are needed to retry but they are not kept
+                this.retryFlush = capture.getMode() != RetryCaptureMode.OFF
+                        || batch.getRetryCaptureMode() == RetryCaptureMode.OFF;
             }
         }
     }
 
+    protected int getBatchInsertCount(PluginTask task)
+    {
+        return Math.max(task.getConnectionsPerTask(), task.getMaxInFlightBatches() + 1);
+    }
+
+    protected ConnectionRouting getConnectionRouting(PluginTask task)
+    {
+        if (task.getConnectionRouting().isPresent()) {
+            return task.getConnectionRouting().get();
+        }
+        return task.getMode() == Mode.MERGE_DIRECT ? ConnectionRouting.MERGE_KEYS : ConnectionRouting.ROUND_ROBIN;
+    }
+
+    protected RetryCaptureMode getRetryCaptureMode(PluginTask task, BatchInsert batch)
+    {
+        RetryCaptureMode required = batch.getRetryCaptureMode();
+        if (!task.getRetryCapture().isPresent()) {
+            return required;
+        }
+
+        RetryCaptureMode mode = task.getRetryCapture().get();
+        if (required == RetryCaptureMode.OFF && mode != RetryCaptureMode.OFF) {
+            logger.info("retry_capture '{}' is ignored because {} doesn't need records to retry.", mode, batch.getClass().getSimpleName());
+            return RetryCaptureMode.OFF;
+        }
+        if (required != RetryCaptureMode.OFF && mode == RetryCaptureMode.OFF) {
+            logger.warn("Batch insert won't be retried because retry_capture is off.");
+        }
+        return mode;
+    }
+
     protected boolean isRetryableException(Exception exception)
     {
         if (exception instanceof SQLException) {
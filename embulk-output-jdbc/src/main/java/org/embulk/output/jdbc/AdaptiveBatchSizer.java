@@ -0,0 +1,75 @@
+package org.embulk.output.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adjusts batch size (weight of a batch to flush) toward the target latency of flush.
+ *
+ * The size grows additively while flushes are faster than the target latency,
+ * and shrinks to the half when a flush is slower (AIMD), between the minimum and the maximum size.
+ * Flushes of small batches, such as the last batch of a task, are not used because their latency
+ * doesn't tell about the size.
+ *
+ * Flushes may be observed from multiple threads.
+ */
+public class AdaptiveBatchSizer
+{
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchSizer.class);
+
+    // steps of additive increase per initial size
+    private static final int INCREASE_STEPS = 4;
+
+    private final long targetLatencyMillis;
+    private final int minSize;
+    private final int maxSize;
+    private final int increment;
+    private volatile int size;
+
+    public AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, long targetLatencyMillis)
+    {
+        if (minSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException(String.format("Invalid range of batch size: %d - %d", minSize, maxSize));
+        }
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.increment = Math.max(minSize, initialSize / INCREASE_STEPS);
+        this.size = clamp(initialSize);
+    }
+
+    /**
+     * Returns the current batch size.
+     */
+    public int getBatchSize()
+    {
+        return size;
+    }
+
+    /**
+     * Updates the batch size by a flush which took {@code latencyMillis} to flush {@code rows} rows weighing {@code weight}.
+     */
+    public synchronized void observe(int weight, int rows, long latencyMillis)
+    {
+        int current = size;
+        if (weight < current / 2) {
+            return;
+        }
+
+        int next;
+        if (latencyMillis > targetLatencyMillis) {
+            next = clamp(current / 2);
+        } else {
+            next = clamp((long) current + increment);
+        }
+        if (next != current) {
+            logger.debug("Batch size {} -> {} (flushed {} rows of weight {} in {} ms)", current, next, rows, weight, latencyMillis);
+            size = next;
+        }
+    }
+
+    private int clamp(long size)
+    {
+        return (int) Math.max(minSize, Math.min(maxSize, size));
+    }
+}
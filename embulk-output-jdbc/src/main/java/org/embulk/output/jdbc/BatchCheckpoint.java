@@ -0,0 +1,87 @@
+package org.embulk.output.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Progress of a task loading rows directly into the target table, stored in the checkpoint table.
+ *
+ * The checkpoint is written in the transaction of each batch, so the committed rows always match the
+ * rows in the target table. When the task is resumed, as many input records as the committed rows are skipped.
+ * Checkpoints are identified by the transaction and the task, so that transactions can share the table.
+ */
+public class BatchCheckpoint
+{
+    private final TableIdentifier table;
+    private final String transactionId;
+    private final int taskIndex;
+    private long batchSequence;
+    private long committedRows;
+
+    public BatchCheckpoint(TableIdentifier table, String transactionId, int taskIndex, long batchSequence, long committedRows)
+    {
+        this.table = table;
+        this.transactionId = transactionId;
+        this.taskIndex = taskIndex;
+        this.batchSequence = batchSequence;
+        this.committedRows = committedRows;
+    }
+
+    public static JdbcSchema getTableSchema()
+    {
+        return new JdbcSchema(Arrays.asList(
+                JdbcColumn.newGenericTypeColumn("transaction_id", Types.VARCHAR, "VARCHAR", 64, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("task_index", Types.BIGINT, "BIGINT", 22, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("batch_sequence", Types.BIGINT, "BIGINT", 22, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("committed_rows", Types.BIGINT, "BIGINT", 22, 0, false, false)));
+    }
+
+    public static void createTable(JdbcOutputConnection con, TableIdentifier table) throws SQLException
+    {
+        con.createTableIfNotExists(table, getTableSchema(), Optional.<String>empty(), Optional.<String>empty());
+    }
+
+    /**
+     * Reads the checkpoint of the task, or returns the initial one if the task hasn't committed any batch.
+     */
+    public static BatchCheckpoint read(JdbcOutputConnection con, TableIdentifier table, String transactionId, int taskIndex) throws SQLException
+    {
+        long[] values = con.readCheckpoint(table, transactionId, taskIndex);
+        if (values == null) {
+            return new BatchCheckpoint(table, transactionId, taskIndex, 0, 0);
+        }
+        return new BatchCheckpoint(table, transactionId, taskIndex, values[0], values[1]);
+    }
+
+    public String getTransactionId()
+    {
+        return transactionId;
+    }
+
+    public int getTaskIndex()
+    {
+        return taskIndex;
+    }
+
+    public long getBatchSequence()
+    {
+        return batchSequence;
+    }
+
+    public long getCommittedRows()
+    {
+        return committedRows;
+    }
+
+    /**
+     * Writes the checkpoint advanced by a batch of {@code rows} rows, and commits the transaction of the batch.
+     */
+    public void commit(JdbcOutputConnection con, long rows) throws SQLException
+    {
+        con.commitCheckpoint(table, transactionId, taskIndex, batchSequence + 1, committedRows + rows);
+        batchSequence++;
+        committedRows += rows;
+    }
+}
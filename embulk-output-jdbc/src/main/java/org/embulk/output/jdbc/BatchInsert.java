@@ -5,6 +5,13 @@ import java.util.Calendar;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+import java.util.TimeZone;
 
 public interface BatchInsert
 {
@@ -12,6 +19,12 @@ public interface BatchInsert
 
     public int getBatchWeight();
 
+    // estimated heap bytes retained until the batch is flushed, or 0 if values are not kept in the heap.
+    public default long getBatchHeapBytes()
+    {
+        return 0;
+    }
+
     public void add() throws IOException, SQLException;
 
     public void close() throws IOException, SQLException;
@@ -21,6 +34,20 @@ public interface BatchInsert
     // should be implemented for retry
     public int[] getLastUpdateCounts();
 
+    // how records should be kept to retry flush. Unless OFF, records which failed in the last flush are added again.
+    // OFF means that flush can be called again without them, or that flush won't be retried.
+    public default RetryCaptureMode getRetryCaptureMode()
+    {
+        return RetryCaptureMode.MEMORY;
+    }
+
+    // makes flush commit the checkpoint in the transaction of each batch. Must be called before prepare.
+    // returns false if the checkpoint can't be written in the same transaction.
+    public default boolean setCheckpoint(BatchCheckpoint checkpoint)
+    {
+        return false;
+    }
+
     public void finish() throws IOException, SQLException;
 
     public void setNull(int sqlType) throws IOException, SQLException;
@@ -52,4 +79,32 @@ public interface BatchInsert
     public void setSqlTime(Instant v, Calendar cal) throws IOException, SQLException;
 
     public void setSqlTimestamp(Instant v, Calendar cal) throws IOException, SQLException;
+
+    // whether java.time values can be set by the methods below, used by datetime_binding: java_time.
+    public default boolean supportsJavaTimeBinding()
+    {
+        return false;
+    }
+
+    // The defaults below bind java.time values through the legacy methods, with a calendar of the zone where
+    // the instant has the same local date and time.
+    public default void setLocalDate(LocalDate v) throws IOException, SQLException
+    {
+        setSqlDate(v.atStartOfDay(ZoneOffset.UTC).toInstant(), Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC), Locale.ENGLISH));
+    }
+
+    public default void setLocalTime(LocalTime v) throws IOException, SQLException
+    {
+        setSqlTime(v.atDate(LocalDate.ofEpochDay(0)).toInstant(ZoneOffset.UTC), Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC), Locale.ENGLISH));
+    }
+
+    public default void setLocalDateTime(LocalDateTime v) throws IOException, SQLException
+    {
+        setSqlTimestamp(v.toInstant(ZoneOffset.UTC), Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC), Locale.ENGLISH));
+    }
+
+    public default void setOffsetDateTime(OffsetDateTime v) throws IOException, SQLException
+    {
+        setSqlTimestamp(v.toInstant(), Calendar.getInstance(TimeZone.getTimeZone(v.getOffset()), Locale.ENGLISH));
+    }
 }
@@ -0,0 +1,168 @@
+package org.embulk.output.jdbc;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimates weight of values added to a batch, that is the number of bytes sent to the database,
+ * and heap bytes retained by the driver until the batch is executed.
+ *
+ * Strings are counted in the charset which the driver encodes them with. Subclasses can override
+ * the methods for drivers which send values in another format.
+ */
+public class BatchWeightEstimator
+{
+    public static final BatchWeightEstimator UTF_8 = new BatchWeightEstimator(StandardCharsets.UTF_8, StandardCharsets.UTF_16LE);
+    public static final BatchWeightEstimator UTF_16 = new BatchWeightEstimator(StandardCharsets.UTF_16LE, StandardCharsets.UTF_16LE);
+
+    // overhead of each row and each column in the protocol
+    private static final int ROW_WEIGHT = 32;
+    private static final int COLUMN_WEIGHT = 4;
+
+    // rough heap bytes of objects kept by the driver (64-bit JVM with compressed oops)
+    private static final int ROW_HEAP_BYTES = 16;      // array of parameters of a row
+    private static final int VALUE_HEAP_BYTES = 24;    // a parameter holding a value
+    private static final int STRING_HEAP_BYTES = 40;   // String and its array, excluding characters
+    private static final int ARRAY_HEAP_BYTES = 16;    // header of byte[]
+    private static final int DECIMAL_HEAP_BYTES = 40;  // BigDecimal and its BigInteger, excluding digits
+    private static final int DATE_HEAP_BYTES = 24;     // java.sql.Date
+    private static final int TIME_HEAP_BYTES = 24;     // java.sql.Time
+    private static final int TIMESTAMP_HEAP_BYTES = 32;
+
+    private final Charset stringCharset;
+    private final Charset nstringCharset;
+
+    public BatchWeightEstimator(Charset stringCharset, Charset nstringCharset)
+    {
+        this.stringCharset = stringCharset;
+        this.nstringCharset = nstringCharset;
+    }
+
+    public int getRowWeight(int columnCount)
+    {
+        return ROW_WEIGHT + COLUMN_WEIGHT * columnCount;
+    }
+
+    public long getRowHeapBytes(int columnCount)
+    {
+        return ROW_HEAP_BYTES + (long) (VALUE_HEAP_BYTES + 4) * columnCount;
+    }
+
+    public int getNullWeight()
+    {
+        return 0;
+    }
+
+    /**
+     * Returns weight of a value of fixed size, such as boolean (1), int (4) and double (8).
+     */
+    public int getFixedWeight(int bytes)
+    {
+        return bytes;
+    }
+
+    public int getBigDecimalWeight(BigDecimal v)
+    {
+        // assuming one place needs 4 bits. ceil(v.precision() / 2.0) + 8
+        return (v.precision() + 1) / 2 + 8;
+    }
+
+    public long getBigDecimalHeapBytes(BigDecimal v)
+    {
+        return DECIMAL_HEAP_BYTES + ARRAY_HEAP_BYTES + (v.precision() + 1) / 2;
+    }
+
+    public int getStringWeight(String v)
+    {
+        return encodedLength(v, stringCharset) + 4;
+    }
+
+    public int getNStringWeight(String v)
+    {
+        return encodedLength(v, nstringCharset) + 4;
+    }
+
+    public long getStringHeapBytes(String v)
+    {
+        return STRING_HEAP_BYTES + v.length() * 2L;
+    }
+
+    public int getBytesWeight(byte[] v)
+    {
+        return v.length + 4;
+    }
+
+    public long getBytesHeapBytes(byte[] v)
+    {
+        return ARRAY_HEAP_BYTES + v.length;
+    }
+
+    public int getDateWeight()
+    {
+        return 4;  // days
+    }
+
+    public int getTimeWeight()
+    {
+        return 8;  // microseconds
+    }
+
+    public int getTimestampWeight()
+    {
+        return 8;  // microseconds
+    }
+
+    public long getDateHeapBytes()
+    {
+        return DATE_HEAP_BYTES;
+    }
+
+    public long getTimeHeapBytes()
+    {
+        return TIME_HEAP_BYTES;
+    }
+
+    public long getTimestampHeapBytes()
+    {
+        return TIMESTAMP_HEAP_BYTES;
+    }
+
+    /**
+     * Returns the number of bytes of the string encoded with the charset.
+     * UTF-8 and single byte charsets are counted without encoding the string.
+     */
+    public static int encodedLength(String v, Charset charset)
+    {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return utf8Length(v);
+        } else if (charset.equals(StandardCharsets.UTF_16LE) || charset.equals(StandardCharsets.UTF_16BE)) {
+            return v.length() * 2;
+        } else if (charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1)) {
+            return v.length();
+        } else {
+            return v.getBytes(charset).length;
+        }
+    }
+
+    static int utf8Length(String v)
+    {
+        int length = v.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = v.charAt(i);
+            if (c < 0x80) {
+                continue;
+            } else if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(v.charAt(i + 1))) {
+                // 4 bytes for 2 chars
+                bytes += 2;
+                i++;
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,146 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.embulk.util.timestamp.TimestampFormatter;
+
+/**
+ * Formats timestamps to strings, reusing the date and the time rendered for the last second.
+ *
+ * Patterns like {@code %Y-%m-%d %H:%M:%S.%6N} (also with {@code T}, {@code %F}, {@code %T}, {@code %N}, {@code %L}
+ * or without fraction) are rendered by hand. The date is rendered once a day, the time once a second, and only
+ * the fraction of second is rendered for each timestamp. Other patterns, and years out of 1000-9999, are
+ * formatted by the TimestampFormatter. Not thread-safe.
+ */
+public class CachedTimestampFormatter
+{
+    // group 1: separator of date and time, group 2: fraction, group 3: digits of %N
+    private static final Pattern SUPPORTED_PATTERN = Pattern.compile("%Y-%m-%d([ T])%H:%M:%S(\\.(?:%([1-9])?N|%L))?");
+
+    private static final int SECONDS_PER_DAY = 86400;
+    // a day inside of the range so that local dates don't go out of it by offsets
+    private static final long MIN_EPOCH_SECOND = LocalDate.of(1000, 1, 2).toEpochDay() * SECONDS_PER_DAY;
+    private static final long MAX_EPOCH_SECOND = LocalDate.of(9999, 12, 31).toEpochDay() * SECONDS_PER_DAY;
+
+    private static final int[] POWERS_OF_TEN = {
+        1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000 };
+
+    private final TimestampFormatter formatter;
+    private final ZoneOffsetCache offsets;
+    private final int fractionDigits;
+    private final char[] buffer;
+
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private long cachedEpochSecond = Long.MIN_VALUE;
+    private int cachedNano;
+    private String cachedString;
+
+    /**
+     * Creates a formatter which just delegates to the TimestampFormatter.
+     */
+    public CachedTimestampFormatter(TimestampFormatter formatter)
+    {
+        this.formatter = formatter;
+        this.offsets = null;
+        this.fractionDigits = 0;
+        this.buffer = null;
+    }
+
+    private CachedTimestampFormatter(TimestampFormatter formatter, ZoneId zone, char separator, int fractionDigits)
+    {
+        this.formatter = formatter;
+        this.offsets = new ZoneOffsetCache(zone);
+        this.fractionDigits = fractionDigits;
+        this.buffer = "0000-00-00 00:00:00.000000000".substring(0, fractionDigits > 0 ? 20 + fractionDigits : 19).toCharArray();
+        buffer[10] = separator;
+    }
+
+    /**
+     * Creates a formatter for the pattern of the TimestampFormatter and the time zone of it.
+     */
+    public static CachedTimestampFormatter of(String pattern, ZoneId zone, TimestampFormatter formatter)
+    {
+        String format = pattern.startsWith("ruby:") ? pattern.substring(5) : pattern;
+        format = format.replace("%F", "%Y-%m-%d").replace("%T", "%H:%M:%S");
+        Matcher matcher = SUPPORTED_PATTERN.matcher(format);
+        if (!matcher.matches()) {
+            return new CachedTimestampFormatter(formatter);
+        }
+
+        int fractionDigits;
+        if (matcher.group(2) == null) {
+            fractionDigits = 0;
+        } else if (matcher.group(2).equals(".%L")) {
+            fractionDigits = 3;
+        } else if (matcher.group(3) == null) {
+            fractionDigits = 9;
+        } else {
+            fractionDigits = Integer.parseInt(matcher.group(3));
+        }
+        return new CachedTimestampFormatter(formatter, zone, matcher.group(1).charAt(0), fractionDigits);
+    }
+
+    public boolean isCached()
+    {
+        return offsets != null;
+    }
+
+    public String format(Instant v)
+    {
+        long epochSecond = v.getEpochSecond();
+        if (offsets == null || epochSecond < MIN_EPOCH_SECOND || epochSecond >= MAX_EPOCH_SECOND) {
+            return formatter.format(v);
+        }
+
+        int nano = v.getNano();
+        if (epochSecond == cachedEpochSecond) {
+            if (fractionDigits == 0 || nano == cachedNano) {
+                return cachedString;
+            }
+        } else {
+            renderSecond(epochSecond);
+        }
+
+        if (fractionDigits > 0) {
+            // fraction of second is truncated like strftime
+            int fraction = nano / POWERS_OF_TEN[9 - fractionDigits];
+            for (int i = 19 + fractionDigits; i > 19; i--) {
+                buffer[i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+        }
+        cachedNano = nano;
+        cachedString = new String(buffer);
+        return cachedString;
+    }
+
+    private void renderSecond(long epochSecond)
+    {
+        long localSecond = epochSecond + offsets.getOffsetSeconds(epochSecond);
+        long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+        if (epochDay != cachedEpochDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            putDigits(0, 4, date.getYear());
+            putDigits(5, 2, date.getMonthValue());
+            putDigits(8, 2, date.getDayOfMonth());
+            cachedEpochDay = epochDay;
+        }
+        int secondOfDay = (int) Math.floorMod(localSecond, SECONDS_PER_DAY);
+        putDigits(11, 2, secondOfDay / 3600);
+        putDigits(14, 2, secondOfDay / 60 % 60);
+        putDigits(17, 2, secondOfDay % 60);
+        cachedEpochSecond = epochSecond;
+    }
+
+    private void putDigits(int offset, int length, int value)
+    {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.embulk.output.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of idle connections to a database, shared by all tasks in the JVM.
+ *
+ * A connection is returned to the pool by {@link JdbcOutputConnection#close()} after its session state is reset,
+ * and validated when it is borrowed again. Connections idle longer than the idle timeout are closed.
+ * The number of idle connections is bounded, but the number of borrowed connections is not, so borrowing never blocks.
+ */
+public class ConnectionPool
+{
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static final ConcurrentHashMap<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    public static interface ConnectionFactory
+    {
+        public JdbcOutputConnection connect() throws SQLException;
+    }
+
+    private final int maxIdleConnections;
+    private final long idleTimeoutMillis;
+    private final Deque<IdleConnection> idleConnections = new ArrayDeque<>();
+
+    ConnectionPool(int maxIdleConnections, long idleTimeoutMillis)
+    {
+        this.maxIdleConnections = maxIdleConnections;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Returns the pool for connections identified by the key. The first caller decides the size and the timeout.
+     */
+    public static ConnectionPool get(String key, int maxIdleConnections, long idleTimeoutMillis)
+    {
+        return POOLS.computeIfAbsent(key, k -> new ConnectionPool(maxIdleConnections, idleTimeoutMillis));
+    }
+
+    public JdbcOutputConnection borrow(ConnectionFactory factory) throws SQLException
+    {
+        while (true) {
+            JdbcOutputConnection con = pollIdleConnection();
+            if (con == null) {
+                break;
+            }
+            if (isValid(con)) {
+                return con;
+            }
+            logger.info("Discarding an invalid pooled connection");
+            closeQuietly(con);
+        }
+
+        JdbcOutputConnection con = factory.connect();
+        con.setPool(this);
+        return con;
+    }
+
+    void release(JdbcOutputConnection con)
+    {
+        try {
+            con.resetSession();
+        } catch (SQLException ex) {
+            logger.info("Discarding a connection which failed to reset session: {}", ex.toString());
+            closeQuietly(con);
+            return;
+        }
+
+        boolean pooled;
+        synchronized (this) {
+            evictExpiredConnections(System.currentTimeMillis());
+            pooled = idleConnections.size() < maxIdleConnections;
+            if (pooled) {
+                idleConnections.push(new IdleConnection(con, System.currentTimeMillis()));
+            }
+        }
+        if (!pooled) {
+            closeQuietly(con);
+        }
+    }
+
+    synchronized int getIdleConnectionCount()
+    {
+        return idleConnections.size();
+    }
+
+    private synchronized JdbcOutputConnection pollIdleConnection()
+    {
+        evictExpiredConnections(System.currentTimeMillis());
+        // most recently used one is the most likely to be alive
+        IdleConnection idle = idleConnections.poll();
+        return idle == null ? null : idle.connection;
+    }
+
+    // must be called with the lock
+    private void evictExpiredConnections(long now)
+    {
+        Iterator<IdleConnection> it = idleConnections.iterator();
+        while (it.hasNext()) {
+            IdleConnection idle = it.next();
+            if (now - idle.releasedAt >= idleTimeoutMillis) {
+                it.remove();
+                closeQuietly(idle.connection);
+            }
+        }
+    }
+
+    private boolean isValid(JdbcOutputConnection con)
+    {
+        try {
+            return con.isValidConnection(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(JdbcOutputConnection con)
+    {
+        try {
+            con.closeConnection();
+        } catch (SQLException ex) {
+            logger.warn("Failed to close a pooled connection: {}", ex.toString());
+        }
+    }
+
+    private static class IdleConnection
+    {
+        private final JdbcOutputConnection connection;
+        private final long releasedAt;
+
+        IdleConnection(JdbcOutputConnection connection, long releasedAt)
+        {
+            this.connection = connection;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
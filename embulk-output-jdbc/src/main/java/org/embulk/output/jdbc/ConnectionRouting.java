@@ -0,0 +1,43 @@
+package org.embulk.output.jdbc;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How records of a task are distributed to its connections when connections_per_task is more than 1.
+ */
+public enum ConnectionRouting
+{
+    /**
+     * Each batch is written to the next connection in turn.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * Each record is written to the connection chosen by hash of its merge keys,
+     * so that records with the same keys are written through the same connection in order.
+     */
+    MERGE_KEYS;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static ConnectionRouting fromString(String value)
+    {
+        for (ConnectionRouting routing : values()) {
+            if (routing.toString().equals(value)) {
+                return routing;
+            }
+        }
+        throw new ConfigException(String.format("Unknown connection_routing '%s'. Supported values are round_robin and merge_keys.", value));
+    }
+}
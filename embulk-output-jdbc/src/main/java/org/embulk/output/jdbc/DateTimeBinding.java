@@ -0,0 +1,42 @@
+package org.embulk.output.jdbc;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How timestamps are bound to date, time and timestamp columns.
+ */
+public enum DateTimeBinding
+{
+    /**
+     * java.sql.Date, Time and Timestamp are bound with a Calendar of the time zone.
+     */
+    LEGACY,
+
+    /**
+     * LocalDate, LocalTime, LocalDateTime or OffsetDateTime in the time zone is bound by setObject of JDBC 4.2.
+     */
+    JAVA_TIME;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static DateTimeBinding fromString(String value)
+    {
+        for (DateTimeBinding binding : values()) {
+            if (binding.toString().equals(value)) {
+                return binding;
+            }
+        }
+        throw new ConfigException(String.format("Unknown datetime_binding '%s'. Supported values are legacy and java_time.", value));
+    }
+}
@@ -0,0 +1,42 @@
+package org.embulk.output.jdbc;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How records are inserted by the generic JDBC output.
+ */
+public enum InsertMethod
+{
+    /**
+     * A statement inserting a row is executed in batch.
+     */
+    NORMAL,
+
+    /**
+     * A statement inserting multiple rows by a VALUES list is executed in batch.
+     */
+    MULTI_VALUES;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static InsertMethod fromString(String value)
+    {
+        for (InsertMethod insertMethod : InsertMethod.values()) {
+            if (insertMethod.toString().equals(value)) {
+                return insertMethod;
+            }
+        }
+        throw new ConfigException(String.format("Unknown insert_method '%s'. Supported values are normal and multi_values.", value));
+    }
+}
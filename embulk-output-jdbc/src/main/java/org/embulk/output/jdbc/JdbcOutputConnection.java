@@ -1,5 +1,9 @@
 package org.embulk.output.jdbc;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -11,7 +15,10 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 
+import org.embulk.output.jdbc.jfr.EventScope;
+import org.embulk.output.jdbc.jfr.JdbcOutputEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +30,9 @@ public class JdbcOutputConnection
     protected final String schemaName;
     protected final DatabaseMetaData databaseMetaData;
     protected String identifierQuoteString;
+    private ConnectionPool pool;
+    private boolean userSqlExecuted;
+    private Integer defaultTransactionIsolation;
 
     public JdbcOutputConnection(Connection connection, String schemaName)
             throws SQLException
@@ -41,6 +51,9 @@ public class JdbcOutputConnection
     {
         connection.setAutoCommit(autoCommit);
 
+        if (defaultTransactionIsolation == null) {
+            defaultTransactionIsolation = connection.getTransactionIsolation();
+        }
         if (transactionIsolation.isPresent()) {
             connection.setTransactionIsolation(transactionIsolation.get().toInt());
         }
@@ -53,14 +66,48 @@ public class JdbcOutputConnection
         }
     }
 
+    /**
+     * Closes the connection, or returns it to the pool if it was borrowed from a pool.
+     * A connection which executed SQL of users is not returned, because the SQL may change the session in any way.
+     */
     @Override
     public void close() throws SQLException
+    {
+        if (pool != null && !userSqlExecuted && !connection.isClosed()) {
+            pool.release(this);
+        } else {
+            closeConnection();
+        }
+    }
+
+    void closeConnection() throws SQLException
     {
         if (!connection.isClosed()) {
             connection.close();
         }
     }
 
+    void setPool(ConnectionPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Resets state of the session changed by this plugin or SQL of users, before the connection is reused.
+     */
+    protected void resetSession() throws SQLException
+    {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+        }
+        if (defaultTransactionIsolation != null) {
+            connection.setTransactionIsolation(defaultTransactionIsolation);
+        }
+        if (schemaName != null) {
+            setSearchPath(schemaName);
+        }
+    }
+
     public String getSchemaName()
     {
         return schemaName;
@@ -100,6 +147,88 @@ public class JdbcOutputConnection
         return tableExists(new TableIdentifier(null, schemaName, tableName));
     }
 
+    /**
+     * Returns tables which exist among {@code tableNames} in the schema of this connection.
+     *
+     * If {@link #getCurrentSchemaSql()} is supported, they are looked up by a query of information_schema
+     * instead of calling DatabaseMetaData.getTables for each table, which is slow on large catalogs.
+     * Names returned by the query are mapped to {@code tableNames} without case sensitivity, because
+     * table_name may be compared so. DatabaseMetaData is used only if the query is unavailable or fails.
+     * information_schema may hide tables without privileges (e.g. PostgreSQL), but they are not looked up
+     * again because the plugin can't load into them anyway.
+     */
+    public Set<String> findExistingTables(Collection<String> tableNames) throws SQLException
+    {
+        Set<String> existingTables = new HashSet<>();
+        if (tableNames.isEmpty()) {
+            return existingTables;
+        }
+        String currentSchemaSql = getCurrentSchemaSql();
+        if (currentSchemaSql != null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("SELECT table_name FROM information_schema.tables WHERE table_schema = ");
+            sb.append(schemaName != null ? "?" : currentSchemaSql);
+            sb.append(" AND table_name IN (");
+            for (int i = 0; i < tableNames.size(); i++) {
+                if (i != 0) { sb.append(", "); }
+                sb.append("?");
+            }
+            sb.append(")");
+            String sql = sb.toString();
+
+            logger.info("SQL: " + sql);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                int index = 1;
+                if (schemaName != null) {
+                    stmt.setString(index++, schemaName);
+                }
+                for (String tableName : tableNames) {
+                    stmt.setString(index++, tableName);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        existingTables.addAll(matchTableNames(rs.getString(1), tableNames));
+                    }
+                }
+                return existingTables;
+            } catch (SQLException ex) {
+                logger.warn("Failed to look up tables in information_schema. Using DatabaseMetaData instead: {}", ex.getMessage());
+                existingTables.clear();
+            }
+        }
+
+        for (String tableName : tableNames) {
+            if (tableExists(tableName)) {
+                existingTables.add(tableName);
+            }
+        }
+        return existingTables;
+    }
+
+    // the name which equals to the found table, or names which equal to it ignoring case
+    static List<String> matchTableNames(String foundTable, Collection<String> tableNames)
+    {
+        if (tableNames.contains(foundTable)) {
+            return Collections.singletonList(foundTable);
+        }
+        List<String> matches = new ArrayList<>();
+        for (String tableName : tableNames) {
+            if (tableName.equalsIgnoreCase(foundTable)) {
+                matches.add(tableName);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns SQL expression of the current schema to look up information_schema,
+     * or null if the database doesn't support information_schema.
+     */
+    protected String getCurrentSchemaSql()
+    {
+        return null;
+    }
+
     protected boolean supportsTableIfExistsClause()
     {
         return true;
@@ -370,6 +499,126 @@ public class JdbcOutputConnection
         throw new UnsupportedOperationException("not implemented");
     }
 
+    /**
+     * Prepares INSERT statement which inserts {@code rows} rows by a VALUES list.
+     */
+    public PreparedStatement prepareMultiValuesInsertStatement(TableIdentifier toTable, JdbcSchema toTableSchema, int rows) throws SQLException
+    {
+        String sql = buildPreparedMultiValuesInsertSql(toTable, toTableSchema, rows);
+        logger.info("Prepared SQL: {}", sql.length() > 1024 ? sql.substring(0, 1024) + "..." : sql);
+        return connection.prepareStatement(sql);
+    }
+
+    protected String buildPreparedMultiValuesInsertSql(TableIdentifier toTable, JdbcSchema toTableSchema, int rows) throws SQLException
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("INSERT INTO ");
+        quoteTableIdentifier(sb, toTable);
+
+        sb.append(" (");
+        for (int i=0; i < toTableSchema.getCount(); i++) {
+            if(i != 0) { sb.append(", "); }
+            quoteIdentifierString(sb, toTableSchema.getColumnName(i));
+        }
+        sb.append(") VALUES ");
+        for (int row = 0; row < rows; row++) {
+            if (row != 0) { sb.append(", "); }
+            sb.append("(");
+            for(int i=0; i < toTableSchema.getCount(); i++) {
+                if(i != 0) { sb.append(", "); }
+                sb.append("?");
+            }
+            sb.append(")");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the maximum number of parameters in a prepared statement.
+     * The default is a conservative value which is safe for most databases. Subclasses return the limit of the database.
+     */
+    public int getMaxParameterCount() throws SQLException
+    {
+        return 2000;
+    }
+
+    /**
+     * Returns batch sequence and committed rows of the task of the transaction in the checkpoint table, or null if not found.
+     */
+    public long[] readCheckpoint(TableIdentifier table, String transactionId, int taskIndex) throws SQLException
+    {
+        String sql = "SELECT batch_sequence, committed_rows FROM " + quoteTableIdentifier(table) + " WHERE transaction_id = ? AND task_index = ?";
+        logger.info("SQL: " + sql);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, transactionId);
+            stmt.setLong(2, taskIndex);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new long[] { rs.getLong(1), rs.getLong(2) };
+            }
+        }
+    }
+
+    /**
+     * Writes the checkpoint of the task, and commits the transaction including the batch written before it.
+     * The connection must not be auto-commit.
+     */
+    public void commitCheckpoint(TableIdentifier table, String transactionId, int taskIndex, long batchSequence, long committedRows) throws SQLException
+    {
+        try {
+            String updateSql = "UPDATE " + quoteTableIdentifier(table) + " SET batch_sequence = ?, committed_rows = ? WHERE transaction_id = ? AND task_index = ?";
+            int count;
+            try (PreparedStatement stmt = connection.prepareStatement(updateSql)) {
+                stmt.setLong(1, batchSequence);
+                stmt.setLong(2, committedRows);
+                stmt.setString(3, transactionId);
+                stmt.setLong(4, taskIndex);
+                count = stmt.executeUpdate();
+            }
+            if (count == 0) {
+                String insertSql = "INSERT INTO " + quoteTableIdentifier(table) + " (transaction_id, task_index, batch_sequence, committed_rows) VALUES (?, ?, ?, ?)";
+                try (PreparedStatement stmt = connection.prepareStatement(insertSql)) {
+                    stmt.setString(1, transactionId);
+                    stmt.setLong(2, taskIndex);
+                    stmt.setLong(3, batchSequence);
+                    stmt.setLong(4, committedRows);
+                    stmt.executeUpdate();
+                }
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            throw safeRollback(connection, ex);
+        }
+    }
+
+    /**
+     * Rolls back the transaction of a batch which failed before its checkpoint is committed.
+     */
+    public SQLException rollbackBatch(SQLException cause)
+    {
+        return safeRollback(connection, cause);
+    }
+
+    /**
+     * Deletes checkpoints of the transaction. Checkpoints of other transactions are kept.
+     */
+    public void deleteCheckpoints(TableIdentifier table, String transactionId) throws SQLException
+    {
+        String sql = "DELETE FROM " + quoteTableIdentifier(table) + " WHERE transaction_id = ?";
+        logger.info("SQL: " + sql);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, transactionId);
+            stmt.executeUpdate();
+            commitIfNecessary(connection);
+        } catch (SQLException ex) {
+            throw safeRollback(connection, ex);
+        }
+    }
+
     @Deprecated // Use executeUpdateInNewStatement instead.
     protected void executeSql(String sql) throws SQLException
     {
@@ -403,6 +652,16 @@ public class JdbcOutputConnection
 
     protected void collectInsert(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable,
             boolean truncateDestinationFirst, Optional<String> preSql, Optional<String> postSql) throws SQLException
+    {
+        collectInsert(fromTables, schema, toTable, truncateDestinationFirst, preSql, postSql, 0);
+    }
+
+    /**
+     * Inserts rows of {@code fromTables} into {@code toTable} in a transaction,
+     * by a statement for each {@code chunkSize} tables. 0 means all tables by a statement.
+     */
+    protected void collectInsert(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable,
+            boolean truncateDestinationFirst, Optional<String> preSql, Optional<String> postSql, int chunkSize) throws SQLException
     {
         if (fromTables.isEmpty()) {
             return;
@@ -419,8 +678,12 @@ public class JdbcOutputConnection
                 execute(stmt, preSql.get());
             }
 
-            String sql = buildCollectInsertSql(fromTables, schema, toTable);
-            executeUpdate(stmt, sql);
+            List<List<TableIdentifier>> chunks = partition(fromTables, chunkSize);
+            for (int i = 0; i < chunks.size(); i++) {
+                long startTime = System.currentTimeMillis();
+                int count = executeUpdate(stmt, buildCollectInsertSql(chunks.get(i), schema, toTable));
+                logCollectedChunk(i, chunks, count, startTime);
+            }
 
             if (postSql.isPresent()) {
                 execute(stmt, postSql.get());
@@ -434,6 +697,30 @@ public class JdbcOutputConnection
         }
     }
 
+    /**
+     * Splits tables into chunks of {@code chunkSize} tables. 0 means a chunk of all tables.
+     */
+    public static <T> List<List<T>> partition(List<T> list, int chunkSize)
+    {
+        if (chunkSize <= 0 || chunkSize >= list.size()) {
+            return Collections.singletonList(list);
+        }
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += chunkSize) {
+            chunks.add(list.subList(i, Math.min(i + chunkSize, list.size())));
+        }
+        return chunks;
+    }
+
+    private void logCollectedChunk(int index, List<? extends List<?>> chunks, int count, long startTime)
+    {
+        if (chunks.size() > 1) {
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            logger.info(String.format("Collected chunk %d/%d (%d tables, %,d rows) in %.2f seconds",
+                        index + 1, chunks.size(), chunks.get(index).size(), count, seconds));
+        }
+    }
+
     protected String buildTruncateSql(TableIdentifier table)
     {
         StringBuilder sb = new StringBuilder();
@@ -472,6 +759,16 @@ public class JdbcOutputConnection
 
     protected void collectUpdateInsert(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable,
             MergeConfig mergeConfig, Optional<String> preSql, Optional<String> postSql) throws SQLException
+    {
+        collectUpdateInsert(fromTables, schema, toTable, mergeConfig, preSql, postSql, 0);
+    }
+
+    /**
+     * Updates and inserts rows of {@code fromTables} into {@code toTable} in a transaction,
+     * for each {@code chunkSize} tables in order. 0 means all tables at once.
+     */
+    protected void collectUpdateInsert(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable,
+            MergeConfig mergeConfig, Optional<String> preSql, Optional<String> postSql, int chunkSize) throws SQLException
     {
         if (fromTables.isEmpty()) {
             return;
@@ -483,8 +780,13 @@ public class JdbcOutputConnection
                 execute(stmt, preSql.get());
             }
 
-            executeUpdate(stmt, buildCollectUpdateSql(fromTables, schema, toTable, mergeConfig));
-            executeUpdate(stmt, buildCollectInsertSql(fromTables, schema, toTable, mergeConfig));
+            List<List<TableIdentifier>> chunks = partition(fromTables, chunkSize);
+            for (int i = 0; i < chunks.size(); i++) {
+                long startTime = System.currentTimeMillis();
+                int count = executeUpdate(stmt, buildCollectUpdateSql(chunks.get(i), schema, toTable, mergeConfig));
+                count += executeUpdate(stmt, buildCollectInsertSql(chunks.get(i), schema, toTable, mergeConfig));
+                logCollectedChunk(i, chunks, count, startTime);
+            }
 
             if (postSql.isPresent()) {
                 execute(stmt, postSql.get());
@@ -512,6 +814,16 @@ public class JdbcOutputConnection
 
     protected void collectMerge(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable, MergeConfig mergeConfig,
             Optional<String> preSql, Optional<String> postSql) throws SQLException
+    {
+        collectMerge(fromTables, schema, toTable, mergeConfig, preSql, postSql, 0);
+    }
+
+    /**
+     * Merges rows of {@code fromTables} into {@code toTable} in a transaction,
+     * by a statement for each {@code chunkSize} tables in order. 0 means all tables by a statement.
+     */
+    protected void collectMerge(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable, MergeConfig mergeConfig,
+            Optional<String> preSql, Optional<String> postSql, int chunkSize) throws SQLException
     {
         if (fromTables.isEmpty()) {
             return;
@@ -523,8 +835,12 @@ public class JdbcOutputConnection
                 execute(stmt, preSql.get());
             }
 
-            String sql = buildCollectMergeSql(fromTables, schema, toTable, mergeConfig);
-            executeUpdate(stmt, sql);
+            List<List<TableIdentifier>> chunks = partition(fromTables, chunkSize);
+            for (int i = 0; i < chunks.size(); i++) {
+                long startTime = System.currentTimeMillis();
+                int count = executeUpdate(stmt, buildCollectMergeSql(chunks.get(i), schema, toTable, mergeConfig));
+                logCollectedChunk(i, chunks, count, startTime);
+            }
 
             if (postSql.isPresent()) {
                 execute(stmt, postSql.get());
@@ -611,6 +927,7 @@ public class JdbcOutputConnection
     {
         Statement stmt = connection.createStatement();
         try {
+            stmt.setQueryTimeout(timeout);
             stmt.executeQuery("SELECT 1").close();
             return true;
         } catch (SQLException ex) {
@@ -678,7 +995,11 @@ public class JdbcOutputConnection
     {
         logger.info("SQL: " + sql);
         long startTime = System.currentTimeMillis();
-        int count = stmt.executeUpdate(sql);
+        int count;
+        try (EventScope event = JdbcOutputEvents.sql(sql)) {
+            count = stmt.executeUpdate(sql);
+            event.setRows(count);
+        }
         double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
         if (count == 0) {
             logger.info(String.format("> %.2f seconds", seconds));
@@ -688,11 +1009,16 @@ public class JdbcOutputConnection
         return count;
     }
 
+    // used to execute before_load and after_load
     protected boolean execute(Statement stmt, String sql) throws SQLException
     {
+        userSqlExecuted = true;
         logger.info("SQL: " + sql);
         long startTime = System.currentTimeMillis();
-        boolean result = stmt.execute(sql);
+        boolean result;
+        try (EventScope event = JdbcOutputEvents.sql(sql)) {
+            result = stmt.execute(sql);
+        }
         double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
         if (result) {
             logger.info(String.format("> succeed %.2f seconds", seconds));
@@ -0,0 +1,124 @@
+package org.embulk.output.jdbc;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Histogram of non-negative values with log-linear buckets, in the same way as HdrHistogram.
+ *
+ * Each power of 2 range is divided into 16 buckets, so that a percentile has relative error
+ * less than 1/16. Histograms can be converted to a map of non-empty buckets to send them in
+ * task reports, and merged.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long max;
+
+    public synchronized void record(long value)
+    {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        counts[bucketOf(value)]++;
+        totalCount++;
+        max = Math.max(max, value);
+    }
+
+    public synchronized long getCount()
+    {
+        return totalCount;
+    }
+
+    public synchronized long getMax()
+    {
+        return max;
+    }
+
+    /**
+     * Returns the upper bound of the bucket which includes the percentile, or 0 if the histogram is empty.
+     */
+    public synchronized long getPercentile(double percentile)
+    {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(totalCount * percentile / 100.0));
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts[i];
+            if (count >= rank) {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized void merge(LatencyHistogram other)
+    {
+        synchronized (other) {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] += other.counts[i];
+            }
+            totalCount += other.totalCount;
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Returns non-empty buckets as a map from the bucket index to the count, with "max".
+     */
+    public synchronized Map<String, Long> toMap()
+    {
+        Map<String, Long> map = new TreeMap<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                map.put(String.valueOf(i), counts[i]);
+            }
+        }
+        map.put("max", max);
+        return map;
+    }
+
+    public static LatencyHistogram fromMap(Map<?, ?> map)
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            long value = ((Number) entry.getValue()).longValue();
+            if (entry.getKey().toString().equals("max")) {
+                histogram.max = Math.max(histogram.max, value);
+            } else {
+                histogram.counts[Integer.parseInt(entry.getKey().toString())] += value;
+                histogram.totalCount += value;
+            }
+        }
+        return histogram;
+    }
+
+    static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);  // >= SUB_BUCKET_BITS
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long upperBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKET_COUNT;
+        long lowerBound = (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + width - 1;
+    }
+}
@@ -0,0 +1,174 @@
+package org.embulk.output.jdbc;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.embulk.config.TaskReport;
+
+/**
+ * Metrics of loading records in a task, reported in the task report, and aggregated for the config diff.
+ *
+ * Flushes may be recorded from multiple threads.
+ */
+public class LoadMetrics
+{
+    static final String ROWS = "rows";
+    static final String BYTES = "bytes";
+    static final String FLUSHES = "flushes";
+    static final String RETRIES = "retries";
+    static final String REJECTED = "rejected";
+    static final String DEDUPLICATED = "deduplicated";
+    static final String CONVERSION_NANOS = "conversion_nanos";
+    static final String FLUSH_NANOS = "flush_nanos";
+    static final String WAIT_NANOS = "wait_nanos";
+    static final String FLUSH_LATENCY_HISTOGRAM = "flush_latency_histogram";  // in microseconds
+
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong conversionNanos = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    /**
+     * Records a successful flush of {@code rows} rows weighing {@code bytes}.
+     */
+    public void addFlush(long rows, long bytes, long nanos)
+    {
+        this.rows.addAndGet(rows);
+        this.bytes.addAndGet(bytes);
+        this.flushes.incrementAndGet();
+        this.flushNanos.addAndGet(nanos);
+        flushLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void addRetry()
+    {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Records a row rejected by the database and written to the reject sink.
+     */
+    public void addRejected()
+    {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Records rows dropped because a later row in the same batch has the same merge keys.
+     */
+    public void addDeduplicated(long rows)
+    {
+        deduplicated.addAndGet(rows);
+    }
+
+    /**
+     * Records time spent to convert records and add them to batches.
+     */
+    public void addConversionNanos(long nanos)
+    {
+        conversionNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Records time that the task was blocked by flush.
+     */
+    public void addWaitNanos(long nanos)
+    {
+        waitNanos.addAndGet(nanos);
+    }
+
+    public long getRows()
+    {
+        return rows.get();
+    }
+
+    public void report(TaskReport report)
+    {
+        report.set(ROWS, rows.get());
+        report.set(BYTES, bytes.get());
+        report.set(FLUSHES, flushes.get());
+        report.set(RETRIES, retries.get());
+        report.set(REJECTED, rejected.get());
+        report.set(DEDUPLICATED, deduplicated.get());
+        report.set(CONVERSION_NANOS, conversionNanos.get());
+        report.set(FLUSH_NANOS, flushNanos.get());
+        report.set(WAIT_NANOS, waitNanos.get());
+        report.set(FLUSH_LATENCY_HISTOGRAM, flushLatency.toMap());
+    }
+
+    /**
+     * Aggregates metrics in task reports. Task reports without metrics are ignored.
+     */
+    public static Map<String, Object> aggregate(List<TaskReport> taskReports)
+    {
+        long rows = 0;
+        long bytes = 0;
+        long flushes = 0;
+        long retries = 0;
+        long rejected = 0;
+        long deduplicated = 0;
+        long conversionNanos = 0;
+        long flushNanos = 0;
+        long waitNanos = 0;
+        LatencyHistogram flushLatency = new LatencyHistogram();
+        int tasks = 0;
+        for (TaskReport report : taskReports) {
+            if (!report.has(ROWS)) {
+                continue;
+            }
+            tasks++;
+            rows += report.get(Long.class, ROWS);
+            bytes += report.get(Long.class, BYTES);
+            flushes += report.get(Long.class, FLUSHES);
+            retries += report.get(Long.class, RETRIES);
+            if (report.has(REJECTED)) {
+                rejected += report.get(Long.class, REJECTED);
+            }
+            if (report.has(DEDUPLICATED)) {
+                deduplicated += report.get(Long.class, DEDUPLICATED);
+            }
+            conversionNanos += report.get(Long.class, CONVERSION_NANOS);
+            flushNanos += report.get(Long.class, FLUSH_NANOS);
+            waitNanos += report.get(Long.class, WAIT_NANOS);
+            flushLatency.merge(LatencyHistogram.fromMap(report.get(Map.class, FLUSH_LATENCY_HISTOGRAM)));
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("tasks", tasks);
+        metrics.put(ROWS, rows);
+        metrics.put(BYTES, bytes);
+        metrics.put(FLUSHES, flushes);
+        metrics.put(RETRIES, retries);
+        metrics.put(REJECTED, rejected);
+        metrics.put(DEDUPLICATED, deduplicated);
+        metrics.put("conversion_seconds", toSeconds(conversionNanos));
+        metrics.put("flush_seconds", toSeconds(flushNanos));
+        metrics.put("wait_seconds", toSeconds(waitNanos));
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", toMillis(flushLatency.getPercentile(50)));
+        latency.put("p90", toMillis(flushLatency.getPercentile(90)));
+        latency.put("p99", toMillis(flushLatency.getPercentile(99)));
+        latency.put("max", toMillis(flushLatency.getMax()));
+        metrics.put("flush_latency_millis", latency);
+        return metrics;
+    }
+
+    private static double toSeconds(long nanos)
+    {
+        return nanos / 1000000000.0;
+    }
+
+    private static double toMillis(long micros)
+    {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,95 @@
+package org.embulk.output.jdbc;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.spi.Column;
+
+/**
+ * Removes rows superseded by a later row with the same merge keys in a batch (last writer wins).
+ *
+ * Rows are indexed by an open addressing hash table of row positions, reused for each batch, so that
+ * no object is created per row. Rows with a null merge key are never removed, because they don't
+ * match each other in the database. Not thread-safe.
+ */
+public class MergeKeyDeduplicator
+{
+    private static final int MIN_CAPACITY = 64;
+
+    private final List<Column> keyColumns;
+    private int[] slots = new int[MIN_CAPACITY];  // position in rows + 1, or 0 if empty
+    private int[] hashes = new int[0];
+    private boolean[] superseded = new boolean[0];
+
+    public MergeKeyDeduplicator(List<Column> keyColumns)
+    {
+        this.keyColumns = keyColumns;
+    }
+
+    /**
+     * Returns the rows without rows superseded by a later one, in the given order.
+     */
+    public int[] deduplicate(RecordBuffer records, int[] rows)
+    {
+        int capacity = MIN_CAPACITY;
+        while (capacity < rows.length * 2) {
+            capacity <<= 1;
+        }
+        if (slots.length < capacity) {
+            slots = new int[capacity];
+        } else {
+            Arrays.fill(slots, 0, capacity, 0);
+        }
+        if (hashes.length < rows.length) {
+            hashes = new int[rows.length];
+            superseded = new boolean[rows.length];
+        } else {
+            Arrays.fill(superseded, 0, rows.length, false);
+        }
+
+        int mask = capacity - 1;
+        int removed = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int row = rows[i];
+            if (records.hasNull(row, keyColumns)) {
+                continue;
+            }
+            int hash = records.hashValues(row, keyColumns);
+            hashes[i] = hash;
+            int slot = mix(hash) & mask;
+            while (true) {
+                int position = slots[slot] - 1;
+                if (position < 0) {
+                    slots[slot] = i + 1;
+                    break;
+                }
+                if (hashes[position] == hash && records.equalValues(rows[position], row, keyColumns)) {
+                    superseded[position] = true;
+                    slots[slot] = i + 1;
+                    removed++;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        if (removed == 0) {
+            return rows;
+        }
+        int[] result = new int[rows.length - removed];
+        int count = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (!superseded[i]) {
+                result[count++] = rows[i];
+            }
+        }
+        return result;
+    }
+
+    private static int mix(int hash)
+    {
+        // spread hash codes of small longs, which differ only in low bits
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
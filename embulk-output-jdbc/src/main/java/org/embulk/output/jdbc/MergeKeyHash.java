@@ -0,0 +1,88 @@
+package org.embulk.output.jdbc;
+
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.PageReader;
+
+/**
+ * Hash of merge key values of the current record of PageReader.
+ * The hash depends only on the values, so that records with the same keys always get the same hash.
+ */
+public class MergeKeyHash
+        implements ColumnVisitor
+{
+    private final List<Column> keyColumns;
+    private PageReader reader;
+    private int hash;
+
+    public MergeKeyHash(List<Column> keyColumns)
+    {
+        this.keyColumns = keyColumns;
+    }
+
+    public int hash(PageReader reader)
+    {
+        this.reader = reader;
+        hash = 1;
+        for (Column column : keyColumns) {
+            if (reader.isNull(column)) {
+                add(0);
+            } else {
+                column.visit(this);
+            }
+        }
+        // spread higher bits to lower bits, because the hash is used as modulo of a small number
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns index of a bucket in {@code [0, buckets)} for the current record of PageReader.
+     */
+    public int bucket(PageReader reader, int buckets)
+    {
+        return Math.floorMod(hash(reader), buckets);
+    }
+
+    private void add(int value)
+    {
+        hash = 31 * hash + value;
+    }
+
+    @Override
+    public void booleanColumn(Column column)
+    {
+        add(Boolean.hashCode(reader.getBoolean(column)));
+    }
+
+    @Override
+    public void longColumn(Column column)
+    {
+        add(Long.hashCode(reader.getLong(column)));
+    }
+
+    @Override
+    public void doubleColumn(Column column)
+    {
+        add(Double.hashCode(reader.getDouble(column)));
+    }
+
+    @Override
+    public void stringColumn(Column column)
+    {
+        add(reader.getString(column).hashCode());
+    }
+
+    @Override
+    public void timestampColumn(Column column)
+    {
+        add(reader.getTimestamp(column).getInstant().hashCode());
+    }
+
+    @Override
+    public void jsonColumn(Column column)
+    {
+        add(reader.getJson(column).toJson().hashCode());
+    }
+}
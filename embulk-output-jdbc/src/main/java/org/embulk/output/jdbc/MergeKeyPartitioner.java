@@ -0,0 +1,153 @@
+package org.embulk.output.jdbc;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.PageReader;
+
+/**
+ * Buffers records in partitions by hash of merge keys, and sorts records of a partition by merge keys to flush them.
+ *
+ * Tasks flushing sorted batches lock rows of the target table in the same order, so their merges
+ * wait for each other instead of deadlocking. Records with the same keys are kept in the order of input.
+ */
+public class MergeKeyPartitioner
+{
+    private final List<Column> keyColumns;
+    private final MergeKeyHash mergeKeyHash;
+    private final RecordBuffer[] partitions;
+
+    public MergeKeyPartitioner(List<Column> columns, List<Column> keyColumns, int partitionCount)
+    {
+        this.keyColumns = keyColumns;
+        this.mergeKeyHash = new MergeKeyHash(keyColumns);
+        this.partitions = new RecordBuffer[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new RecordBuffer(columns);
+        }
+    }
+
+    public int getPartitionCount()
+    {
+        return partitions.length;
+    }
+
+    /**
+     * Copies the current record to the partition chosen by its merge keys, and returns the partition.
+     *
+     * @param reader PageReader to hash the merge keys
+     * @param record the current record of the reader
+     */
+    public int add(PageReader reader, Record record)
+    {
+        int partition = mergeKeyHash.bucket(reader, partitions.length);
+        partitions[partition].addRow(record);
+        return partition;
+    }
+
+    public RecordBuffer getRecords(int partition)
+    {
+        return partitions[partition];
+    }
+
+    /**
+     * Returns rows of the partition in the order of merge keys.
+     */
+    public int[] sortRows(int partition)
+    {
+        RecordBuffer records = partitions[partition];
+        int size = records.size();
+        Comparable<?>[][] keys = new Comparable<?>[size][];
+        Integer[] rows = new Integer[size];
+        for (int row = 0; row < size; row++) {
+            records.seek(row);
+            keys[row] = readKeys(records);
+            rows[row] = row;
+        }
+
+        // stable, so that records with the same keys keep their order
+        Arrays.sort(rows, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b)
+            {
+                return compareKeys(keys[a], keys[b]);
+            }
+        });
+
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = rows[i];
+        }
+        return sorted;
+    }
+
+    public void clear(int partition)
+    {
+        partitions[partition].clear();
+    }
+
+    private Comparable<?>[] readKeys(final Record record)
+    {
+        final Comparable<?>[] keys = new Comparable<?>[keyColumns.size()];
+        for (int i = 0; i < keys.length; i++) {
+            final int index = i;
+            Column column = keyColumns.get(i);
+            if (record.isNull(column)) {
+                continue;
+            }
+            column.visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    keys[index] = record.getBoolean(column);
+                }
+
+                public void longColumn(Column column)
+                {
+                    keys[index] = record.getLong(column);
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    keys[index] = record.getDouble(column);
+                }
+
+                public void stringColumn(Column column)
+                {
+                    keys[index] = record.getString(column);
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    keys[index] = record.getTimestamp(column);
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    keys[index] = record.getJson(column).toJson();
+                }
+            });
+        }
+        return keys;
+    }
+
+    @SuppressWarnings("unchecked")
+    static int compareKeys(Comparable<?>[] a, Comparable<?>[] b)
+    {
+        for (int i = 0; i < a.length; i++) {
+            // nulls first
+            if (a[i] == null || b[i] == null) {
+                if (a[i] != b[i]) {
+                    return a[i] == null ? -1 : 1;
+                }
+                continue;
+            }
+            int c = ((Comparable<Object>) a[i]).compareTo(b[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
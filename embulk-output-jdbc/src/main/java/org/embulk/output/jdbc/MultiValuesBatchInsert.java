@@ -0,0 +1,461 @@
+package org.embulk.output.jdbc;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BatchInsert which inserts multiple rows by a statement, {@code INSERT INTO t (...) VALUES (...), (...), ...}.
+ *
+ * Values of rows are buffered until a statement gets full. Full statements are added to the batch of
+ * a statement prepared once, and the rest of rows are inserted by a tail statement when the batch is flushed.
+ * The number of rows per statement is limited so that the number of parameters doesn't exceed the limit of the database.
+ */
+public class MultiValuesBatchInsert
+        implements BatchInsert
+{
+    private static final Logger logger = LoggerFactory.getLogger(MultiValuesBatchInsert.class);
+
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte BYTE = 2;
+    private static final byte SHORT = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte FLOAT = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte STRING = 9;
+    private static final byte NSTRING = 10;
+    private static final byte BYTES = 11;
+    private static final byte DATE = 12;
+    private static final byte TIME = 13;
+    private static final byte TIMESTAMP = 14;
+    private static final byte OBJECT = 15;
+
+    private final JdbcOutputConnector connector;
+    private final int maxRowsPerStatement;
+    private final BatchWeightEstimator weightEstimator;
+
+    private JdbcOutputConnection connection;
+    private TableIdentifier loadTable;
+    private JdbcSchema insertSchema;
+    private int columnCount;
+    private int rowsPerStatement;
+    private int rowWeight;
+    private PreparedStatement statement;
+    private PreparedStatement tailStatement;
+    private int tailStatementRows;
+
+    // parameters of rows not added to the batch yet
+    private byte[] kinds;
+    private Object[] values;
+    private int[] sqlTypes;
+    private Calendar[] calendars;
+    private int index;
+    private int pendingRows;
+
+    private int batchStatements;
+    private int batchWeight;
+    private int batchRows;
+    private long totalRows;
+    private int[] lastUpdateCounts;
+    private BatchCheckpoint checkpoint;
+
+    public MultiValuesBatchInsert(JdbcOutputConnector connector, int maxRowsPerStatement) throws IOException, SQLException
+    {
+        this(connector, maxRowsPerStatement, BatchWeightEstimator.UTF_8);
+    }
+
+    public MultiValuesBatchInsert(JdbcOutputConnector connector, int maxRowsPerStatement,
+            BatchWeightEstimator weightEstimator) throws IOException, SQLException
+    {
+        this.connector = connector;
+        this.maxRowsPerStatement = maxRowsPerStatement;
+        this.weightEstimator = weightEstimator;
+    }
+
+    @Override
+    public boolean setCheckpoint(BatchCheckpoint checkpoint)
+    {
+        this.checkpoint = checkpoint;
+        return true;
+    }
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
+    {
+        // each batch is committed with the checkpoint
+        this.connection = connector.connect(checkpoint == null);
+        this.loadTable = loadTable;
+        this.insertSchema = insertSchema;
+        this.columnCount = insertSchema.getCount();
+        this.rowsPerStatement = Math.max(1, Math.min(maxRowsPerStatement, connection.getMaxParameterCount() / columnCount));
+        this.rowWeight = weightEstimator.getRowWeight(columnCount);
+        logger.info("Inserting {} rows per statement", rowsPerStatement);
+        this.statement = connection.prepareMultiValuesInsertStatement(loadTable, insertSchema, rowsPerStatement);
+
+        int parameterCount = rowsPerStatement * columnCount;
+        this.kinds = new byte[parameterCount];
+        this.values = new Object[parameterCount];
+        this.sqlTypes = new int[parameterCount];
+        this.calendars = new Calendar[parameterCount];
+        this.index = 0;
+        this.pendingRows = 0;
+        this.batchStatements = 0;
+        this.batchRows = 0;
+        this.totalRows = 0;
+    }
+
+    public int getRowsPerStatement()
+    {
+        return rowsPerStatement;
+    }
+
+    @Override
+    public int getBatchWeight()
+    {
+        return batchWeight;
+    }
+
+    @Override
+    public void add() throws IOException, SQLException
+    {
+        pendingRows++;
+        batchRows++;
+        batchWeight += rowWeight;
+        index = pendingRows * columnCount;
+        if (pendingRows == rowsPerStatement) {
+            bind(statement, pendingRows);
+            statement.addBatch();
+            batchStatements++;
+            clearPendingRows();
+        }
+    }
+
+    @Override
+    public void close() throws IOException, SQLException
+    {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException, SQLException
+    {
+        lastUpdateCounts = new int[]{};
+
+        if (batchWeight == 0) return;
+
+        logger.info(String.format("Loading %,d rows (%,d statements)", batchRows, batchStatements + (pendingRows > 0 ? 1 : 0)));
+        long startTime = System.currentTimeMillis();
+
+        // update counts per row, for retry
+        int[] rowUpdateCounts = new int[batchRows];
+        Arrays.fill(rowUpdateCounts, Statement.EXECUTE_FAILED);
+        try {
+            if (batchStatements > 0) {
+                try {
+                    setRowUpdateCounts(rowUpdateCounts, 0, statement.executeBatch());
+                } catch (BatchUpdateException e) {
+                    setRowUpdateCounts(rowUpdateCounts, 0, e.getUpdateCounts());
+                    throw e;
+                }
+            }
+            if (pendingRows > 0) {
+                PreparedStatement tail = getTailStatement(pendingRows);
+                bind(tail, pendingRows);
+                int count = tail.executeUpdate();
+                setRowUpdateCounts(rowUpdateCounts, batchStatements, new int[] { count });
+            }
+            if (checkpoint != null) {
+                checkpoint.commit(connection, batchRows);
+            }
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+            totalRows += batchRows;
+            logger.info(String.format("> %.2f seconds (loaded %,d rows in total)", seconds, totalRows));
+
+        } catch (SQLException e) {
+            if (checkpoint == null) {
+                throw e;
+            }
+            // all rows of the batch are rolled back, and retried
+            Arrays.fill(rowUpdateCounts, Statement.EXECUTE_FAILED);
+            throw connection.rollbackBatch(e);
+
+        } finally {
+            lastUpdateCounts = rowUpdateCounts;
+            // clear for retry
+            statement.clearBatch();
+            clearPendingRows();
+            batchStatements = 0;
+            batchRows = 0;
+            batchWeight = 0;
+        }
+    }
+
+    private void setRowUpdateCounts(int[] rowUpdateCounts, int firstStatement, int[] statementUpdateCounts)
+    {
+        for (int i = 0; i < statementUpdateCounts.length; i++) {
+            if (statementUpdateCounts[i] == Statement.EXECUTE_FAILED) {
+                continue;
+            }
+            int from = (firstStatement + i) * rowsPerStatement;
+            int to = Math.min(from + rowsPerStatement, rowUpdateCounts.length);
+            for (int row = from; row < to; row++) {
+                rowUpdateCounts[row] = Statement.SUCCESS_NO_INFO;
+            }
+        }
+    }
+
+    private PreparedStatement getTailStatement(int rows) throws SQLException
+    {
+        if (tailStatement == null || tailStatementRows != rows) {
+            if (tailStatement != null) {
+                tailStatement.close();
+            }
+            tailStatement = connection.prepareMultiValuesInsertStatement(loadTable, insertSchema, rows);
+            tailStatementRows = rows;
+        }
+        return tailStatement;
+    }
+
+    private void clearPendingRows()
+    {
+        Arrays.fill(values, 0, pendingRows * columnCount, null);
+        Arrays.fill(calendars, 0, pendingRows * columnCount, null);
+        pendingRows = 0;
+        index = 0;
+    }
+
+    private void bind(PreparedStatement stmt, int rows) throws SQLException
+    {
+        int count = rows * columnCount;
+        for (int i = 0; i < count; i++) {
+            int parameterIndex = i + 1;  // PreparedStatement index begins from 1
+            Object v = values[i];
+            switch (kinds[i]) {
+            case NULL:
+                stmt.setNull(parameterIndex, sqlTypes[i]);
+                break;
+            case BOOLEAN:
+                stmt.setBoolean(parameterIndex, (Boolean) v);
+                break;
+            case BYTE:
+                stmt.setByte(parameterIndex, (Byte) v);
+                break;
+            case SHORT:
+                stmt.setShort(parameterIndex, (Short) v);
+                break;
+            case INT:
+                stmt.setInt(parameterIndex, (Integer) v);
+                break;
+            case LONG:
+                stmt.setLong(parameterIndex, (Long) v);
+                break;
+            case FLOAT:
+                stmt.setFloat(parameterIndex, (Float) v);
+                break;
+            case DOUBLE:
+                stmt.setDouble(parameterIndex, (Double) v);
+                break;
+            case BIG_DECIMAL:
+                stmt.setBigDecimal(parameterIndex, (BigDecimal) v);
+                break;
+            case STRING:
+                stmt.setString(parameterIndex, (String) v);
+                break;
+            case NSTRING:
+                stmt.setNString(parameterIndex, (String) v);
+                break;
+            case BYTES:
+                stmt.setBytes(parameterIndex, (byte[]) v);
+                break;
+            case DATE:
+                stmt.setDate(parameterIndex, (Date) v, calendars[i]);
+                break;
+            case TIME:
+                stmt.setTime(parameterIndex, (Time) v, calendars[i]);
+                break;
+            case TIMESTAMP:
+                stmt.setTimestamp(parameterIndex, (Timestamp) v, calendars[i]);
+                break;
+            case OBJECT:
+                stmt.setObject(parameterIndex, v);
+                break;
+            default:
+                throw new IllegalStateException("Unknown parameter kind: " + kinds[i]);
+            }
+        }
+    }
+
+    @Override
+    public int[] getLastUpdateCounts()
+    {
+        return lastUpdateCounts;
+    }
+
+    @Override
+    public void finish() throws IOException, SQLException
+    {
+    }
+
+    @Override
+    public void setNull(int sqlType) throws IOException, SQLException
+    {
+        sqlTypes[index] = sqlType;
+        nextColumn(NULL, null, weightEstimator.getNullWeight());
+    }
+
+    @Override
+    public void setBoolean(boolean v) throws IOException, SQLException
+    {
+        nextColumn(BOOLEAN, v, weightEstimator.getFixedWeight(1));
+    }
+
+    @Override
+    public void setByte(byte v) throws IOException, SQLException
+    {
+        nextColumn(BYTE, v, weightEstimator.getFixedWeight(1));
+    }
+
+    @Override
+    public void setShort(short v) throws IOException, SQLException
+    {
+        nextColumn(SHORT, v, weightEstimator.getFixedWeight(2));
+    }
+
+    @Override
+    public void setInt(int v) throws IOException, SQLException
+    {
+        nextColumn(INT, v, weightEstimator.getFixedWeight(4));
+    }
+
+    @Override
+    public void setLong(long v) throws IOException, SQLException
+    {
+        nextColumn(LONG, v, weightEstimator.getFixedWeight(8));
+    }
+
+    @Override
+    public void setFloat(float v) throws IOException, SQLException
+    {
+        nextColumn(FLOAT, v, weightEstimator.getFixedWeight(4));
+    }
+
+    @Override
+    public void setDouble(double v) throws IOException, SQLException
+    {
+        nextColumn(DOUBLE, v, weightEstimator.getFixedWeight(8));
+    }
+
+    @Override
+    public void setBigDecimal(BigDecimal v) throws IOException, SQLException
+    {
+        nextColumn(BIG_DECIMAL, v, weightEstimator.getBigDecimalWeight(v));
+    }
+
+    @Override
+    public void setString(String v) throws IOException, SQLException
+    {
+        nextColumn(STRING, v, weightEstimator.getStringWeight(v));
+    }
+
+    @Override
+    public void setNString(String v) throws IOException, SQLException
+    {
+        nextColumn(NSTRING, v, weightEstimator.getNStringWeight(v));
+    }
+
+    @Override
+    public void setBytes(byte[] v) throws IOException, SQLException
+    {
+        nextColumn(BYTES, v, weightEstimator.getBytesWeight(v));
+    }
+
+    @Override
+    public void setSqlDate(final Instant v, final Calendar cal) throws IOException, SQLException
+    {
+        // same as StandardBatchInsert.setSqlDate
+        cal.setTimeInMillis(v.getEpochSecond() * 1000);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        Date normalized = new Date(cal.getTimeInMillis());
+        calendars[index] = cal;
+        nextColumn(DATE, normalized, weightEstimator.getDateWeight());
+    }
+
+    @Override
+    public void setSqlTime(final Instant v, final Calendar cal) throws IOException, SQLException
+    {
+        Time t = new Time(v.toEpochMilli());
+        calendars[index] = cal;
+        nextColumn(TIME, t, weightEstimator.getTimeWeight());
+    }
+
+    @Override
+    public void setSqlTimestamp(final Instant v, final Calendar cal) throws IOException, SQLException
+    {
+        Timestamp t = new Timestamp(v.toEpochMilli());
+        t.setNanos(v.getNano());
+        calendars[index] = cal;
+        nextColumn(TIMESTAMP, t, weightEstimator.getTimestampWeight());
+    }
+
+    @Override
+    public boolean supportsJavaTimeBinding()
+    {
+        return true;
+    }
+
+    @Override
+    public void setLocalDate(LocalDate v) throws IOException, SQLException
+    {
+        nextColumn(OBJECT, v, weightEstimator.getDateWeight());
+    }
+
+    @Override
+    public void setLocalTime(LocalTime v) throws IOException, SQLException
+    {
+        nextColumn(OBJECT, v, weightEstimator.getTimeWeight());
+    }
+
+    @Override
+    public void setLocalDateTime(LocalDateTime v) throws IOException, SQLException
+    {
+        nextColumn(OBJECT, v, weightEstimator.getTimestampWeight());
+    }
+
+    @Override
+    public void setOffsetDateTime(OffsetDateTime v) throws IOException, SQLException
+    {
+        nextColumn(OBJECT, v, weightEstimator.getTimestampWeight());
+    }
+
+    private void nextColumn(byte kind, Object value, int weight)
+    {
+        kinds[index] = kind;
+        values[index] = value;
+        index++;
+        batchWeight += weight;
+    }
+}
@@ -0,0 +1,42 @@
+package org.embulk.output.jdbc;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * What to do when the database rejects rows of a batch with a non-retryable error.
+ */
+public enum OnRowError
+{
+    /**
+     * The task fails.
+     */
+    FAIL,
+
+    /**
+     * The batch is bisected to find the rows causing the error, and they are written to reject_file or reject_table.
+     */
+    REJECT;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static OnRowError fromString(String value)
+    {
+        for (OnRowError onRowError : values()) {
+            if (onRowError.toString().equals(value)) {
+                return onRowError;
+            }
+        }
+        throw new ConfigException(String.format("Unknown on_row_error '%s'. Supported values are fail and reject.", value));
+    }
+}
@@ -1,8 +1,6 @@
 package org.embulk.output.jdbc;
 
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.embulk.spi.Column;
 import org.embulk.spi.Page;
@@ -11,18 +9,18 @@ import org.msgpack.value.Value;
 
 /**
  * Record read by PageReader.
- * The class will save read records for retry.
+ * The class will save read records to RecordCapture for retry.
  */
 public class PageReaderRecord implements Record
 {
     private final PageReader pageReader;
-    private final List<MemoryRecord> readRecords;
-    private MemoryRecord lastRecord;
+    private RecordCapture capture;
+    private boolean rowPending;
 
-    public PageReaderRecord(PageReader pageReader)
+    public PageReaderRecord(PageReader pageReader, RecordCapture capture)
     {
         this.pageReader = pageReader;
-        readRecords = new ArrayList<>();
+        this.capture = capture;
     }
 
     public void setPage(Page page)
@@ -30,65 +28,90 @@ public class PageReaderRecord implements Record
         pageReader.setPage(page);
     }
 
+    /**
+     * Changes RecordCapture to which following records are saved.
+     */
+    public void setCapture(RecordCapture capture)
+    {
+        this.capture = capture;
+    }
+
     public boolean nextRecord()
     {
-        lastRecord = null; // lastRecord will be created in next `save` method execution.
-        return pageReader.nextRecord();
+        // the row will be added to the capture when it is read first,
+        // because the capture may be cleared or changed by flush before reading the row.
+        boolean hasRecord = pageReader.nextRecord();
+        rowPending = hasRecord && capture.getMode() != RetryCaptureMode.OFF;
+        return hasRecord;
     }
 
     public boolean isNull(Column column)
     {
+        savingRow();
         return pageReader.isNull(column);
     }
 
     public boolean getBoolean(Column column)
     {
-        return save(column, pageReader.getBoolean(column));
+        boolean value = pageReader.getBoolean(column);
+        if (savingRow()) {
+            capture.getRecords().setBoolean(column, value);
+        }
+        return value;
     }
 
     public long getLong(Column column)
     {
-        return save(column, pageReader.getLong(column));
+        long value = pageReader.getLong(column);
+        if (savingRow()) {
+            capture.getRecords().setLong(column, value);
+        }
+        return value;
     }
 
     public double getDouble(Column column)
     {
-        return save(column, pageReader.getDouble(column));
+        double value = pageReader.getDouble(column);
+        if (savingRow()) {
+            capture.getRecords().setDouble(column, value);
+        }
+        return value;
     }
 
     public String getString(Column column)
     {
-        return save(column, pageReader.getString(column));
+        String value = pageReader.getString(column);
+        if (savingRow()) {
+            capture.getRecords().setString(column, value);
+        }
+        return value;
     }
 
     public Instant getTimestamp(Column column)
     {
-        return save(column, pageReader.getTimestamp(column).getInstant());
+        Instant value = pageReader.getTimestamp(column).getInstant();
+        if (savingRow()) {
+            capture.getRecords().setTimestamp(column, value);
+        }
+        return value;
     }
 
     public Value getJson(Column column)
     {
-        return save(column, pageReader.getJson(column));
-    }
-
-    public List<? extends Record> getReadRecords()
-    {
-        return readRecords;
-    }
-
-    public void clearReadRecords()
-    {
-        readRecords.clear();
-        lastRecord = null;
+        Value value = pageReader.getJson(column);
+        if (savingRow()) {
+            capture.getRecords().setJson(column, value);
+        }
+        return value;
     }
 
-    private <T> T save(Column column, T value)
+    private boolean savingRow()
     {
-        if (lastRecord == null) {
-            lastRecord = new MemoryRecord(pageReader.getSchema().getColumnCount());
-            readRecords.add(lastRecord);
+        if (rowPending) {
+            capture.addRow();
+            rowPending = false;
+            return true;
         }
-        lastRecord.setValue(column, value);
-        return value;
+        return capture.getMode() != RetryCaptureMode.OFF;
     }
 }
@@ -0,0 +1,427 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.msgpack.value.Value;
+
+/**
+ * Columnar buffer of records, used to keep the records of a batch for retry.
+ *
+ * Values are stored in primitive arrays per column (boolean and long as long, timestamp as
+ * epoch seconds and nanos) with a bitmap of non-null values, so that a buffered row doesn't
+ * allocate objects. String and JSON values are kept by reference as PageReader created them.
+ *
+ * The buffer itself is a Record which reads the row selected by {@link #seek(int)}.
+ */
+public class RecordBuffer implements Record
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    // rough estimation of heap bytes to keep a value
+    private static final int VALUE_BYTES = 9;  // a primitive value and a bit of the bitmap
+    private static final int STRING_BYTES = 40;  // String and its array, excluding characters
+    private static final int JSON_BYTES = 256;  // size of JSON values is not known without serializing them
+
+    private final List<Column> columns;
+    private final int columnCount;
+    private final long[][] longs;      // boolean, long, and epoch seconds of timestamp
+    private final int[][] nanos;       // nanos of timestamp
+    private final double[][] doubles;
+    private final Object[][] objects;  // string and json
+    private final long[][] nonNulls;
+
+    private int capacity;
+    private int size;
+    private int current;
+    private long estimatedBytes;
+    private final RowCopier rowCopier = new RowCopier();
+
+    public RecordBuffer(List<Column> columns)
+    {
+        this.columns = columns;
+        this.columnCount = columns.size();
+        this.longs = new long[columnCount][];
+        this.nanos = new int[columnCount][];
+        this.doubles = new double[columnCount][];
+        this.objects = new Object[columnCount][];
+        this.nonNulls = new long[columnCount][];
+        this.capacity = INITIAL_CAPACITY;
+
+        for (Column column : columns) {
+            column.visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    longs[column.getIndex()] = new long[capacity];
+                }
+
+                public void longColumn(Column column)
+                {
+                    longs[column.getIndex()] = new long[capacity];
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    doubles[column.getIndex()] = new double[capacity];
+                }
+
+                public void stringColumn(Column column)
+                {
+                    objects[column.getIndex()] = new Object[capacity];
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    longs[column.getIndex()] = new long[capacity];
+                    nanos[column.getIndex()] = new int[capacity];
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    objects[column.getIndex()] = new Object[capacity];
+                }
+            });
+        }
+        for (int i = 0; i < columnCount; i++) {
+            nonNulls[i] = new long[bitmapLength(capacity)];
+        }
+        this.size = 0;
+        this.current = -1;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Appends a row whose columns are all null. Following set methods write to the row.
+     */
+    public void addRow()
+    {
+        if (size == capacity) {
+            grow();
+        }
+        current = size++;
+        estimatedBytes += (long) VALUE_BYTES * columnCount;
+    }
+
+    /**
+     * Appends a copy of the current row of the record.
+     */
+    public void addRow(Record record)
+    {
+        addRow();
+        rowCopier.source = record;
+        for (Column column : columns) {
+            if (!record.isNull(column)) {
+                column.visit(rowCopier);
+            }
+        }
+        rowCopier.source = null;
+    }
+
+    /**
+     * Selects the row read by Record methods.
+     */
+    public void seek(int row)
+    {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row: " + row + ", size: " + size);
+        }
+        current = row;
+    }
+
+    /**
+     * Moves a row to a lower position, to compact the buffer in place.
+     * The values of the row at {@code to} are overwritten.
+     */
+    public void moveRow(int from, int to)
+    {
+        if (from == to) {
+            return;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (longs[i] != null) {
+                longs[i][to] = longs[i][from];
+            }
+            if (nanos[i] != null) {
+                nanos[i][to] = nanos[i][from];
+            }
+            if (doubles[i] != null) {
+                doubles[i][to] = doubles[i][from];
+            }
+            if (objects[i] != null) {
+                objects[i][to] = objects[i][from];
+            }
+            setNonNull(i, to, isNonNull(i, from));
+        }
+    }
+
+    /**
+     * Removes rows after {@code newSize}.
+     */
+    public void truncate(int newSize)
+    {
+        if (newSize < 0 || newSize > size) {
+            throw new IndexOutOfBoundsException("size: " + newSize + ", current size: " + size);
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (objects[i] != null) {
+                Arrays.fill(objects[i], newSize, size, null);
+            }
+            for (int row = newSize; row < size; row++) {
+                setNonNull(i, row, false);
+            }
+        }
+        estimatedBytes = size == 0 ? 0 : estimatedBytes * newSize / size;
+        size = newSize;
+        current = size - 1;
+    }
+
+    public void clear()
+    {
+        truncate(0);
+    }
+
+    /**
+     * Returns true if any of the columns is null in the row.
+     */
+    public boolean hasNull(int row, List<Column> columns)
+    {
+        for (Column column : columns) {
+            if (!isNonNull(column.getIndex(), row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns hash code of values of the columns in the row, without creating objects for primitive values.
+     */
+    public int hashValues(int row, List<Column> columns)
+    {
+        int hash = 1;
+        for (Column column : columns) {
+            int i = column.getIndex();
+            int h = 0;
+            if (isNonNull(i, row)) {
+                if (longs[i] != null) {
+                    h = Long.hashCode(longs[i][row]);
+                }
+                if (nanos[i] != null) {
+                    h = 31 * h + nanos[i][row];
+                }
+                if (doubles[i] != null) {
+                    h = Double.hashCode(doubles[i][row]);
+                }
+                if (objects[i] != null) {
+                    h = objects[i][row].hashCode();
+                }
+            }
+            hash = 31 * hash + h;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns true if values of the columns are equal in the two rows. Nulls are equal to nulls.
+     */
+    public boolean equalValues(int row1, int row2, List<Column> columns)
+    {
+        for (Column column : columns) {
+            int i = column.getIndex();
+            boolean nonNull = isNonNull(i, row1);
+            if (nonNull != isNonNull(i, row2)) {
+                return false;
+            }
+            if (!nonNull) {
+                continue;
+            }
+            if (longs[i] != null && longs[i][row1] != longs[i][row2]) {
+                return false;
+            }
+            if (nanos[i] != null && nanos[i][row1] != nanos[i][row2]) {
+                return false;
+            }
+            if (doubles[i] != null && Double.doubleToLongBits(doubles[i][row1]) != Double.doubleToLongBits(doubles[i][row2])) {
+                return false;
+            }
+            if (objects[i] != null && !objects[i][row1].equals(objects[i][row2])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns estimated heap bytes used by the rows, not including the unused capacity.
+     */
+    public long getEstimatedBytes()
+    {
+        return estimatedBytes;
+    }
+
+    public void setBoolean(Column column, boolean value)
+    {
+        int i = column.getIndex();
+        longs[i][current] = value ? 1 : 0;
+        setNonNull(i, current, true);
+    }
+
+    public void setLong(Column column, long value)
+    {
+        int i = column.getIndex();
+        longs[i][current] = value;
+        setNonNull(i, current, true);
+    }
+
+    public void setDouble(Column column, double value)
+    {
+        int i = column.getIndex();
+        doubles[i][current] = value;
+        setNonNull(i, current, true);
+    }
+
+    public void setString(Column column, String value)
+    {
+        setObject(column.getIndex(), value);
+        estimatedBytes += STRING_BYTES + value.length() * 2L;
+    }
+
+    public void setTimestamp(Column column, Instant value)
+    {
+        int i = column.getIndex();
+        longs[i][current] = value.getEpochSecond();
+        nanos[i][current] = value.getNano();
+        setNonNull(i, current, true);
+    }
+
+    public void setJson(Column column, Value value)
+    {
+        setObject(column.getIndex(), value);
+        estimatedBytes += JSON_BYTES;
+    }
+
+    public boolean isNull(Column column)
+    {
+        return !isNonNull(column.getIndex(), current);
+    }
+
+    public boolean getBoolean(Column column)
+    {
+        return longs[column.getIndex()][current] != 0;
+    }
+
+    public long getLong(Column column)
+    {
+        return longs[column.getIndex()][current];
+    }
+
+    public double getDouble(Column column)
+    {
+        return doubles[column.getIndex()][current];
+    }
+
+    public String getString(Column column)
+    {
+        return (String) objects[column.getIndex()][current];
+    }
+
+    public Instant getTimestamp(Column column)
+    {
+        int i = column.getIndex();
+        return Instant.ofEpochSecond(longs[i][current], nanos[i][current]);
+    }
+
+    public Value getJson(Column column)
+    {
+        return (Value) objects[column.getIndex()][current];
+    }
+
+    private class RowCopier
+            implements ColumnVisitor
+    {
+        private Record source;
+
+        public void booleanColumn(Column column)
+        {
+            setBoolean(column, source.getBoolean(column));
+        }
+
+        public void longColumn(Column column)
+        {
+            setLong(column, source.getLong(column));
+        }
+
+        public void doubleColumn(Column column)
+        {
+            setDouble(column, source.getDouble(column));
+        }
+
+        public void stringColumn(Column column)
+        {
+            setString(column, source.getString(column));
+        }
+
+        public void timestampColumn(Column column)
+        {
+            setTimestamp(column, source.getTimestamp(column));
+        }
+
+        public void jsonColumn(Column column)
+        {
+            setJson(column, source.getJson(column));
+        }
+    }
+
+    private void setObject(int i, Object value)
+    {
+        objects[i][current] = value;
+        setNonNull(i, current, value != null);
+    }
+
+    private boolean isNonNull(int i, int row)
+    {
+        return (nonNulls[i][row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void setNonNull(int i, int row, boolean nonNull)
+    {
+        if (nonNull) {
+            nonNulls[i][row >>> 6] |= 1L << row;
+        } else {
+            nonNulls[i][row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    private void grow()
+    {
+        int newCapacity = capacity * 2;
+        for (int i = 0; i < columnCount; i++) {
+            if (longs[i] != null) {
+                longs[i] = Arrays.copyOf(longs[i], newCapacity);
+            }
+            if (nanos[i] != null) {
+                nanos[i] = Arrays.copyOf(nanos[i], newCapacity);
+            }
+            if (doubles[i] != null) {
+                doubles[i] = Arrays.copyOf(doubles[i], newCapacity);
+            }
+            if (objects[i] != null) {
+                objects[i] = Arrays.copyOf(objects[i], newCapacity);
+            }
+            nonNulls[i] = Arrays.copyOf(nonNulls[i], bitmapLength(newCapacity));
+        }
+        capacity = newCapacity;
+    }
+
+    private static int bitmapLength(int capacity)
+    {
+        return (capacity + 63) >>> 6;
+    }
+}
@@ -0,0 +1,166 @@
+package org.embulk.output.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.embulk.spi.Column;
+
+/**
+ * Records added to a batch, kept to add them again when flush of the batch is retried.
+ */
+public class RecordCapture
+        implements AutoCloseable
+{
+    public static interface RetryHandler
+    {
+        // called for each record to retry. The record is readable through getRecords().
+        public void retry() throws IOException, SQLException;
+    }
+
+    private final List<Column> columns;
+    private final RetryCaptureMode mode;
+    private final long memoryLimit;
+    private final RecordBuffer records;
+    private RecordSpillFile spilledRecords;
+
+    public RecordCapture(List<Column> columns, RetryCaptureMode mode, long memoryLimit)
+    {
+        this.columns = columns;
+        this.mode = mode;
+        this.memoryLimit = memoryLimit;
+        this.records = new RecordBuffer(columns);
+    }
+
+    public RetryCaptureMode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Returns the buffer of records in memory. Values of a new record are set to it after {@link #addRow()}.
+     */
+    public RecordBuffer getRecords()
+    {
+        return records;
+    }
+
+    public long size()
+    {
+        return records.size() + (spilledRecords != null ? spilledRecords.size() : 0);
+    }
+
+    public void addRow()
+    {
+        if (mode == RetryCaptureMode.SPILL && records.getEstimatedBytes() >= memoryLimit) {
+            spill();
+        }
+        records.addRow();
+    }
+
+    /**
+     * Appends a copy of the current row of the record.
+     */
+    public void addRow(Record record)
+    {
+        if (mode == RetryCaptureMode.SPILL && records.getEstimatedBytes() >= memoryLimit) {
+            spill();
+        }
+        records.addRow(record);
+    }
+
+    private void spill()
+    {
+        try {
+            if (spilledRecords == null) {
+                spilledRecords = new RecordSpillFile(columns);
+            }
+            spilledRecords.write(records);
+            records.clear();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Calls the handler for records which failed in the last flush, and removes the others.
+     * Records spilled to the file are read into the end of getRecords() one by one.
+     */
+    public void retry(int[] updateCounts, RetryHandler handler) throws IOException, SQLException
+    {
+        long index = 0;
+
+        // spilled records were added before records in memory
+        if (spilledRecords != null) {
+            RecordSpillFile retainedRecords = new RecordSpillFile(columns);
+            try (RecordSpillFile.Reader reader = spilledRecords.openReader()) {
+                int row = records.size();
+                for (long i = 0; i < spilledRecords.size(); i++, index++) {
+                    reader.readRow(records);
+                    if (isFailed(updateCounts, index)) {
+                        records.seek(row);
+                        handler.retry();
+                        retainedRecords.writeRow(records);
+                    }
+                    records.truncate(row);
+                }
+            } catch (IOException | SQLException | RuntimeException ex) {
+                retainedRecords.close();
+                throw ex;
+            }
+            spilledRecords.close();
+            spilledRecords = retainedRecords;
+        }
+
+        int retainedCount = 0;
+        for (int row = 0; row < records.size(); row++, index++) {
+            if (isFailed(updateCounts, index)) {
+                records.seek(row);
+                handler.retry();
+                records.moveRow(row, retainedCount++);
+            }
+            // other records are removed for re-retry
+        }
+        records.truncate(retainedCount);
+    }
+
+    private static boolean isFailed(int[] updateCounts, long index)
+    {
+        return index >= updateCounts.length || updateCounts[(int) index] == Statement.EXECUTE_FAILED;
+    }
+
+    /**
+     * Reads spilled records into memory, and returns all records.
+     */
+    public RecordBuffer load() throws IOException
+    {
+        if (spilledRecords != null) {
+            spilledRecords.write(records);
+            records.clear();
+            try (RecordSpillFile.Reader reader = spilledRecords.openReader()) {
+                for (long i = 0; i < spilledRecords.size(); i++) {
+                    reader.readRow(records);
+                }
+            }
+            spilledRecords.close();
+            spilledRecords = null;
+        }
+        return records;
+    }
+
+    public void clear() throws IOException
+    {
+        records.clear();
+        if (spilledRecords != null) {
+            spilledRecords.close();
+            spilledRecords = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        clear();
+    }
+}
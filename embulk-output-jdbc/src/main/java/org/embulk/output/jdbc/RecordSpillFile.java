@@ -0,0 +1,229 @@
+package org.embulk.output.jdbc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+
+/**
+ * Local file to keep records for retry when they don't fit in retry_capture_memory_limit.
+ * Records are written sequentially, and read sequentially in the same order.
+ */
+public class RecordSpillFile
+        implements AutoCloseable
+{
+    private static final byte BOOLEAN = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte TIMESTAMP = 4;
+    private static final byte JSON = 5;
+
+    private final List<Column> columns;
+    private final byte[] types;
+    private final File file;
+    private DataOutputStream out;
+    private MessageBufferPacker jsonPacker;
+    private long size;
+
+    public RecordSpillFile(List<Column> columns) throws IOException
+    {
+        this.columns = columns;
+        this.types = new byte[columns.size()];
+        for (Column column : columns) {
+            column.visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    types[column.getIndex()] = BOOLEAN;
+                }
+
+                public void longColumn(Column column)
+                {
+                    types[column.getIndex()] = LONG;
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    types[column.getIndex()] = DOUBLE;
+                }
+
+                public void stringColumn(Column column)
+                {
+                    types[column.getIndex()] = STRING;
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    types[column.getIndex()] = TIMESTAMP;
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    types[column.getIndex()] = JSON;
+                }
+            });
+        }
+        this.file = File.createTempFile("embulk-output-jdbc-records-", ".tmp");
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    public long getFileSize()
+    {
+        return file.length();
+    }
+
+    /**
+     * Writes all rows in the buffer.
+     */
+    public void write(RecordBuffer records) throws IOException
+    {
+        for (int row = 0; row < records.size(); row++) {
+            records.seek(row);
+            writeRow(records);
+        }
+    }
+
+    /**
+     * Writes the current row of the record.
+     */
+    public void writeRow(Record record) throws IOException
+    {
+        for (int i = 0; i < types.length; i++) {
+            Column column = columns.get(i);
+            if (record.isNull(column)) {
+                out.writeBoolean(false);
+                continue;
+            }
+            out.writeBoolean(true);
+            switch (types[i]) {
+            case BOOLEAN:
+                out.writeBoolean(record.getBoolean(column));
+                break;
+            case LONG:
+                out.writeLong(record.getLong(column));
+                break;
+            case DOUBLE:
+                out.writeDouble(record.getDouble(column));
+                break;
+            case STRING:
+                writeBytes(record.getString(column).getBytes(StandardCharsets.UTF_8));
+                break;
+            case TIMESTAMP:
+                Instant instant = record.getTimestamp(column);
+                out.writeLong(instant.getEpochSecond());
+                out.writeInt(instant.getNano());
+                break;
+            case JSON:
+                if (jsonPacker == null) {
+                    jsonPacker = MessagePack.newDefaultBufferPacker();
+                }
+                jsonPacker.clear();
+                record.getJson(column).writeTo(jsonPacker);
+                writeBytes(jsonPacker.toByteArray());
+                break;
+            }
+        }
+        size++;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException
+    {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Finishes writing, and opens a reader of the written rows.
+     */
+    public Reader openReader() throws IOException
+    {
+        out.close();
+        return new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            out.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    public class Reader
+            implements AutoCloseable
+    {
+        private final DataInputStream in;
+
+        private Reader(DataInputStream in)
+        {
+            this.in = in;
+        }
+
+        /**
+         * Reads the next row, and appends it to the buffer.
+         */
+        public void readRow(RecordBuffer records) throws IOException
+        {
+            records.addRow();
+            for (int i = 0; i < types.length; i++) {
+                if (!in.readBoolean()) {
+                    continue;
+                }
+                Column column = columns.get(i);
+                switch (types[i]) {
+                case BOOLEAN:
+                    records.setBoolean(column, in.readBoolean());
+                    break;
+                case LONG:
+                    records.setLong(column, in.readLong());
+                    break;
+                case DOUBLE:
+                    records.setDouble(column, in.readDouble());
+                    break;
+                case STRING:
+                    records.setString(column, new String(readBytes(), StandardCharsets.UTF_8));
+                    break;
+                case TIMESTAMP:
+                    long seconds = in.readLong();
+                    records.setTimestamp(column, Instant.ofEpochSecond(seconds, in.readInt()));
+                    break;
+                case JSON:
+                    records.setJson(column, MessagePack.newDefaultUnpacker(readBytes()).unpackValue());
+                    break;
+                }
+            }
+        }
+
+        private byte[] readBytes() throws IOException
+        {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
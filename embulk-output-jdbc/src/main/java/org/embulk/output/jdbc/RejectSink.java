@@ -0,0 +1,220 @@
+package org.embulk.output.jdbc;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Destination of rows rejected by the database when on_row_error is reject.
+ *
+ * Rows are written as JSON with the error. Rows may be rejected by multiple flush threads at the same time.
+ */
+public abstract class RejectSink
+        implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(RejectSink.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<Column> columns;
+    private long count;
+
+    protected RejectSink(List<Column> columns)
+    {
+        this.columns = columns;
+    }
+
+    /**
+     * Writes rejected rows to a local file, one JSON object per line. The file is created on the first rejected row.
+     */
+    public static RejectSink toFile(List<Column> columns, String path)
+    {
+        return new FileRejectSink(columns, Paths.get(path));
+    }
+
+    /**
+     * Writes rejected rows to the table created by {@link #createRejectTable}.
+     */
+    public static RejectSink toTable(List<Column> columns, JdbcOutputConnector connector, TableIdentifier table, int taskIndex)
+    {
+        return new TableRejectSink(columns, connector, table, taskIndex);
+    }
+
+    public static JdbcSchema getRejectTableSchema()
+    {
+        return new JdbcSchema(Arrays.asList(
+                JdbcColumn.newGenericTypeColumn("task_index", Types.BIGINT, "BIGINT", 22, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("error_code", Types.BIGINT, "BIGINT", 22, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("sql_state", Types.CLOB, "CLOB", 4000, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("message", Types.CLOB, "CLOB", 4000, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("record", Types.CLOB, "CLOB", 4000, 0, false, false)));
+    }
+
+    public static void createRejectTable(JdbcOutputConnection con, TableIdentifier table) throws SQLException
+    {
+        con.createTableIfNotExists(table, getRejectTableSchema(), Optional.<String>empty(), Optional.<String>empty());
+    }
+
+    public synchronized void reject(Record record, SQLException cause) throws IOException, SQLException
+    {
+        logger.warn("Rejected a row ({}:{}): {}", cause.getErrorCode(), cause.getSQLState(), cause.getMessage());
+        write(toMap(record), cause);
+        count++;
+    }
+
+    public synchronized long getCount()
+    {
+        return count;
+    }
+
+    protected abstract void write(Map<String, Object> record, SQLException cause) throws IOException, SQLException;
+
+    @Override
+    public abstract void close() throws IOException, SQLException;
+
+    protected static String toJson(Object value) throws IOException
+    {
+        return MAPPER.writeValueAsString(value);
+    }
+
+    private Map<String, Object> toMap(final Record record)
+    {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        for (Column column : columns) {
+            if (record.isNull(column)) {
+                map.put(column.getName(), null);
+                continue;
+            }
+            column.visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    map.put(column.getName(), record.getBoolean(column));
+                }
+
+                public void longColumn(Column column)
+                {
+                    map.put(column.getName(), record.getLong(column));
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    map.put(column.getName(), record.getDouble(column));
+                }
+
+                public void stringColumn(Column column)
+                {
+                    map.put(column.getName(), record.getString(column));
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    map.put(column.getName(), record.getTimestamp(column).toString());
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    map.put(column.getName(), record.getJson(column).toJson());
+                }
+            });
+        }
+        return map;
+    }
+
+    private static class FileRejectSink
+            extends RejectSink
+    {
+        private final Path path;
+        private BufferedWriter writer;
+
+        FileRejectSink(List<Column> columns, Path path)
+        {
+            super(columns);
+            this.path = path;
+        }
+
+        @Override
+        protected void write(Map<String, Object> record, SQLException cause) throws IOException
+        {
+            if (writer == null) {
+                logger.info("Writing rejected rows to {}", path);
+                writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            }
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("error_code", cause.getErrorCode());
+            line.put("sql_state", cause.getSQLState());
+            line.put("message", cause.getMessage());
+            line.put("record", record);
+            writer.write(toJson(line));
+            writer.newLine();
+            // rejected rows are rare, and should be kept even if the task fails
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static class TableRejectSink
+            extends RejectSink
+    {
+        private final JdbcOutputConnector connector;
+        private final TableIdentifier table;
+        private final int taskIndex;
+        private JdbcOutputConnection connection;
+        private PreparedStatement statement;
+
+        TableRejectSink(List<Column> columns, JdbcOutputConnector connector, TableIdentifier table, int taskIndex)
+        {
+            super(columns);
+            this.connector = connector;
+            this.table = table;
+            this.taskIndex = taskIndex;
+        }
+
+        @Override
+        protected void write(Map<String, Object> record, SQLException cause) throws IOException, SQLException
+        {
+            if (connection == null) {
+                connection = connector.connect(true);
+                statement = connection.prepareBatchInsertStatement(table, getRejectTableSchema(), Optional.<MergeConfig>empty());
+            }
+            statement.setLong(1, taskIndex);
+            statement.setLong(2, cause.getErrorCode());
+            statement.setString(3, cause.getSQLState());
+            statement.setString(4, cause.getMessage());
+            statement.setString(5, toJson(record));
+            statement.executeUpdate();
+        }
+
+        @Override
+        public void close() throws SQLException
+        {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.embulk.output.jdbc;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How records of a batch are kept to add them again when flush of the batch is retried.
+ */
+public enum RetryCaptureMode
+{
+    /**
+     * Records are not kept.
+     */
+    OFF,
+
+    /**
+     * Records are kept in memory.
+     */
+    MEMORY,
+
+    /**
+     * Records are kept in memory up to retry_capture_memory_limit, and the rest are written to a local file.
+     */
+    SPILL;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static RetryCaptureMode fromString(String value)
+    {
+        for (RetryCaptureMode mode : values()) {
+            if (mode.toString().equals(value)) {
+                return mode;
+            }
+        }
+        throw new ConfigException(String.format("Unknown retry_capture '%s'. Supported values are off, memory and spill.", value));
+    }
+}
@@ -9,6 +9,10 @@ import java.sql.SQLException;
 import java.sql.Date;
 import java.sql.Time;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,27 +24,49 @@ public class StandardBatchInsert
 
     private final JdbcOutputConnector connector;
     private final Optional<MergeConfig> mergeConfig;
+    private final BatchWeightEstimator weightEstimator;
 
     private JdbcOutputConnection connection;
     private PreparedStatement batch;
     private int index;
     private int batchWeight;
+    private long batchHeapBytes;
+    private int rowWeight;
+    private long rowHeapBytes;
     private int batchRows;
     private long totalRows;
     private int[] lastUpdateCounts;
+    private BatchCheckpoint checkpoint;
 
     public StandardBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
+    {
+        this(connector, mergeConfig, BatchWeightEstimator.UTF_8);
+    }
+
+    public StandardBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig,
+            BatchWeightEstimator weightEstimator) throws IOException, SQLException
     {
         this.connector = connector;
         this.mergeConfig = mergeConfig;
+        this.weightEstimator = weightEstimator;
+    }
+
+    @Override
+    public boolean setCheckpoint(BatchCheckpoint checkpoint)
+    {
+        this.checkpoint = checkpoint;
+        return true;
     }
 
     public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
     {
-        this.connection = connector.connect(true);
+        // each batch is committed with the checkpoint
+        this.connection = connector.connect(checkpoint == null);
         this.index = 1;  // PreparedStatement index begings from 1
         this.batchRows = 0;
         this.totalRows = 0;
+        this.rowWeight = weightEstimator.getRowWeight(insertSchema.getCount());
+        this.rowHeapBytes = weightEstimator.getRowHeapBytes(insertSchema.getCount());
         this.batch = prepareStatement(loadTable, insertSchema);
         batch.clearBatch();
     }
@@ -55,12 +81,22 @@ public class StandardBatchInsert
         return batchWeight;
     }
 
+    /**
+     * Returns estimated heap bytes retained by the driver for the rows added to the batch.
+     */
+    @Override
+    public long getBatchHeapBytes()
+    {
+        return batchHeapBytes;
+    }
+
     public void add() throws IOException, SQLException
     {
         batch.addBatch();
         index = 1;  // PreparedStatement index begins from 1
         batchRows++;
-        batchWeight += 32;  // add weight as overhead of each rows
+        batchWeight += rowWeight;  // add weight as overhead of each rows and columns
+        batchHeapBytes += rowHeapBytes;
     }
 
     public void close() throws IOException, SQLException
@@ -76,10 +112,13 @@ public class StandardBatchInsert
 
         if (batchWeight == 0) return;
 
-        logger.info(String.format("Loading %,d rows", batchRows));
+        logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, batchWeight));
         long startTime = System.currentTimeMillis();
         try {
             lastUpdateCounts = batch.executeBatch();  // here can't use returned value because MySQL Connector/J returns SUCCESS_NO_INFO as a batch result
+            if (checkpoint != null) {
+                checkpoint.commit(connection, batchRows);
+            }
             double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
 
             totalRows += batchRows;
@@ -88,14 +127,28 @@ public class StandardBatchInsert
         } catch (BatchUpdateException e) {
             // will be used for retry
             lastUpdateCounts = e.getUpdateCounts();
-            throw e;
+            throw rollbackCheckpoint(e);
+
+        } catch (SQLException e) {
+            throw rollbackCheckpoint(e);
 
         } finally {
             // clear for retry
             batch.clearBatch();
             batchRows = 0;
             batchWeight = 0;
+            batchHeapBytes = 0;
+        }
+    }
+
+    private SQLException rollbackCheckpoint(SQLException e)
+    {
+        if (checkpoint == null) {
+            return e;
         }
+        // all rows of the batch are rolled back, and retried
+        lastUpdateCounts = new int[]{};
+        return connection.rollbackBatch(e);
     }
 
     @Override
@@ -111,77 +164,73 @@ public class StandardBatchInsert
     public void setNull(int sqlType) throws IOException, SQLException
     {
         batch.setNull(index, sqlType);
-        nextColumn(0);
+        nextColumn(weightEstimator.getNullWeight());
     }
 
     public void setBoolean(boolean v) throws IOException, SQLException
     {
         batch.setBoolean(index, v);
-        nextColumn(1);
+        nextColumn(weightEstimator.getFixedWeight(1));
     }
 
     public void setByte(byte v) throws IOException, SQLException
     {
         batch.setByte(index, v);
-        nextColumn(1);
+        nextColumn(weightEstimator.getFixedWeight(1));
     }
 
     public void setShort(short v) throws IOException, SQLException
     {
         batch.setShort(index, v);
-        nextColumn(2);
+        nextColumn(weightEstimator.getFixedWeight(2));
     }
 
     public void setInt(int v) throws IOException, SQLException
     {
         batch.setInt(index, v);
-        nextColumn(4);
+        nextColumn(weightEstimator.getFixedWeight(4));
     }
 
     public void setLong(long v) throws IOException, SQLException
     {
         batch.setLong(index, v);
-        nextColumn(8);
+        nextColumn(weightEstimator.getFixedWeight(8));
     }
 
     public void setFloat(float v) throws IOException, SQLException
     {
         batch.setFloat(index, v);
-        nextColumn(4);
+        nextColumn(weightEstimator.getFixedWeight(4));
     }
 
     public void setDouble(double v) throws IOException, SQLException
     {
         batch.setDouble(index, v);
-        nextColumn(8);
+        nextColumn(weightEstimator.getFixedWeight(8));
     }
 
     public void setBigDecimal(BigDecimal v) throws IOException, SQLException
     {
-        // use estimated number of necessary bytes + 8 byte for the weight
-        // assuming one place needs 4 bits. ceil(v.precision() / 2.0) + 8
         batch.setBigDecimal(index, v);
-        nextColumn((v.precision() & ~2) / 2 + 8);
+        nextColumn(weightEstimator.getBigDecimalWeight(v), weightEstimator.getBigDecimalHeapBytes(v));
     }
 
     public void setString(String v) throws IOException, SQLException
     {
         batch.setString(index, v);
-        // estimate all chracters use 2 bytes; almost enough for the worst case
-        nextColumn(v.length() * 2 + 4);
+        nextColumn(weightEstimator.getStringWeight(v), weightEstimator.getStringHeapBytes(v));
     }
 
     public void setNString(String v) throws IOException, SQLException
     {
         batch.setNString(index, v);
-        // estimate all chracters use 2 bytes; almost enough for the worst case
-        nextColumn(v.length() * 2 + 4);
+        nextColumn(weightEstimator.getNStringWeight(v), weightEstimator.getStringHeapBytes(v));
     }
 
     public void setBytes(byte[] v) throws IOException, SQLException
     {
         batch.setBytes(index, v);
-        nextColumn(v.length + 4);
+        nextColumn(weightEstimator.getBytesWeight(v), weightEstimator.getBytesHeapBytes(v));
     }
 
     public void setSqlDate(final Instant v, final Calendar cal) throws IOException, SQLException
@@ -194,14 +243,14 @@ public class StandardBatchInsert
         cal.set(Calendar.HOUR_OF_DAY, 0);
         Date normalized = new Date(cal.getTimeInMillis());
         batch.setDate(index, normalized, cal);
-        nextColumn(32);
+        nextColumn(weightEstimator.getDateWeight(), weightEstimator.getDateHeapBytes());
     }
 
     public void setSqlTime(final Instant v, final Calendar cal) throws IOException, SQLException
     {
         Time t = new Time(v.toEpochMilli());
         batch.setTime(index, t, cal);
-        nextColumn(32);
+        nextColumn(weightEstimator.getTimeWeight(), weightEstimator.getTimeHeapBytes());
     }
 
     public void setSqlTimestamp(final Instant v, final Calendar cal) throws IOException, SQLException
@@ -209,12 +258,54 @@ public class StandardBatchInsert
         java.sql.Timestamp t = new java.sql.Timestamp(v.toEpochMilli());
         t.setNanos(v.getNano());
         batch.setTimestamp(index, t, cal);
-        nextColumn(32);
+        nextColumn(weightEstimator.getTimestampWeight(), weightEstimator.getTimestampHeapBytes());
+    }
+
+    @Override
+    public boolean supportsJavaTimeBinding()
+    {
+        return true;
+    }
+
+    // java.time values are bound by setObject of JDBC 4.2, without a Calendar and java.sql values
+    @Override
+    public void setLocalDate(LocalDate v) throws IOException, SQLException
+    {
+        batch.setObject(index, v);
+        nextColumn(weightEstimator.getDateWeight(), weightEstimator.getDateHeapBytes());
+    }
+
+    @Override
+    public void setLocalTime(LocalTime v) throws IOException, SQLException
+    {
+        batch.setObject(index, v);
+        nextColumn(weightEstimator.getTimeWeight(), weightEstimator.getTimeHeapBytes());
+    }
+
+    @Override
+    public void setLocalDateTime(LocalDateTime v) throws IOException, SQLException
+    {
+        batch.setObject(index, v);
+        nextColumn(weightEstimator.getTimestampWeight(), weightEstimator.getTimestampHeapBytes());
+    }
+
+    @Override
+    public void setOffsetDateTime(OffsetDateTime v) throws IOException, SQLException
+    {
+        batch.setObject(index, v);
+        nextColumn(weightEstimator.getTimestampWeight(), weightEstimator.getTimestampHeapBytes());
     }
 
     private void nextColumn(int weight)
     {
         index++;
-        batchWeight += weight + 4;  // add weight as overhead of each columns
+        batchWeight += weight;
+    }
+
+    private void nextColumn(int weight, long heapBytes)
+    {
+        index++;
+        batchWeight += weight;
+        batchHeapBytes += heapBytes;
     }
 }
@@ -0,0 +1,218 @@
+package org.embulk.output.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+
+/**
+ * Cache of metadata of target tables, shared in the JVM and optionally stored in a directory.
+ *
+ * Entries are keyed by URL and user of the connection and the table name, and expire after the TTL.
+ * The plugin invalidates entries of tables it creates or replaces, but changes of tables by
+ * other clients are not visible until the entries expire.
+ */
+public class TableMetadataCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(TableMetadataCache.class);
+
+    private static final ConcurrentHashMap<String, TableMetadata> ENTRIES = new ConcurrentHashMap<>();
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().registerModule(new Jdk8Module());
+
+    public static interface Loader
+    {
+        public TableMetadata load() throws SQLException;
+    }
+
+    private final long ttlMillis;
+    private final Optional<Path> directory;
+
+    /**
+     * @param ttlSeconds seconds to keep entries. 0 disables the cache.
+     * @param directory directory to store entries, or empty to keep them only in the JVM
+     */
+    public TableMetadataCache(long ttlSeconds, Optional<String> directory)
+    {
+        this.ttlMillis = ttlSeconds * 1000;
+        this.directory = directory.map(dir -> Paths.get(dir));
+    }
+
+    public TableMetadata get(JdbcOutputConnection con, String tableName, Loader loader) throws SQLException
+    {
+        if (ttlMillis <= 0) {
+            return loader.load();
+        }
+
+        String key = buildKey(con, tableName);
+        long now = System.currentTimeMillis();
+        TableMetadata metadata = ENTRIES.get(key);
+        if (metadata == null && directory.isPresent()) {
+            metadata = read(key);
+        }
+        if (metadata != null && now - metadata.getCachedAt() < ttlMillis) {
+            logger.info("Using cached metadata of table '{}'", tableName);
+            return metadata;
+        }
+
+        metadata = loader.load().withCachedAt(now);
+        ENTRIES.put(key, metadata);
+        if (directory.isPresent()) {
+            write(key, metadata);
+        }
+        return metadata;
+    }
+
+    public void invalidate(JdbcOutputConnection con, String tableName) throws SQLException
+    {
+        if (ttlMillis <= 0) {
+            return;
+        }
+
+        String key = buildKey(con, tableName);
+        ENTRIES.remove(key);
+        if (directory.isPresent()) {
+            try {
+                Files.deleteIfExists(fileOf(key));
+            } catch (IOException ex) {
+                logger.warn("Failed to delete cached metadata of table '{}'", tableName, ex);
+            }
+        }
+    }
+
+    private static String buildKey(JdbcOutputConnection con, String tableName) throws SQLException
+    {
+        DatabaseMetaData dbm = con.getMetaData();
+        return dbm.getURL() + "\n" + dbm.getUserName() + "\n" + con.getSchemaName() + "\n" + tableName;
+    }
+
+    private TableMetadata read(String key)
+    {
+        File file = fileOf(key).toFile();
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            TableMetadata metadata = MAPPER.readValue(file, TableMetadata.class);
+            // guards against collision of hashes
+            return key.equals(metadata.getKey()) ? metadata : null;
+        } catch (IOException ex) {
+            logger.warn("Ignored broken cache file {}", file, ex);
+            return null;
+        }
+    }
+
+    private void write(String key, TableMetadata metadata)
+    {
+        try {
+            Files.createDirectories(directory.get());
+            // write to a temporary file and rename it so that other processes don't read a partial file
+            Path temp = Files.createTempFile(directory.get(), "metadata", ".tmp");
+            try {
+                MAPPER.writeValue(temp.toFile(), metadata.withKey(key));
+                Files.move(temp, fileOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException ex) {
+            logger.warn("Failed to write metadata cache to {}", directory.get(), ex);
+        }
+    }
+
+    private Path fileOf(String key)
+    {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest(key.getBytes(StandardCharsets.UTF_8))) {
+                sb.append(String.format("%02x", b));
+            }
+            return directory.get().resolve(sb.append(".json").toString());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Name and schema of an existing table, resolved from the table name specified by the table option.
+     */
+    public static class TableMetadata
+    {
+        private final String key;
+        private final long cachedAt;
+        private final Optional<String> actualTableName;
+        private final Optional<JdbcSchema> schema;
+
+        public TableMetadata(Optional<String> actualTableName, Optional<JdbcSchema> schema)
+        {
+            this(null, 0, actualTableName, schema);
+        }
+
+        @JsonCreator
+        public TableMetadata(
+                @JsonProperty("key") String key,
+                @JsonProperty("cachedAt") long cachedAt,
+                @JsonProperty("actualTableName") Optional<String> actualTableName,
+                @JsonProperty("schema") Optional<JdbcSchema> schema)
+        {
+            this.key = key;
+            this.cachedAt = cachedAt;
+            this.actualTableName = actualTableName;
+            this.schema = schema;
+        }
+
+        @JsonProperty("key")
+        public String getKey()
+        {
+            return key;
+        }
+
+        @JsonProperty("cachedAt")
+        public long getCachedAt()
+        {
+            return cachedAt;
+        }
+
+        /**
+         * Returns the name of the existing table, or empty if the table doesn't exist.
+         */
+        @JsonProperty("actualTableName")
+        public Optional<String> getActualTableName()
+        {
+            return actualTableName;
+        }
+
+        @JsonProperty("schema")
+        public Optional<JdbcSchema> getSchema()
+        {
+            return schema;
+        }
+
+        TableMetadata withCachedAt(long cachedAt)
+        {
+            return new TableMetadata(key, cachedAt, actualTableName, schema);
+        }
+
+        TableMetadata withKey(String key)
+        {
+            return new TableMetadata(key, cachedAt, actualTableName, schema);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Offset of a time zone, cached for the period between transitions which contains the last instant.
+ *
+ * Timestamps loaded in a batch are usually close to each other, so the offset rarely needs to be looked up.
+ * Not thread-safe.
+ */
+public class ZoneOffsetCache
+{
+    private final ZoneRules rules;
+    private long validFrom;  // inclusive, in epoch seconds
+    private long validUntil;  // exclusive, in epoch seconds
+    private int offsetSeconds;
+
+    public ZoneOffsetCache(ZoneId zone)
+    {
+        this.rules = zone.getRules();
+        if (rules.isFixedOffset()) {
+            this.validFrom = Long.MIN_VALUE;
+            this.validUntil = Long.MAX_VALUE;
+            this.offsetSeconds = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+        } else {
+            // empty until the first lookup
+            this.validFrom = Long.MAX_VALUE;
+            this.validUntil = Long.MIN_VALUE;
+        }
+    }
+
+    public int getOffsetSeconds(long epochSecond)
+    {
+        if (epochSecond >= validFrom && epochSecond < validUntil) {
+            return offsetSeconds;
+        }
+
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        ZoneOffset offset = rules.getOffset(instant);
+        // previousTransition returns a transition strictly before the instant
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        validFrom = previous != null ? previous.toEpochSecond() : Long.MIN_VALUE;
+        validUntil = next != null ? next.toEpochSecond() : Long.MAX_VALUE;
+        offsetSeconds = offset.getTotalSeconds();
+        return offsetSeconds;
+    }
+}
@@ -0,0 +1,15 @@
+package org.embulk.output.jdbc.jfr;
+
+/**
+ * Duration of an operation recorded as a JFR event. The event is committed by {@link #close()}.
+ */
+public interface EventScope
+        extends AutoCloseable
+{
+    public EventScope setRows(long rows);
+
+    public EventScope setBytes(long bytes);
+
+    @Override
+    public void close();
+}
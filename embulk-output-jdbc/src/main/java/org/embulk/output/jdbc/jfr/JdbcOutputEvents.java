@@ -0,0 +1,70 @@
+package org.embulk.output.jdbc.jfr;
+
+/**
+ * Emits JFR events of loading phases, SQL executions and bulk loads.
+ *
+ * JFR API (jdk.jfr) is available on Java 8u262 or later. If it is not available,
+ * the methods return a scope which does nothing, and event classes are never loaded.
+ */
+public final class JdbcOutputEvents
+{
+    private static final boolean AVAILABLE = isJfrAvailable();
+
+    private static final EventScope NOOP = new EventScope()
+    {
+        @Override
+        public EventScope setRows(long rows)
+        {
+            return this;
+        }
+
+        @Override
+        public EventScope setBytes(long bytes)
+        {
+            return this;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    };
+
+    private JdbcOutputEvents()
+    {
+    }
+
+    private static boolean isJfrAvailable()
+    {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Begins a phase of loading, such as begin, flush, finish, commit and cleanup.
+     */
+    public static EventScope phase(String phase, String table, Object mode)
+    {
+        return AVAILABLE ? JfrEvents.phase(phase, table, String.valueOf(mode)) : NOOP;
+    }
+
+    /**
+     * Begins execution of a SQL statement.
+     */
+    public static EventScope sql(String sql)
+    {
+        return AVAILABLE ? JfrEvents.sql(sql) : NOOP;
+    }
+
+    /**
+     * Begins a bulk load by the method, such as COPY of PostgreSQL and bcp of SQL Server.
+     */
+    public static EventScope bulkLoad(String method, String table)
+    {
+        return AVAILABLE ? JfrEvents.bulkLoad(method, table) : NOOP;
+    }
+}
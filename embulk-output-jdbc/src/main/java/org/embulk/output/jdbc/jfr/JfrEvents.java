@@ -0,0 +1,146 @@
+package org.embulk.output.jdbc.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event types. This class is loaded only when JFR API is available.
+ */
+final class JfrEvents
+{
+    private static final int MAX_SQL_LENGTH = 4096;
+
+    private JfrEvents()
+    {
+    }
+
+    static EventScope phase(String phase, String table, String mode)
+    {
+        LoadPhaseEvent event = new LoadPhaseEvent();
+        if (!event.isEnabled()) {
+            return new Scope(null);
+        }
+        event.phase = phase;
+        event.table = table;
+        event.mode = mode;
+        return new Scope(event);
+    }
+
+    static EventScope sql(String sql)
+    {
+        SqlExecutionEvent event = new SqlExecutionEvent();
+        if (!event.isEnabled()) {
+            return new Scope(null);
+        }
+        event.sql = sql.length() > MAX_SQL_LENGTH ? sql.substring(0, MAX_SQL_LENGTH) : sql;
+        return new Scope(event);
+    }
+
+    static EventScope bulkLoad(String method, String table)
+    {
+        BulkLoadEvent event = new BulkLoadEvent();
+        if (!event.isEnabled()) {
+            return new Scope(null);
+        }
+        event.method = method;
+        event.table = table;
+        return new Scope(event);
+    }
+
+    private static class Scope
+            implements EventScope
+    {
+        private final LoadEvent event;
+
+        Scope(LoadEvent event)
+        {
+            this.event = event;
+            if (event != null) {
+                event.begin();
+            }
+        }
+
+        @Override
+        public EventScope setRows(long rows)
+        {
+            if (event != null) {
+                event.rows = rows;
+            }
+            return this;
+        }
+
+        @Override
+        public EventScope setBytes(long bytes)
+        {
+            if (event != null) {
+                event.bytes = bytes;
+            }
+            return this;
+        }
+
+        @Override
+        public void close()
+        {
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    @Category({"Embulk", "JDBC Output"})
+    abstract static class LoadEvent
+            extends Event
+    {
+        @Label("Rows")
+        long rows = -1;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes = -1;
+    }
+
+    @Name("org.embulk.output.jdbc.LoadPhase")
+    @Label("Load Phase")
+    @Description("A phase of loading: begin, flush, finish, commit or cleanup")
+    static class LoadPhaseEvent
+            extends LoadEvent
+    {
+        @Label("Phase")
+        String phase;
+
+        @Label("Table")
+        String table;
+
+        @Label("Mode")
+        String mode;
+    }
+
+    @Name("org.embulk.output.jdbc.SqlExecution")
+    @Label("SQL Execution")
+    static class SqlExecutionEvent
+            extends LoadEvent
+    {
+        @Label("SQL")
+        String sql;
+    }
+
+    @Name("org.embulk.output.jdbc.BulkLoad")
+    @Label("Bulk Load")
+    @Description("A bulk load call such as COPY or bcp")
+    static class BulkLoadEvent
+            extends LoadEvent
+    {
+        @Label("Method")
+        String method;
+
+        @Label("Table")
+        String table;
+    }
+}
@@ -9,6 +9,8 @@ import java.time.ZoneId;
 import org.embulk.config.ConfigSource;
 import org.embulk.spi.Exec;
 import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.CachedTimestampFormatter;
+import org.embulk.output.jdbc.DateTimeBinding;
 import org.embulk.output.jdbc.JdbcColumn;
 import org.embulk.output.jdbc.JdbcColumnOption;
 import org.embulk.config.ConfigException;
@@ -18,6 +20,7 @@ public class ColumnSetterFactory
 {
     protected final BatchInsert batch;
     protected final ZoneId defaultTimeZone;
+    protected DateTimeBinding dateTimeBinding = DateTimeBinding.LEGACY;
 
     public ColumnSetterFactory(final BatchInsert batch, final ZoneId defaultTimeZone)
     {
@@ -25,6 +28,12 @@ public class ColumnSetterFactory
         this.defaultTimeZone = defaultTimeZone;
     }
 
+    public ColumnSetterFactory setDateTimeBinding(DateTimeBinding dateTimeBinding)
+    {
+        this.dateTimeBinding = dateTimeBinding;
+        return this;
+    }
+
     public SkipColumnSetter newSkipColumnSetter()
     {
         return new SkipColumnSetter(batch);
@@ -55,15 +64,15 @@ public class ColumnSetterFactory
         case "boolean":
             return new BooleanColumnSetter(batch, column, newDefaultValueSetter(column, option));
         case "string":
-            return new StringColumnSetter(batch, column, newDefaultValueSetter(column, option), newTimestampFormatter(option));
+            return new StringColumnSetter(batch, column, newDefaultValueSetter(column, option), newCachedTimestampFormatter(option));
         case "nstring":
-            return new NStringColumnSetter(batch, column, newDefaultValueSetter(column, option), newTimestampFormatter(option));
+            return new NStringColumnSetter(batch, column, newDefaultValueSetter(column, option), newCachedTimestampFormatter(option));
         case "date":
-            return new SqlDateColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+            return newDateColumnSetter(column, option);
         case "time":
-            return new SqlTimeColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+            return newTimeColumnSetter(column, option);
         case "timestamp":
-            return new SqlTimestampColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+            return newTimestampColumnSetter(column, option);
         case "decimal":
             return new BigDecimalColumnSetter(batch, column, newDefaultValueSetter(column, option));
         case "json":
@@ -84,6 +93,50 @@ public class ColumnSetterFactory
         return TimestampFormatter.builder(format, true).setDefaultZoneId(timezone).build();
     }
 
+    protected CachedTimestampFormatter newCachedTimestampFormatter(JdbcColumnOption option)
+    {
+        return CachedTimestampFormatter.of(option.getTimestampFormat(), getTimeZone(option), newTimestampFormatter(option));
+    }
+
+    protected ColumnSetter newDateColumnSetter(JdbcColumn column, JdbcColumnOption option)
+    {
+        if (useJavaTimeBinding()) {
+            return new LocalDateColumnSetter(batch, column, newDefaultValueSetter(column, option), getTimeZone(option));
+        }
+        return new SqlDateColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+    }
+
+    protected ColumnSetter newTimeColumnSetter(JdbcColumn column, JdbcColumnOption option)
+    {
+        if (useJavaTimeBinding()) {
+            return new LocalTimeColumnSetter(batch, column, newDefaultValueSetter(column, option), getTimeZone(option));
+        }
+        return new SqlTimeColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+    }
+
+    protected ColumnSetter newTimestampColumnSetter(JdbcColumn column, JdbcColumnOption option)
+    {
+        if (useJavaTimeBinding()) {
+            return new LocalDateTimeColumnSetter(batch, column, newDefaultValueSetter(column, option), getTimeZone(option),
+                    isTimestampWithTimeZone(column));
+        }
+        return new SqlTimestampColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+    }
+
+    protected boolean useJavaTimeBinding()
+    {
+        // batch is null when column options are validated
+        return dateTimeBinding == DateTimeBinding.JAVA_TIME && (batch == null || batch.supportsJavaTimeBinding());
+    }
+
+    protected boolean isTimestampWithTimeZone(JdbcColumn column)
+    {
+        // some drivers return Types.TIMESTAMP for columns with time zone
+        String typeName = column.getSimpleTypeName().toLowerCase(Locale.ENGLISH);
+        return column.getSqlType() == Types.TIMESTAMP_WITH_TIMEZONE
+            || typeName.equals("timestamptz") || typeName.contains("with time zone") || typeName.equals("datetimeoffset");
+    }
+
     protected Calendar newCalendar(JdbcColumnOption option)
     {
         return Calendar.getInstance(TimeZone.getTimeZone(getTimeZone(option)), Locale.ENGLISH);
@@ -132,14 +185,14 @@ public class ColumnSetterFactory
         case Types.VARCHAR:
         case Types.LONGVARCHAR:
         case Types.CLOB:
-            return new StringColumnSetter(batch, column, newDefaultValueSetter(column, option), newTimestampFormatter(option));
+            return new StringColumnSetter(batch, column, newDefaultValueSetter(column, option), newCachedTimestampFormatter(option));
 
         // setNString, NClob
         case Types.NCHAR:
         case Types.NVARCHAR:
         case Types.LONGNVARCHAR:
         case Types.NCLOB:
-            return new NStringColumnSetter(batch, column, newDefaultValueSetter(column, option), newTimestampFormatter(option));
+            return new NStringColumnSetter(batch, column, newDefaultValueSetter(column, option), newCachedTimestampFormatter(option));
 
         // TODO
         //// setBytes Blob
@@ -151,11 +204,11 @@ public class ColumnSetterFactory
 
         // Time
         case Types.DATE:
-            return new SqlDateColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+            return newDateColumnSetter(column, option);
         case Types.TIME:
-            return new SqlTimeColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+            return newTimeColumnSetter(column, option);
         case Types.TIMESTAMP:
-            return new SqlTimestampColumnSetter(batch, column, newDefaultValueSetter(column, option), newCalendar(option));
+            return newTimestampColumnSetter(column, option);
 
         // Null
         case Types.NULL:
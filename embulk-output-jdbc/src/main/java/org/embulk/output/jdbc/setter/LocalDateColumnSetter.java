@@ -0,0 +1,76 @@
+package org.embulk.output.jdbc.setter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.ZoneOffsetCache;
+import org.msgpack.value.Value;
+
+public class LocalDateColumnSetter
+        extends ColumnSetter
+{
+    protected final ZoneOffsetCache offsets;
+    private long cachedEpochDay = Long.MIN_VALUE;
+    private LocalDate cachedDate;
+
+    public LocalDateColumnSetter(BatchInsert batch, JdbcColumn column,
+            DefaultValueSetter defaultValue,
+            ZoneId timeZone)
+    {
+        super(batch, column, defaultValue);
+        this.offsets = new ZoneOffsetCache(timeZone);
+    }
+
+    @Override
+    public void nullValue() throws IOException, SQLException
+    {
+        defaultValue.setSqlDate();
+    }
+
+    @Override
+    public void booleanValue(boolean v) throws IOException, SQLException
+    {
+        defaultValue.setSqlDate();
+    }
+
+    @Override
+    public void longValue(long v) throws IOException, SQLException
+    {
+        defaultValue.setSqlDate();
+    }
+
+    @Override
+    public void doubleValue(double v) throws IOException, SQLException
+    {
+        defaultValue.setSqlDate();
+    }
+
+    @Override
+    public void stringValue(String v) throws IOException, SQLException
+    {
+        defaultValue.setSqlDate();
+    }
+
+    @Override
+    public void timestampValue(final Instant v) throws IOException, SQLException
+    {
+        long epochSecond = v.getEpochSecond();
+        long epochDay = Math.floorDiv(epochSecond + offsets.getOffsetSeconds(epochSecond), 86400);
+        if (epochDay != cachedEpochDay) {
+            cachedDate = LocalDate.ofEpochDay(epochDay);
+            cachedEpochDay = epochDay;
+        }
+        batch.setLocalDate(cachedDate);
+    }
+
+    @Override
+    public void jsonValue(Value v) throws IOException, SQLException
+    {
+        defaultValue.setSqlDate();
+    }
+}
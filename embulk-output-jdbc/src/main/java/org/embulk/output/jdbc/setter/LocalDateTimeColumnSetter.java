@@ -0,0 +1,84 @@
+package org.embulk.output.jdbc.setter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.ZoneOffsetCache;
+import org.msgpack.value.Value;
+
+/**
+ * Binds timestamps as LocalDateTime in the time zone, or as OffsetDateTime for columns with time zone.
+ */
+public class LocalDateTimeColumnSetter
+        extends ColumnSetter
+{
+    protected final ZoneOffsetCache offsets;
+    protected final boolean withOffset;
+
+    public LocalDateTimeColumnSetter(BatchInsert batch, JdbcColumn column,
+            DefaultValueSetter defaultValue,
+            ZoneId timeZone,
+            boolean withOffset)
+    {
+        super(batch, column, defaultValue);
+        this.offsets = new ZoneOffsetCache(timeZone);
+        this.withOffset = withOffset;
+    }
+
+    @Override
+    public void nullValue() throws IOException, SQLException
+    {
+        defaultValue.setSqlTimestamp();
+    }
+
+    @Override
+    public void booleanValue(boolean v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTimestamp();
+    }
+
+    @Override
+    public void longValue(long v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTimestamp();
+    }
+
+    @Override
+    public void doubleValue(double v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTimestamp();
+    }
+
+    @Override
+    public void stringValue(String v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTimestamp();
+    }
+
+    @Override
+    public void timestampValue(final Instant v) throws IOException, SQLException
+    {
+        long epochSecond = v.getEpochSecond();
+        // offsets are cached by ZoneOffset for multiples of 15 minutes
+        ZoneOffset offset = ZoneOffset.ofTotalSeconds(offsets.getOffsetSeconds(epochSecond));
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(epochSecond, v.getNano(), offset);
+        if (withOffset) {
+            batch.setOffsetDateTime(OffsetDateTime.of(dateTime, offset));
+        } else {
+            batch.setLocalDateTime(dateTime);
+        }
+    }
+
+    @Override
+    public void jsonValue(Value v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTimestamp();
+    }
+}
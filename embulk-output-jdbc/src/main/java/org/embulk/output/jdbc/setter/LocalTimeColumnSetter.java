@@ -0,0 +1,70 @@
+package org.embulk.output.jdbc.setter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.ZoneOffsetCache;
+import org.msgpack.value.Value;
+
+public class LocalTimeColumnSetter
+        extends ColumnSetter
+{
+    protected final ZoneOffsetCache offsets;
+
+    public LocalTimeColumnSetter(BatchInsert batch, JdbcColumn column,
+            DefaultValueSetter defaultValue,
+            ZoneId timeZone)
+    {
+        super(batch, column, defaultValue);
+        this.offsets = new ZoneOffsetCache(timeZone);
+    }
+
+    @Override
+    public void nullValue() throws IOException, SQLException
+    {
+        defaultValue.setSqlTime();
+    }
+
+    @Override
+    public void booleanValue(boolean v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTime();
+    }
+
+    @Override
+    public void longValue(long v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTime();
+    }
+
+    @Override
+    public void doubleValue(double v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTime();
+    }
+
+    @Override
+    public void stringValue(String v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTime();
+    }
+
+    @Override
+    public void timestampValue(final Instant v) throws IOException, SQLException
+    {
+        long epochSecond = v.getEpochSecond();
+        long secondOfDay = Math.floorMod(epochSecond + offsets.getOffsetSeconds(epochSecond), 86400);
+        batch.setLocalTime(LocalTime.ofNanoOfDay(secondOfDay * 1000000000L + v.getNano()));
+    }
+
+    @Override
+    public void jsonValue(Value v) throws IOException, SQLException
+    {
+        defaultValue.setSqlTime();
+    }
+}
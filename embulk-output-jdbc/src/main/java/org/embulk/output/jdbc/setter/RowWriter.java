@@ -0,0 +1,202 @@
+package org.embulk.output.jdbc.setter;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.embulk.output.jdbc.Record;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+
+/**
+ * Writes all columns of a record to ColumnSetters.
+ *
+ * Unlike {@link ColumnSetterVisitor}, the type of each column is resolved once when RowWriter is created,
+ * and a writer specialized for the type is used for each value. Skipped columns are not read at all.
+ * Exceptions are not wrapped per value but thrown from {@link #write(Record)}.
+ * Each value still goes through a call of the writer and a call of its ColumnSetter, so this removes
+ * the type dispatch of the visitor but not the dispatch to the ColumnSetter.
+ */
+public class RowWriter
+{
+    private final ColumnWriter[] writers;
+
+    public RowWriter(List<Column> columns, List<ColumnSetter> setters)
+    {
+        final List<ColumnWriter> writers = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            final ColumnSetter setter = setters.get(i);
+            if (setter instanceof SkipColumnSetter) {
+                continue;
+            }
+            columns.get(i).visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    writers.add(new BooleanColumnWriter(column, setter));
+                }
+
+                public void longColumn(Column column)
+                {
+                    writers.add(new LongColumnWriter(column, setter));
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    writers.add(new DoubleColumnWriter(column, setter));
+                }
+
+                public void stringColumn(Column column)
+                {
+                    writers.add(new StringColumnWriter(column, setter));
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    writers.add(new TimestampColumnWriter(column, setter));
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    writers.add(new JsonColumnWriter(column, setter));
+                }
+            });
+        }
+        this.writers = writers.toArray(new ColumnWriter[writers.size()]);
+    }
+
+    public void write(Record record) throws IOException, SQLException
+    {
+        for (ColumnWriter writer : writers) {
+            writer.write(record);
+        }
+    }
+
+    private abstract static class ColumnWriter
+    {
+        protected final Column column;
+        protected final ColumnSetter setter;
+
+        protected ColumnWriter(Column column, ColumnSetter setter)
+        {
+            this.column = column;
+            this.setter = setter;
+        }
+
+        public abstract void write(Record record) throws IOException, SQLException;
+    }
+
+    private static final class BooleanColumnWriter
+            extends ColumnWriter
+    {
+        BooleanColumnWriter(Column column, ColumnSetter setter)
+        {
+            super(column, setter);
+        }
+
+        @Override
+        public void write(Record record) throws IOException, SQLException
+        {
+            if (record.isNull(column)) {
+                setter.nullValue();
+            } else {
+                setter.booleanValue(record.getBoolean(column));
+            }
+        }
+    }
+
+    private static final class LongColumnWriter
+            extends ColumnWriter
+    {
+        LongColumnWriter(Column column, ColumnSetter setter)
+        {
+            super(column, setter);
+        }
+
+        @Override
+        public void write(Record record) throws IOException, SQLException
+        {
+            if (record.isNull(column)) {
+                setter.nullValue();
+            } else {
+                setter.longValue(record.getLong(column));
+            }
+        }
+    }
+
+    private static final class DoubleColumnWriter
+            extends ColumnWriter
+    {
+        DoubleColumnWriter(Column column, ColumnSetter setter)
+        {
+            super(column, setter);
+        }
+
+        @Override
+        public void write(Record record) throws IOException, SQLException
+        {
+            if (record.isNull(column)) {
+                setter.nullValue();
+            } else {
+                setter.doubleValue(record.getDouble(column));
+            }
+        }
+    }
+
+    private static final class StringColumnWriter
+            extends ColumnWriter
+    {
+        StringColumnWriter(Column column, ColumnSetter setter)
+        {
+            super(column, setter);
+        }
+
+        @Override
+        public void write(Record record) throws IOException, SQLException
+        {
+            if (record.isNull(column)) {
+                setter.nullValue();
+            } else {
+                setter.stringValue(record.getString(column));
+            }
+        }
+    }
+
+    private static final class TimestampColumnWriter
+            extends ColumnWriter
+    {
+        TimestampColumnWriter(Column column, ColumnSetter setter)
+        {
+            super(column, setter);
+        }
+
+        @Override
+        public void write(Record record) throws IOException, SQLException
+        {
+            if (record.isNull(column)) {
+                setter.nullValue();
+            } else {
+                setter.timestampValue(record.getTimestamp(column));
+            }
+        }
+    }
+
+    private static final class JsonColumnWriter
+            extends ColumnWriter
+    {
+        JsonColumnWriter(Column column, ColumnSetter setter)
+        {
+            super(column, setter);
+        }
+
+        @Override
+        public void write(Record record) throws IOException, SQLException
+        {
+            if (record.isNull(column)) {
+                setter.nullValue();
+            } else {
+                setter.jsonValue(record.getJson(column));
+            }
+        }
+    }
+}
@@ -6,17 +6,25 @@ import java.time.Instant;
 
 import org.embulk.output.jdbc.JdbcColumn;
 import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.CachedTimestampFormatter;
 import org.embulk.util.timestamp.TimestampFormatter;
 import org.msgpack.value.Value;
 
 public class StringColumnSetter
         extends ColumnSetter
 {
-    private final TimestampFormatter timestampFormatter;
+    private final CachedTimestampFormatter timestampFormatter;
 
     public StringColumnSetter(BatchInsert batch, JdbcColumn column,
             DefaultValueSetter defaultValue,
             TimestampFormatter timestampFormatter)
+    {
+        this(batch, column, defaultValue, new CachedTimestampFormatter(timestampFormatter));
+    }
+
+    public StringColumnSetter(BatchInsert batch, JdbcColumn column,
+            DefaultValueSetter defaultValue,
+            CachedTimestampFormatter timestampFormatter)
     {
         super(batch, column, defaultValue);
         this.timestampFormatter = timestampFormatter;
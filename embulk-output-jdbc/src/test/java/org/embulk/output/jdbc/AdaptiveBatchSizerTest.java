@@ -0,0 +1,40 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AdaptiveBatchSizerTest
+{
+    @Test
+    public void testIncreaseWhileFast()
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 100, 2000, 1000);
+        sizer.observe(1000, 10, 500);
+        assertEquals(1250, sizer.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            sizer.observe(sizer.getBatchSize(), 10, 500);
+        }
+        assertEquals(2000, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testDecreaseWhenSlow()
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 100, 2000, 1000);
+        sizer.observe(1000, 10, 1500);
+        assertEquals(500, sizer.getBatchSize());
+        for (int i = 0; i < 10; i++) {
+            sizer.observe(sizer.getBatchSize(), 10, 1500);
+        }
+        assertEquals(100, sizer.getBatchSize());
+    }
+
+    @Test
+    public void testIgnoreSmallBatch()
+    {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(1000, 100, 2000, 1000);
+        sizer.observe(100, 1, 1500);
+        assertEquals(1000, sizer.getBatchSize());
+    }
+}
@@ -0,0 +1,54 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchInsertTest
+{
+    @Test
+    public void testJavaTimeFallback() throws Exception
+    {
+        // values are set by the legacy methods, and keep local date and time in the zone of the calendar
+        final List<Object> values = new ArrayList<>();
+        BatchInsert batch = new PluginPageOutputTest.RecordingBatchInsert()
+        {
+            @Override
+            public void setSqlDate(Instant v, Calendar cal)
+            {
+                values.add(v.atZone(cal.getTimeZone().toZoneId()).toLocalDate());
+            }
+
+            @Override
+            public void setSqlTime(Instant v, Calendar cal)
+            {
+                values.add(v.atZone(cal.getTimeZone().toZoneId()).toLocalTime());
+            }
+
+            @Override
+            public void setSqlTimestamp(Instant v, Calendar cal)
+            {
+                values.add(v.atZone(cal.getTimeZone().toZoneId()).toOffsetDateTime());
+            }
+        };
+
+        batch.setLocalDate(LocalDate.of(1969, 12, 31));
+        batch.setLocalTime(LocalTime.of(23, 59, 59, 500000000));
+        batch.setLocalDateTime(LocalDateTime.of(2020, 3, 8, 2, 30));
+        batch.setOffsetDateTime(OffsetDateTime.of(2020, 3, 8, 2, 30, 0, 0, ZoneOffset.ofHours(9)));
+        assertEquals(LocalDate.of(1969, 12, 31), values.get(0));
+        assertEquals(LocalTime.of(23, 59, 59, 500000000), values.get(1));
+        assertEquals(OffsetDateTime.of(2020, 3, 8, 2, 30, 0, 0, ZoneOffset.UTC), values.get(2));
+        assertEquals(OffsetDateTime.of(2020, 3, 8, 2, 30, 0, 0, ZoneOffset.ofHours(9)), values.get(3));
+    }
+}
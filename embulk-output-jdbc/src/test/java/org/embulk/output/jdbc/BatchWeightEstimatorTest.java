@@ -0,0 +1,43 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class BatchWeightEstimatorTest
+{
+    @Test
+    public void testEncodedLength()
+    {
+        String[] values = {"", "abc", "été", "あいう", "😀x", "aéあ😀"};
+        Charset[] charsets = {StandardCharsets.UTF_8, StandardCharsets.UTF_16LE, StandardCharsets.ISO_8859_1, Charset.forName("Shift_JIS")};
+        for (Charset charset : charsets) {
+            for (String value : values) {
+                if (charset.newEncoder().canEncode(value)) {
+                    assertEquals(charset + ": " + value, value.getBytes(charset).length, BatchWeightEstimator.encodedLength(value, charset));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStringWeight()
+    {
+        assertEquals(3 + 4, BatchWeightEstimator.UTF_8.getStringWeight("abc"));
+        assertEquals(9 + 4, BatchWeightEstimator.UTF_8.getStringWeight("あいう"));
+        assertEquals(6 + 4, BatchWeightEstimator.UTF_8.getNStringWeight("abc"));
+        assertEquals(6 + 4, BatchWeightEstimator.UTF_16.getStringWeight("abc"));
+    }
+
+    @Test
+    public void testBigDecimalWeight()
+    {
+        assertEquals(1 + 8, BatchWeightEstimator.UTF_8.getBigDecimalWeight(new BigDecimal("1")));
+        assertEquals(3 + 8, BatchWeightEstimator.UTF_8.getBigDecimalWeight(new BigDecimal("12345")));
+        assertEquals(3 + 8, BatchWeightEstimator.UTF_8.getBigDecimalWeight(new BigDecimal("123456")));
+    }
+}
@@ -0,0 +1,61 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CachedTimestampFormatterTest
+{
+    @Test
+    public void testFormat()
+    {
+        CachedTimestampFormatter formatter = CachedTimestampFormatter.of("%Y-%m-%d %H:%M:%S.%6N", ZoneOffset.UTC, null);
+        assertTrue(formatter.isCached());
+        assertEquals("2015-03-04 17:08:09.001234", formatter.format(Instant.parse("2015-03-04T17:08:09.001234567Z")));
+        assertEquals("2015-03-04 17:08:09.123456", formatter.format(Instant.parse("2015-03-04T17:08:09.123456789Z")));
+        assertEquals("2015-03-04 17:08:10.000000", formatter.format(Instant.parse("2015-03-04T17:08:10Z")));
+        assertEquals("2015-03-05 00:00:00.000000", formatter.format(Instant.parse("2015-03-05T00:00:00Z")));
+        assertEquals("1969-12-31 23:59:59.999999", formatter.format(Instant.parse("1969-12-31T23:59:59.999999999Z")));
+
+        assertEquals("2015-03-04T17:08:09",
+                CachedTimestampFormatter.of("%FT%T", ZoneOffset.UTC, null).format(Instant.parse("2015-03-04T17:08:09.5Z")));
+        assertEquals("2015-03-04 17:08:09.500",
+                CachedTimestampFormatter.of("%Y-%m-%d %H:%M:%S.%L", ZoneOffset.UTC, null).format(Instant.parse("2015-03-04T17:08:09.5Z")));
+        assertEquals("2015-03-04 17:08:09.500000000",
+                CachedTimestampFormatter.of("ruby:%Y-%m-%d %H:%M:%S.%N", ZoneOffset.UTC, null).format(Instant.parse("2015-03-04T17:08:09.5Z")));
+        assertEquals("2015-03-05 02:08:09.5",
+                CachedTimestampFormatter.of("%Y-%m-%d %H:%M:%S.%1N", ZoneId.of("Asia/Tokyo"), null).format(Instant.parse("2015-03-04T17:08:09.5Z")));
+    }
+
+    @Test
+    public void testUnsupportedPattern()
+    {
+        assertFalse(CachedTimestampFormatter.of("%Y/%m/%d %H:%M:%S", ZoneOffset.UTC, null).isCached());
+        assertFalse(CachedTimestampFormatter.of("%Y-%m-%d %H:%M:%S %z", ZoneOffset.UTC, null).isCached());
+        assertFalse(CachedTimestampFormatter.of("java:yyyy-MM-dd HH:mm:ss", ZoneOffset.UTC, null).isCached());
+    }
+
+    @Test
+    public void testSameAsDateTimeFormatter()
+    {
+        ZoneId zone = ZoneId.of("America/New_York");
+        DateTimeFormatter expected = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS").withZone(zone);
+        CachedTimestampFormatter formatter = CachedTimestampFormatter.of("%Y-%m-%d %H:%M:%S.%6N", zone, null);
+        Random random = new Random(1);
+        long epochSecond = Instant.parse("2020-03-07T00:00:00Z").getEpochSecond();
+        for (int i = 0; i < 100000; i++) {
+            // mostly in the same second, sometimes across days and transitions
+            epochSecond += random.nextInt(10) == 0 ? random.nextInt(7200) : 0;
+            Instant instant = Instant.ofEpochSecond(epochSecond, random.nextInt(1000000000));
+            assertEquals(expected.format(instant), formatter.format(instant));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ConnectionPoolTest
+{
+    @Test
+    public void testReuse() throws SQLException
+    {
+        ConnectionPool pool = new ConnectionPool(1, 60000);
+        JdbcOutputConnection con1 = pool.borrow(() -> newConnection(new AtomicBoolean(true)));
+        JdbcOutputConnection con2 = pool.borrow(() -> newConnection(new AtomicBoolean(true)));
+        assertNotSame(con1, con2);
+
+        con1.close();
+        con2.close();
+        // only 1 idle connection is kept
+        assertEquals(1, pool.getIdleConnectionCount());
+        assertTrue(isClosed(con2));
+
+        assertSame(con1, pool.borrow(() -> newConnection(new AtomicBoolean(true))));
+        assertEquals(0, pool.getIdleConnectionCount());
+    }
+
+    @Test
+    public void testInvalidConnection() throws SQLException
+    {
+        ConnectionPool pool = new ConnectionPool(1, 60000);
+        AtomicBoolean valid = new AtomicBoolean(true);
+        JdbcOutputConnection con1 = pool.borrow(() -> newConnection(valid));
+        con1.close();
+
+        valid.set(false);
+        JdbcOutputConnection con2 = pool.borrow(() -> newConnection(new AtomicBoolean(true)));
+        assertNotSame(con1, con2);
+        assertTrue(isClosed(con1));
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception
+    {
+        ConnectionPool pool = new ConnectionPool(1, 1);
+        JdbcOutputConnection con1 = pool.borrow(() -> newConnection(new AtomicBoolean(true)));
+        con1.close();
+        Thread.sleep(10);
+
+        JdbcOutputConnection con2 = pool.borrow(() -> newConnection(new AtomicBoolean(true)));
+        assertNotSame(con1, con2);
+        assertTrue(isClosed(con1));
+    }
+
+    @Test
+    public void testConnectionExecutedUserSql() throws SQLException
+    {
+        ConnectionPool pool = new ConnectionPool(1, 60000);
+        JdbcOutputConnection con1 = pool.borrow(() -> newConnection(new AtomicBoolean(true)));
+        con1.executeInNewStatement("SET search_path TO other");
+        con1.close();
+        // the session may be changed by the SQL
+        assertEquals(0, pool.getIdleConnectionCount());
+        assertTrue(isClosed(con1));
+    }
+
+    @Test
+    public void testConnectionPoolKey()
+    {
+        Properties props = new Properties();
+        props.setProperty("user", "embulk");
+        props.setProperty("password", "secret");
+        String key = AbstractJdbcOutputConnector.buildConnectionPoolKey("jdbc:test://localhost/db", props);
+        assertFalse(key.contains("secret"));
+        assertEquals(key, AbstractJdbcOutputConnector.buildConnectionPoolKey("jdbc:test://localhost/db", props));
+
+        props.setProperty("password", "other");
+        assertNotEquals(key, AbstractJdbcOutputConnector.buildConnectionPoolKey("jdbc:test://localhost/db", props));
+    }
+
+    private static boolean isClosed(JdbcOutputConnection con) throws SQLException
+    {
+        return con.connection.isClosed();
+    }
+
+    private static JdbcOutputConnection newConnection(final AtomicBoolean valid) throws SQLException
+    {
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        final ResultSet resultSet = proxy(ResultSet.class, (proxy, method, args) -> null);
+        final Statement statement = proxy(Statement.class, (proxy, method, args) -> {
+            if (method.getName().equals("executeQuery")) {
+                if (!valid.get()) {
+                    throw new SQLException("closed");
+                }
+                return resultSet;
+            } else if (method.getName().equals("execute")) {
+                return false;
+            }
+            return null;
+        });
+        final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (proxy, method, args) -> "\"");
+        Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getMetaData":
+                return metaData;
+            case "createStatement":
+                return statement;
+            case "getAutoCommit":
+                return true;
+            case "isClosed":
+                return closed.get();
+            case "close":
+                closed.set(true);
+                return null;
+            default:
+                return null;
+            }
+        });
+        return new JdbcOutputConnection(connection, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(ConnectionPoolTest.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
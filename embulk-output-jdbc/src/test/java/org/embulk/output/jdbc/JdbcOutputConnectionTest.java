@@ -0,0 +1,123 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class JdbcOutputConnectionTest
+{
+    @Test
+    public void testPartition()
+    {
+        List<Integer> list = Arrays.asList(1, 2, 3, 4, 5);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)),
+                JdbcOutputConnection.partition(list, 2));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3, 4, 5)), JdbcOutputConnection.partition(list, 5));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3, 4, 5)), JdbcOutputConnection.partition(list, 0));
+        assertEquals(Arrays.asList(Collections.emptyList()), JdbcOutputConnection.partition(Collections.emptyList(), 3));
+    }
+
+    @Test
+    public void testMatchTableNames()
+    {
+        List<String> tableNames = Arrays.asList("Foo", "FOO", "foo");
+        assertEquals(Arrays.asList("FOO"), JdbcOutputConnection.matchTableNames("FOO", tableNames));
+        // a case-insensitive catalog returns the name as created
+        assertEquals(Arrays.asList("FOO", "foo"), JdbcOutputConnection.matchTableNames("fOO", Arrays.asList("FOO", "foo")));
+        assertEquals(Collections.emptyList(), JdbcOutputConnection.matchTableNames("bar", tableNames));
+    }
+
+    @Test
+    public void testFindExistingTables() throws SQLException
+    {
+        JdbcOutputConnection con = newConnection(Arrays.asList("Foo"), Collections.<String>emptyList());
+        assertEquals(new HashSet<>(Arrays.asList("FOO", "foo")), con.findExistingTables(Arrays.asList("FOO", "foo")));
+        assertEquals(Collections.emptySet(), con.findExistingTables(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testFindExistingTablesNotFound() throws SQLException
+    {
+        // DatabaseMetaData is not used if the query succeeds
+        JdbcOutputConnection con = newConnection(Collections.<String>emptyList(), Arrays.asList("foo"));
+        assertEquals(Collections.emptySet(), con.findExistingTables(Arrays.asList("FOO", "foo")));
+    }
+
+    @Test
+    public void testFindExistingTablesByMetaData() throws SQLException
+    {
+        // found by DatabaseMetaData if the query fails
+        JdbcOutputConnection con = newConnection(null, Arrays.asList("foo"));
+        assertEquals(Collections.singleton("foo"), con.findExistingTables(Arrays.asList("FOO", "foo")));
+    }
+
+    // the query of information_schema fails if informationSchemaTables is null
+    private static JdbcOutputConnection newConnection(final List<String> informationSchemaTables,
+            final List<String> metaDataTables) throws SQLException
+    {
+        final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (proxy, method, args) -> "\"");
+        final PreparedStatement statement = proxy(PreparedStatement.class, (proxy, method, args) -> {
+            if (method.getName().equals("executeQuery")) {
+                if (informationSchemaTables == null) {
+                    throw new SQLException("relation \"information_schema.tables\" does not exist", "42P01");
+                }
+                final Iterator<String> names = informationSchemaTables.iterator();
+                final String[] current = new String[1];
+                return proxy(ResultSet.class, (rsProxy, rsMethod, rsArgs) -> {
+                    switch (rsMethod.getName()) {
+                    case "next":
+                        current[0] = names.hasNext() ? names.next() : null;
+                        return current[0] != null;
+                    case "getString":
+                        return current[0];
+                    default:
+                        return null;
+                    }
+                });
+            }
+            return null;
+        });
+        Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getMetaData":
+                return metaData;
+            case "prepareStatement":
+                return statement;
+            default:
+                return null;
+            }
+        });
+        return new JdbcOutputConnection(connection, null)
+        {
+            @Override
+            protected String getCurrentSchemaSql()
+            {
+                return "CURRENT_SCHEMA";
+            }
+
+            @Override
+            public boolean tableExists(String tableName)
+            {
+                return metaDataTables.contains(tableName);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(JdbcOutputConnectionTest.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,54 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void testBuckets()
+    {
+        for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upperBound = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(value + " <= " + upperBound, value <= upperBound);
+            assertTrue(value + " / " + upperBound, upperBound - value <= value / 16);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentile()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getPercentile(50), 500 / 16);
+        assertEquals(990, histogram.getPercentile(99), 990 / 16);
+        assertEquals(1000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testMapAndMerge()
+    {
+        LatencyHistogram histogram1 = new LatencyHistogram();
+        LatencyHistogram histogram2 = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram1.record(i);
+            histogram2.record(i * 100);
+        }
+        LatencyHistogram merged = LatencyHistogram.fromMap(histogram1.toMap());
+        merged.merge(LatencyHistogram.fromMap(histogram2.toMap()));
+        assertEquals(200, merged.getCount());
+        assertEquals(9900, merged.getMax());
+        assertEquals(histogram1.getPercentile(100), merged.getPercentile(50));
+    }
+}
@@ -0,0 +1,89 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class MergeKeyDeduplicatorTest
+{
+    private final Column idColumn = new Column(0, "id", Types.LONG);
+    private final Column nameColumn = new Column(1, "name", Types.STRING);
+    private final Column timeColumn = new Column(2, "time", Types.TIMESTAMP);
+    private final List<Column> columns = Arrays.asList(idColumn, nameColumn, timeColumn);
+
+    @Test
+    public void testLastRowWins()
+    {
+        RecordBuffer records = new RecordBuffer(columns);
+        addRow(records, 1L, "a", 0);
+        addRow(records, 2L, "a", 1);
+        addRow(records, 1L, "a", 2);
+        addRow(records, 1L, "b", 3);
+        addRow(records, 1L, "a", 4);
+
+        MergeKeyDeduplicator deduplicator = new MergeKeyDeduplicator(Arrays.asList(idColumn, nameColumn));
+        assertArrayEquals(new int[] {1, 3, 4}, deduplicator.deduplicate(records, new int[] {0, 1, 2, 3, 4}));
+        // in the given order
+        assertArrayEquals(new int[] {0, 3, 1}, deduplicator.deduplicate(records, new int[] {4, 2, 0, 3, 1}));
+    }
+
+    @Test
+    public void testTimestampKey()
+    {
+        RecordBuffer records = new RecordBuffer(columns);
+        addRow(records, 1L, "a", 0);
+        addRow(records, 2L, "b", 0);
+        addRow(records, 3L, "c", 1);
+
+        MergeKeyDeduplicator deduplicator = new MergeKeyDeduplicator(Arrays.asList(timeColumn));
+        assertArrayEquals(new int[] {1, 2}, deduplicator.deduplicate(records, new int[] {0, 1, 2}));
+    }
+
+    @Test
+    public void testNullKeysAreNotRemoved()
+    {
+        RecordBuffer records = new RecordBuffer(columns);
+        addRow(records, 1L, null, 0);
+        addRow(records, 1L, null, 1);
+
+        MergeKeyDeduplicator deduplicator = new MergeKeyDeduplicator(Arrays.asList(idColumn, nameColumn));
+        int[] rows = {0, 1};
+        assertSame(rows, deduplicator.deduplicate(records, rows));
+    }
+
+    @Test
+    public void testManyRows()
+    {
+        // beyond the initial capacity of the index, reused for the next batch
+        RecordBuffer records = new RecordBuffer(columns);
+        int[] rows = new int[1000];
+        for (int i = 0; i < rows.length; i++) {
+            addRow(records, i % 100, "x", i);
+            rows[i] = i;
+        }
+        MergeKeyDeduplicator deduplicator = new MergeKeyDeduplicator(Arrays.asList(idColumn));
+        int[] expected = new int[100];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = 900 + i;
+        }
+        assertArrayEquals(expected, deduplicator.deduplicate(records, rows));
+        assertArrayEquals(new int[] {0, 1}, deduplicator.deduplicate(records, new int[] {0, 1}));
+    }
+
+    private void addRow(RecordBuffer records, long id, String name, long epochSecond)
+    {
+        records.addRow();
+        records.setLong(idColumn, id);
+        if (name != null) {
+            records.setString(nameColumn, name);
+        }
+        records.setTimestamp(timeColumn, Instant.ofEpochSecond(epochSecond));
+    }
+}
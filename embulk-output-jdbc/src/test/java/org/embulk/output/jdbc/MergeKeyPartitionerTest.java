@@ -0,0 +1,54 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class MergeKeyPartitionerTest
+{
+    private final Column keyColumn = new Column(0, "k", Types.STRING);
+    private final Column valueColumn = new Column(1, "v", Types.LONG);
+    private final List<Column> columns = Arrays.asList(keyColumn, valueColumn);
+
+    @Test
+    public void testSortRows()
+    {
+        MergeKeyPartitioner partitioner = new MergeKeyPartitioner(columns, Arrays.asList(keyColumn), 2);
+        RecordBuffer source = new RecordBuffer(columns);
+        String[] keys = {"c", "a", null, "b", "a"};
+        for (int i = 0; i < keys.length; i++) {
+            source.addRow();
+            if (keys[i] != null) {
+                source.setString(keyColumn, keys[i]);
+            }
+            source.setLong(valueColumn, i);
+            partitioner.getRecords(1).addRow(source);
+        }
+
+        // nulls first, and rows with the same keys keep their order
+        assertArrayEquals(new int[] {2, 1, 4, 3, 0}, partitioner.sortRows(1));
+        RecordBuffer records = partitioner.getRecords(1);
+        records.seek(4);
+        assertEquals("a", records.getString(keyColumn));
+        assertEquals(4L, records.getLong(valueColumn));
+
+        partitioner.clear(1);
+        assertEquals(0, partitioner.getRecords(1).size());
+        assertEquals(0, partitioner.sortRows(0).length);
+    }
+
+    @Test
+    public void testCompareKeys()
+    {
+        assertEquals(0, MergeKeyPartitioner.compareKeys(new Comparable<?>[] {1L, "a"}, new Comparable<?>[] {1L, "a"}));
+        assertEquals(-1, Integer.signum(MergeKeyPartitioner.compareKeys(new Comparable<?>[] {1L, "a"}, new Comparable<?>[] {1L, "b"})));
+        assertEquals(1, Integer.signum(MergeKeyPartitioner.compareKeys(new Comparable<?>[] {2L, null}, new Comparable<?>[] {1L, "b"})));
+        assertEquals(-1, Integer.signum(MergeKeyPartitioner.compareKeys(new Comparable<?>[] {null, "z"}, new Comparable<?>[] {0L, "a"})));
+    }
+}
@@ -0,0 +1,144 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MultiValuesBatchInsertTest
+{
+    private final TableIdentifier table = new TableIdentifier(null, null, "t");
+    private final JdbcSchema schema = new JdbcSchema(Arrays.asList(
+            JdbcColumn.newGenericTypeColumn("a", Types.BIGINT, "BIGINT", 0, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("b", Types.BIGINT, "BIGINT", 0, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("c", Types.BIGINT, "BIGINT", 0, 0, false, false)));
+
+    // SQL of prepared statements
+    private final List<String> preparedSql = new ArrayList<>();
+    // update counts returned by executeBatch, or thrown by BatchUpdateException if batchFailure is true
+    private int[] batchUpdateCounts;
+    private boolean batchFailure;
+
+    @Test
+    public void testStatementText() throws Exception
+    {
+        MultiValuesBatchInsert batch = new MultiValuesBatchInsert(autoCommit -> newConnection(), 2);
+        batch.prepare(table, schema);
+        assertEquals(2, batch.getRowsPerStatement());
+        assertEquals(Arrays.asList("INSERT INTO \"t\" (\"a\", \"b\", \"c\") VALUES (?, ?, ?), (?, ?, ?)"), preparedSql);
+
+        batchUpdateCounts = new int[] { 2 };
+        addRows(batch, 3);
+        batch.flush();
+        // the rest of rows are inserted by a tail statement
+        assertEquals("INSERT INTO \"t\" (\"a\", \"b\", \"c\") VALUES (?, ?, ?)", preparedSql.get(1));
+        batch.close();
+    }
+
+    @Test
+    public void testRowsLimitedByParameterCount() throws Exception
+    {
+        MultiValuesBatchInsert batch = new MultiValuesBatchInsert(autoCommit -> newConnection(), 10000);
+        batch.prepare(table, schema);
+        // 2000 parameters by default
+        assertEquals(666, batch.getRowsPerStatement());
+        batch.close();
+    }
+
+    @Test
+    public void testRowUpdateCounts() throws Exception
+    {
+        MultiValuesBatchInsert batch = new MultiValuesBatchInsert(autoCommit -> newConnection(), 2);
+        batch.prepare(table, schema);
+
+        batchUpdateCounts = new int[] { 2, 2 };
+        addRows(batch, 5);
+        batch.flush();
+        // update counts of statements are mapped to the rows of the statements
+        assertArrayEquals(new int[] { Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO,
+                Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO }, batch.getLastUpdateCounts());
+        batch.close();
+    }
+
+    @Test
+    public void testRowUpdateCountsOfFailedBatch() throws Exception
+    {
+        MultiValuesBatchInsert batch = new MultiValuesBatchInsert(autoCommit -> newConnection(), 2);
+        batch.prepare(table, schema);
+
+        batchUpdateCounts = new int[] { 2, Statement.EXECUTE_FAILED };
+        batchFailure = true;
+        addRows(batch, 5);
+        try {
+            batch.flush();
+            fail();
+        } catch (BatchUpdateException ex) {
+            // the rows of the failed statement and the tail statement not executed are failed
+            assertArrayEquals(new int[] { Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, Statement.EXECUTE_FAILED,
+                    Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED }, batch.getLastUpdateCounts());
+        }
+        batch.close();
+    }
+
+    private static void addRows(MultiValuesBatchInsert batch, int rows) throws Exception
+    {
+        for (int i = 0; i < rows; i++) {
+            batch.setLong(i);
+            batch.setLong(i * 10);
+            batch.setNull(Types.BIGINT);
+            batch.add();
+        }
+    }
+
+    private JdbcOutputConnection newConnection() throws SQLException
+    {
+        final PreparedStatement statement = proxy(PreparedStatement.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "executeBatch":
+                if (batchFailure) {
+                    throw new BatchUpdateException(batchUpdateCounts);
+                }
+                return batchUpdateCounts;
+            case "executeUpdate":
+                return 1;
+            default:
+                return null;
+            }
+        });
+        final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (proxy, method, args) -> "\"");
+        Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getMetaData":
+                return metaData;
+            case "prepareStatement":
+                preparedSql.add((String) args[0]);
+                return statement;
+            case "getAutoCommit":
+            case "isClosed":
+                return true;
+            default:
+                return null;
+            }
+        });
+        return new JdbcOutputConnection(connection, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(MultiValuesBatchInsertTest.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,517 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.embulk.config.ConfigSource;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class PluginPageOutputTest
+{
+    private final Schema schema = Schema.builder()
+            .add("k", Types.STRING)
+            .add("v", Types.LONG)
+            .build();
+
+    @Test
+    public void testMergeKeyRouting()
+    {
+        List<RecordingBatchInsert> batches = newBatches(3);
+        AbstractJdbcOutputPlugin.PluginPageOutput output = new TestPlugin().newPageOutput(
+                newConfig("merge_direct").set("connections_per_task", 3).set("merge_keys", Arrays.asList("k")),
+                schema, batches);
+        for (Page page : buildPages(60)) {
+            output.add(page);
+        }
+        output.finish();
+        output.close();
+
+        // rows with the same key are written through the same connection, and all connections are flushed
+        Map<Object, RecordingBatchInsert> laneOfKey = new HashMap<>();
+        int rows = 0;
+        int usedLanes = 0;
+        for (RecordingBatchInsert batch : batches) {
+            assertTrue(batch.pending.isEmpty());
+            assertTrue(batch.finished);
+            for (List<Object> row : batch.flushed) {
+                RecordingBatchInsert lane = laneOfKey.putIfAbsent(row.get(0), batch);
+                assertTrue(lane == null || lane == batch);
+                rows++;
+            }
+            if (!batch.flushed.isEmpty()) {
+                usedLanes++;
+            }
+        }
+        assertEquals(60, rows);
+        assertEquals(10, laneOfKey.size());
+        assertTrue(usedLanes > 1);
+    }
+
+    @Test
+    public void testMergeKeyRoutingWithSmallBatches()
+    {
+        List<RecordingBatchInsert> batches = newBatches(3);
+        for (RecordingBatchInsert batch : batches) {
+            // makes values set during the flush likely to be detected
+            batch.flushMillis = 5;
+        }
+        AbstractJdbcOutputPlugin.PluginPageOutput output = new TestPlugin().newPageOutput(
+                newConfig("merge_direct").set("connections_per_task", 3).set("merge_keys", Arrays.asList("k"))
+                        .set("batch_size", 40),
+                schema, batches);
+        for (Page page : buildPages(300)) {
+            output.add(page);
+        }
+        output.finish();
+        output.close();
+
+        // batches are flushed while records are added, but no value is set to a batch being flushed
+        Map<Object, RecordingBatchInsert> laneOfKey = new HashMap<>();
+        int rows = 0;
+        for (RecordingBatchInsert batch : batches) {
+            assertFalse(batch.setWhileFlushing);
+            assertTrue(batch.flushes > 1);
+            for (List<Object> row : batch.flushed) {
+                RecordingBatchInsert lane = laneOfKey.putIfAbsent(row.get(0), batch);
+                assertTrue(lane == null || lane == batch);
+                rows++;
+            }
+        }
+        assertEquals(300, rows);
+    }
+
+    @Test
+    public void testRoundRobinFlushesAllLanes()
+    {
+        List<RecordingBatchInsert> batches = newBatches(2);
+        AbstractJdbcOutputPlugin.PluginPageOutput output = new TestPlugin().newPageOutput(
+                newConfig("insert_direct").set("max_in_flight_batches", 1).set("batch_size", 100),
+                schema, batches);
+        for (Page page : buildPages(50)) {
+            output.add(page);
+        }
+        output.finish();
+        output.close();
+
+        List<Object> values = new ArrayList<>();
+        for (RecordingBatchInsert batch : batches) {
+            assertTrue(batch.pending.isEmpty());
+            assertTrue(batch.finished);
+            assertTrue(batch.flushes > 0);
+            for (List<Object> row : batch.flushed) {
+                values.add(row.get(1));
+            }
+        }
+        Collections.sort(values, (a, b) -> Long.compare((Long) a, (Long) b));
+        assertEquals(50, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals((long) i, values.get(i));
+        }
+    }
+
+    @Test
+    public void testFlushByBatchMemoryLimit()
+    {
+        RecordingBatchInsert batch = new RecordingBatchInsert();
+        batch.heapBytesPerRow = 1000;
+        AbstractJdbcOutputPlugin.PluginPageOutput output = new TestPlugin().newPageOutput(
+                newConfig("insert_direct").set("batch_memory_limit", 4500),
+                schema, Arrays.asList(batch));
+        for (Page page : buildPages(50)) {
+            output.add(page);
+        }
+        // flushed when the heap of 5 rows exceeds the limit, much before batch_size
+        assertEquals(10, batch.flushes);
+        output.finish();
+        output.close();
+        assertEquals(50, batch.flushed.size());
+    }
+
+    @Test
+    public void testRejectFailedRows()
+    {
+        RecordingBatchInsert batch = new RecordingBatchInsert();
+        batch.beforeFlush = rows -> {
+            if (batch.flushes == 2) {
+                // a retryable error while the failed rows are bisected
+                throw new SQLException("deadlock detected", "40001");
+            }
+            for (List<Object> row : rows) {
+                if (row.get(1).equals(3L)) {
+                    throw new SQLException("invalid value", "22000");
+                }
+            }
+        };
+        final List<Map<String, Object>> rejected = new ArrayList<>();
+        RejectSink rejectSink = new RejectSink(schema.getColumns())
+        {
+            @Override
+            protected void write(Map<String, Object> record, SQLException cause)
+            {
+                rejected.add(record);
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        AbstractJdbcOutputPlugin.PluginPageOutput output = new TestPlugin().newPageOutput(
+                newConfig("insert_direct").set("retry_wait", 1).set("max_retry_wait", 1),
+                schema, Arrays.asList(batch), rejectSink);
+        for (Page page : buildPages(10)) {
+            output.add(page);
+        }
+        output.finish();
+        output.close();
+
+        assertEquals(1, rejectSink.getCount());
+        assertEquals(3L, rejected.get(0).get("v"));
+        List<Object> values = new ArrayList<>();
+        for (List<Object> row : batch.flushed) {
+            values.add(row.get(1));
+        }
+        Collections.sort(values, (a, b) -> Long.compare((Long) a, (Long) b));
+        assertEquals(Arrays.<Object>asList(0L, 1L, 2L, 4L, 5L, 6L, 7L, 8L, 9L), values);
+    }
+
+    static ConfigSource newConfig(String mode)
+    {
+        return AbstractJdbcOutputPlugin.CONFIG_MAPPER_FACTORY.newConfigSource()
+                .set("table", "test_table")
+                .set("mode", mode);
+    }
+
+    static List<RecordingBatchInsert> newBatches(int count)
+    {
+        List<RecordingBatchInsert> batches = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            batches.add(new RecordingBatchInsert());
+        }
+        return batches;
+    }
+
+    // rows of k0 to k9 and sequential values
+    @SuppressWarnings("deprecation")
+    private List<Page> buildPages(int rows)
+    {
+        final List<Page> pages = new ArrayList<>();
+        PageOutput output = new PageOutput()
+        {
+            @Override
+            public void add(Page page)
+            {
+                pages.add(page);
+            }
+
+            @Override
+            public void finish()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        BufferAllocator allocator = new BufferAllocator()
+        {
+            @Override
+            public Buffer allocate()
+            {
+                return allocate(32 * 1024);
+            }
+
+            @Override
+            public Buffer allocate(int minimumCapacity)
+            {
+                return Buffer.allocate(Math.max(32 * 1024, minimumCapacity));
+            }
+        };
+        try (PageBuilder builder = new PageBuilder(allocator, schema, output)) {
+            for (int i = 0; i < rows; i++) {
+                builder.setString(schema.getColumn(0), "k" + (i % 10));
+                builder.setLong(schema.getColumn(1), i);
+                builder.addRecord();
+            }
+            builder.finish();
+        }
+        return pages;
+    }
+
+    /**
+     * Builds PluginPageOutput in the same way as open(), with the target table created from the input schema.
+     */
+    static class TestPlugin
+            extends AbstractJdbcOutputPlugin
+    {
+        @SuppressWarnings("deprecation")
+        PluginPageOutput newPageOutput(ConfigSource config, Schema schema, List<? extends BatchInsert> batches)
+        {
+            return newPageOutput(config, schema, batches, null);
+        }
+
+        @SuppressWarnings("deprecation")
+        PluginPageOutput newPageOutput(ConfigSource config, Schema schema, List<? extends BatchInsert> batches, RejectSink rejectSink)
+        {
+            PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
+            task.setTargetTableSchema(newJdbcSchemaForNewTable(schema));
+            List<List<ColumnSetter>> columnSetters = new ArrayList<>();
+            for (BatchInsert batch : batches) {
+                columnSetters.add(newColumnSetters(newColumnSetterFactory(batch, task.getDefaultTimeZone()),
+                        task.getTargetTableSchema(), schema, task.getColumnOptions()));
+            }
+            return new PluginPageOutput(new PageReader(schema), new ArrayList<BatchInsert>(batches), columnSetters,
+                    task.getBatchSize(), task, rejectSink);
+        }
+
+        @Override
+        protected Features getFeatures(PluginTask task)
+        {
+            return new Features();
+        }
+
+        @Override
+        protected JdbcOutputConnector getConnector(PluginTask task, boolean retryableMetadataOperation)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected boolean isRetryableException(String sqlState, int errorCode)
+        {
+            return "40001".equals(sqlState);
+        }
+    }
+
+    /**
+     * BatchInsert which keeps values of rows added and flushed.
+     */
+    static class RecordingBatchInsert
+            implements BatchInsert
+    {
+        final List<List<Object>> pending = new ArrayList<>();
+        final List<List<Object>> flushed = new ArrayList<>();
+        boolean finished;
+        int flushes;
+        long heapBytesPerRow;
+        // throws SQLException to fail the flush of the rows
+        FlushHook beforeFlush;
+        // milliseconds which flush takes
+        long flushMillis;
+        // whether add or set methods were called while flush was running
+        volatile boolean setWhileFlushing;
+        private volatile boolean flushing;
+        private List<Object> row = new ArrayList<>();
+        private int[] lastUpdateCounts = new int[0];
+
+        @Override
+        public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+        {
+        }
+
+        @Override
+        public int getBatchWeight()
+        {
+            return pending.size() * 16;
+        }
+
+        @Override
+        public long getBatchHeapBytes()
+        {
+            return pending.size() * heapBytesPerRow;
+        }
+
+        @Override
+        public void add()
+        {
+            checkNotFlushing();
+            pending.add(row);
+            row = new ArrayList<>();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public void flush() throws SQLException
+        {
+            flushing = true;
+            try {
+                flushes++;
+                lastUpdateCounts = new int[pending.size()];
+                try {
+                    if (beforeFlush != null) {
+                        beforeFlush.run(pending);
+                    }
+                    if (flushMillis > 0) {
+                        Thread.sleep(flushMillis);
+                    }
+                } catch (SQLException ex) {
+                    Arrays.fill(lastUpdateCounts, Statement.EXECUTE_FAILED);
+                    pending.clear();
+                    throw ex;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                Arrays.fill(lastUpdateCounts, Statement.SUCCESS_NO_INFO);
+                flushed.addAll(pending);
+                pending.clear();
+            } finally {
+                flushing = false;
+            }
+        }
+
+        @Override
+        public int[] getLastUpdateCounts()
+        {
+            return lastUpdateCounts;
+        }
+
+        @Override
+        public void finish()
+        {
+            finished = true;
+        }
+
+        @Override
+        public void setNull(int sqlType)
+        {
+            addValue(null);
+        }
+
+        @Override
+        public void setBoolean(boolean v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setByte(byte v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setShort(short v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setInt(int v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setLong(long v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setFloat(float v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setDouble(double v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setBigDecimal(BigDecimal v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setString(String v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setNString(String v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setBytes(byte[] v)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setSqlDate(Instant v, Calendar cal)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setSqlTime(Instant v, Calendar cal)
+        {
+            addValue(v);
+        }
+
+        @Override
+        public void setSqlTimestamp(Instant v, Calendar cal)
+        {
+            addValue(v);
+        }
+
+        private void addValue(Object v)
+        {
+            checkNotFlushing();
+            row.add(v);
+        }
+
+        private void checkNotFlushing()
+        {
+            if (flushing) {
+                setWhileFlushing = true;
+            }
+        }
+    }
+
+    interface FlushHook
+    {
+        void run(List<List<Object>> rows) throws SQLException;
+    }
+}
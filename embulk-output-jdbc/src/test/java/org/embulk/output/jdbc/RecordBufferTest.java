@@ -0,0 +1,141 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class RecordBufferTest
+{
+    private final Column booleanColumn = new Column(0, "b", Types.BOOLEAN);
+    private final Column longColumn = new Column(1, "l", Types.LONG);
+    private final Column doubleColumn = new Column(2, "d", Types.DOUBLE);
+    private final Column stringColumn = new Column(3, "s", Types.STRING);
+    private final Column timestampColumn = new Column(4, "t", Types.TIMESTAMP);
+    private final List<Column> columns = Arrays.asList(booleanColumn, longColumn, doubleColumn, stringColumn, timestampColumn);
+
+    @Test
+    public void testReadWrittenValues()
+    {
+        RecordBuffer buffer = new RecordBuffer(columns);
+        for (int i = 0; i < 1000; i++) {  // beyond the initial capacity
+            addRow(buffer, i);
+        }
+        assertEquals(1000, buffer.size());
+
+        for (int i = 0; i < 1000; i++) {
+            buffer.seek(i);
+            assertRow(buffer, i);
+        }
+    }
+
+    @Test
+    public void testNullValues()
+    {
+        RecordBuffer buffer = new RecordBuffer(columns);
+        buffer.addRow();  // all columns are null
+        buffer.addRow();
+        buffer.setLong(longColumn, 1L);
+
+        buffer.seek(0);
+        for (Column column : columns) {
+            assertTrue(buffer.isNull(column));
+        }
+        buffer.seek(1);
+        assertFalse(buffer.isNull(longColumn));
+        assertTrue(buffer.isNull(stringColumn));
+    }
+
+    @Test
+    public void testCompact()
+    {
+        RecordBuffer buffer = new RecordBuffer(columns);
+        for (int i = 0; i < 200; i++) {
+            addRow(buffer, i);
+        }
+
+        // retain odd rows
+        int retained = 0;
+        for (int i = 0; i < 200; i++) {
+            if (i % 2 == 1) {
+                buffer.moveRow(i, retained++);
+            }
+        }
+        buffer.truncate(retained);
+
+        assertEquals(100, buffer.size());
+        for (int i = 0; i < 100; i++) {
+            buffer.seek(i);
+            assertRow(buffer, i * 2 + 1);
+        }
+
+        // appended rows don't inherit values of removed rows
+        buffer.addRow();
+        buffer.seek(100);
+        for (Column column : columns) {
+            assertTrue(buffer.isNull(column));
+        }
+    }
+
+    @Test
+    public void testClear()
+    {
+        RecordBuffer buffer = new RecordBuffer(columns);
+        for (int i = 0; i < 100; i++) {
+            addRow(buffer, i);
+        }
+        buffer.clear();
+        assertEquals(0, buffer.size());
+
+        addRow(buffer, 5);
+        buffer.addRow();
+        assertEquals(2, buffer.size());
+        buffer.seek(0);
+        assertRow(buffer, 5);
+        buffer.seek(1);
+        for (Column column : columns) {
+            assertTrue(buffer.isNull(column));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSeekOutOfRange()
+    {
+        RecordBuffer buffer = new RecordBuffer(columns);
+        buffer.addRow();
+        buffer.seek(1);
+    }
+
+    private void addRow(RecordBuffer buffer, int i)
+    {
+        buffer.addRow();
+        buffer.setBoolean(booleanColumn, i % 3 == 0);
+        buffer.setLong(longColumn, i * 1000000007L);
+        buffer.setDouble(doubleColumn, i / 7.0);
+        if (i % 5 != 0) {
+            buffer.setString(stringColumn, "s" + i);
+        }
+        buffer.setTimestamp(timestampColumn, Instant.ofEpochSecond(1500000000L + i, i * 1000));
+    }
+
+    private void assertRow(RecordBuffer buffer, int i)
+    {
+        assertEquals(i % 3 == 0, buffer.getBoolean(booleanColumn));
+        assertEquals(i * 1000000007L, buffer.getLong(longColumn));
+        assertEquals(i / 7.0, buffer.getDouble(doubleColumn), 0.0);
+        if (i % 5 != 0) {
+            assertFalse(buffer.isNull(stringColumn));
+            assertEquals("s" + i, buffer.getString(stringColumn));
+        } else {
+            assertTrue(buffer.isNull(stringColumn));
+        }
+        assertEquals(Instant.ofEpochSecond(1500000000L + i, i * 1000), buffer.getTimestamp(timestampColumn));
+    }
+}
@@ -0,0 +1,100 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class RecordCaptureTest
+{
+    private final Column idColumn = new Column(0, "id", Types.LONG);
+    private final Column stringColumn = new Column(1, "s", Types.STRING);
+    private final List<Column> columns = Arrays.asList(idColumn, stringColumn);
+
+    @Test
+    public void testRetryInMemory() throws Exception
+    {
+        testRetry(RetryCaptureMode.MEMORY);
+    }
+
+    @Test
+    public void testRetryWithSpill() throws Exception
+    {
+        testRetry(RetryCaptureMode.SPILL);
+    }
+
+    private void testRetry(RetryCaptureMode mode) throws Exception
+    {
+        try (RecordCapture capture = new RecordCapture(columns, mode, 500)) {
+            for (int i = 0; i < 100; i++) {
+                capture.addRow();
+                capture.getRecords().setLong(idColumn, i);
+                if (i % 4 != 0) {
+                    capture.getRecords().setString(stringColumn, "v" + i);
+                }
+            }
+            assertEquals(100L, capture.size());
+
+            int[] updateCounts = new int[100];
+            for (int i = 0; i < 100; i++) {
+                updateCounts[i] = i % 2 == 1 ? Statement.EXECUTE_FAILED : 1;
+            }
+            List<Long> retried = new ArrayList<>();
+            capture.retry(updateCounts, () -> {
+                RecordBuffer records = capture.getRecords();
+                long id = records.getLong(idColumn);
+                retried.add(id);
+                if (id % 4 == 0) {
+                    assertTrue(records.isNull(stringColumn));
+                } else {
+                    assertEquals("v" + id, records.getString(stringColumn));
+                }
+            });
+            assertEquals(50, retried.size());
+            for (int i = 0; i < 50; i++) {
+                assertEquals(2L * i + 1, (long) retried.get(i));
+            }
+            assertEquals(50L, capture.size());
+
+            // records retried again keep the order
+            int[] updateCounts2 = new int[50];
+            updateCounts2[0] = Statement.EXECUTE_FAILED;
+            updateCounts2[49] = Statement.EXECUTE_FAILED;
+            retried.clear();
+            capture.retry(updateCounts2, () -> retried.add(capture.getRecords().getLong(idColumn)));
+            assertEquals(Arrays.asList(1L, 99L), retried);
+
+            capture.clear();
+            assertEquals(0L, capture.size());
+        }
+    }
+
+    @Test
+    public void testLoadWithSpill() throws Exception
+    {
+        try (RecordCapture capture = new RecordCapture(columns, RetryCaptureMode.SPILL, 500)) {
+            for (int i = 0; i < 100; i++) {
+                capture.addRow();
+                capture.getRecords().setLong(idColumn, i);
+                capture.getRecords().setString(stringColumn, "v" + i);
+            }
+            assertTrue(capture.getRecords().size() < 100);
+
+            RecordBuffer records = capture.load();
+            assertEquals(100, records.size());
+            assertEquals(100L, capture.size());
+            for (int i = 0; i < 100; i++) {
+                records.seek(i);
+                assertEquals((long) i, records.getLong(idColumn));
+                assertEquals("v" + i, records.getString(stringColumn));
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+public class RecordSpillFileTest
+{
+    private final Column booleanColumn = new Column(0, "b", Types.BOOLEAN);
+    private final Column longColumn = new Column(1, "l", Types.LONG);
+    private final Column doubleColumn = new Column(2, "d", Types.DOUBLE);
+    private final Column stringColumn = new Column(3, "s", Types.STRING);
+    private final Column timestampColumn = new Column(4, "t", Types.TIMESTAMP);
+    private final List<Column> columns = Arrays.asList(booleanColumn, longColumn, doubleColumn, stringColumn, timestampColumn);
+
+    @Test
+    public void testWriteAndRead() throws IOException
+    {
+        RecordBuffer buffer = new RecordBuffer(columns);
+        for (int i = 0; i < 100; i++) {
+            buffer.addRow();
+            buffer.setBoolean(booleanColumn, i % 2 == 0);
+            buffer.setLong(longColumn, -i);
+            if (i % 3 != 0) {
+                buffer.setDouble(doubleColumn, i * 0.5);
+            }
+            buffer.setString(stringColumn, "あ" + i + "\t\n");
+            buffer.setTimestamp(timestampColumn, Instant.ofEpochSecond(-i, 999999999 - i));
+        }
+
+        try (RecordSpillFile file = new RecordSpillFile(columns)) {
+            file.write(buffer);
+            assertEquals(100L, file.size());
+
+            RecordBuffer read = new RecordBuffer(columns);
+            try (RecordSpillFile.Reader reader = file.openReader()) {
+                for (int i = 0; i < 100; i++) {
+                    reader.readRow(read);
+                }
+            }
+
+            assertEquals(100, read.size());
+            for (int i = 0; i < 100; i++) {
+                read.seek(i);
+                assertEquals(i % 2 == 0, read.getBoolean(booleanColumn));
+                assertEquals(-i, read.getLong(longColumn));
+                if (i % 3 != 0) {
+                    assertEquals(i * 0.5, read.getDouble(doubleColumn), 0.0);
+                } else {
+                    assertTrue(read.isNull(doubleColumn));
+                }
+                assertEquals("あ" + i + "\t\n", read.getString(stringColumn));
+                assertEquals(Instant.ofEpochSecond(-i, 999999999 - i), read.getTimestamp(timestampColumn));
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TableMetadataCacheTest
+{
+    @Test
+    public void testDisabled() throws SQLException
+    {
+        TableMetadataCache cache = new TableMetadataCache(0, Optional.<String>empty());
+        JdbcOutputConnection con = newConnection("jdbc:test://disabled");
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(con, "t", () -> load(loads));
+        cache.get(con, "t", () -> load(loads));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testCache() throws SQLException
+    {
+        TableMetadataCache cache = new TableMetadataCache(3600, Optional.<String>empty());
+        JdbcOutputConnection con = newConnection("jdbc:test://cache");
+        AtomicInteger loads = new AtomicInteger();
+        TableMetadataCache.TableMetadata metadata = cache.get(con, "t", () -> load(loads));
+        assertSame(metadata, cache.get(con, "t", () -> load(loads)));
+        assertSame(metadata, new TableMetadataCache(3600, Optional.<String>empty()).get(con, "t", () -> load(loads)));
+        assertEquals(1, loads.get());
+
+        // other tables and other databases
+        cache.get(con, "u", () -> load(loads));
+        cache.get(newConnection("jdbc:test://other"), "t", () -> load(loads));
+        assertEquals(3, loads.get());
+
+        cache.invalidate(con, "t");
+        cache.get(con, "t", () -> load(loads));
+        assertEquals(4, loads.get());
+    }
+
+    private static TableMetadataCache.TableMetadata load(AtomicInteger loads)
+    {
+        loads.incrementAndGet();
+        return new TableMetadataCache.TableMetadata(Optional.of("T"), Optional.<JdbcSchema>empty());
+    }
+
+    private static JdbcOutputConnection newConnection(final String url) throws SQLException
+    {
+        final DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(getClassLoader(),
+                new Class<?>[] { DatabaseMetaData.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getURL":
+                        return url;
+                    case "getUserName":
+                        return "user";
+                    case "getIdentifierQuoteString":
+                        return "\"";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        Connection connection = (Connection) Proxy.newProxyInstance(getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getMetaData")) {
+                        return metaData;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return new JdbcOutputConnection(connection, null);
+    }
+
+    private static ClassLoader getClassLoader()
+    {
+        return TableMetadataCacheTest.class.getClassLoader();
+    }
+}
@@ -0,0 +1,39 @@
+package org.embulk.output.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+import org.junit.Test;
+
+public class ZoneOffsetCacheTest
+{
+    @Test
+    public void testTransitions()
+    {
+        ZoneId zone = ZoneId.of("Europe/London");
+        ZoneRules rules = zone.getRules();
+        ZoneOffsetCache cache = new ZoneOffsetCache(zone);
+        long from = Instant.parse("2019-01-01T00:00:00Z").getEpochSecond();
+        long to = Instant.parse("2021-01-01T00:00:00Z").getEpochSecond();
+        for (long epochSecond = from; epochSecond < to; epochSecond += 599) {
+            assertEquals(rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds(), cache.getOffsetSeconds(epochSecond));
+        }
+
+        // exactly at a transition and a second before it
+        long transition = rules.nextTransition(Instant.ofEpochSecond(from)).toEpochSecond();
+        assertEquals(0, cache.getOffsetSeconds(transition - 1));
+        assertEquals(3600, cache.getOffsetSeconds(transition));
+        assertEquals(0, cache.getOffsetSeconds(transition - 1));
+    }
+
+    @Test
+    public void testFixedOffset()
+    {
+        ZoneOffsetCache cache = new ZoneOffsetCache(ZoneId.of("+09:00"));
+        assertEquals(32400, cache.getOffsetSeconds(Long.MIN_VALUE / 2));
+        assertEquals(32400, cache.getOffsetSeconds(0));
+    }
+}
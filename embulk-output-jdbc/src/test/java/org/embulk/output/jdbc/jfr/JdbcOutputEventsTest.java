@@ -0,0 +1,101 @@
+package org.embulk.output.jdbc.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * JFR API (jdk.jfr) is used through reflection, because it is not available on Java 8 before 8u262.
+ * The test is skipped on such Java.
+ */
+public class JdbcOutputEventsTest
+{
+    @Test
+    public void testEvents() throws Exception
+    {
+        assumeTrue(isJfrAvailable());
+
+        File file = File.createTempFile("embulk-output-jdbc-", ".jfr");
+        try {
+            Object recording = Class.forName("jdk.jfr.Recording").getConstructor().newInstance();
+            try {
+                invoke(recording, "enable", "org.embulk.output.jdbc.LoadPhase");
+                invoke(recording, "enable", "org.embulk.output.jdbc.BulkLoad");
+                invoke(recording, "disable", "org.embulk.output.jdbc.SqlExecution");
+                invoke(recording, "start");
+
+                try (EventScope event = JdbcOutputEvents.phase("flush", "t", "insert")) {
+                    event.setRows(10).setBytes(100);
+                }
+                try (EventScope event = JdbcOutputEvents.bulkLoad("copy", "t")) {
+                    event.setRows(20);
+                }
+                try (EventScope event = JdbcOutputEvents.sql("SELECT 1")) {
+                    event.setRows(1);
+                }
+
+                invoke(recording, "stop");
+                invoke(recording, "dump", file.toPath());
+            } finally {
+                invoke(recording, "close");
+            }
+
+            Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class);
+            List<?> events = (List<?>) readAllEvents.invoke(null, file.toPath());
+            assertEquals(2, events.size());
+            Object phase = findEvent(events, "org.embulk.output.jdbc.LoadPhase");
+            assertEquals("flush", invoke(phase, "getValue", "phase"));
+            assertEquals("t", invoke(phase, "getValue", "table"));
+            assertEquals("insert", invoke(phase, "getValue", "mode"));
+            assertEquals(10L, invoke(phase, "getValue", "rows"));
+            assertEquals(100L, invoke(phase, "getValue", "bytes"));
+            Object bulkLoad = findEvent(events, "org.embulk.output.jdbc.BulkLoad");
+            assertEquals("copy", invoke(bulkLoad, "getValue", "method"));
+            assertEquals(20L, invoke(bulkLoad, "getValue", "rows"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static boolean isJfrAvailable()
+    {
+        try {
+            Class.forName("jdk.jfr.Recording");
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    private Object findEvent(List<?> events, String name) throws Exception
+    {
+        for (Object event : events) {
+            if (invoke(invoke(event, "getEventType"), "getName").equals(name)) {
+                return event;
+            }
+        }
+        throw new AssertionError("No event: " + name);
+    }
+
+    // calls the public method of the name which takes the number of arguments
+    private static Object invoke(Object target, String name, Object... args) throws Exception
+    {
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException ex) {
+                    throw (Exception) ex.getCause();
+                }
+            }
+        }
+        throw new NoSuchMethodException(target.getClass().getName() + "." + name);
+    }
+}
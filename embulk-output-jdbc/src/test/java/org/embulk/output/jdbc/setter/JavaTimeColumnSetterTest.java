@@ -0,0 +1,63 @@
+package org.embulk.output.jdbc.setter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.embulk.output.jdbc.BatchInsert;
+import org.junit.Test;
+
+public class JavaTimeColumnSetterTest
+{
+    private final List<Object> values = new ArrayList<>();
+
+    // records values set by setLocalDate, setLocalTime, setLocalDateTime and setOffsetDateTime
+    private final BatchInsert batch = (BatchInsert) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { BatchInsert.class },
+            (proxy, method, args) -> {
+                values.add(args[0]);
+                return null;
+            });
+
+    @Test
+    public void testAcrossTransition() throws Exception
+    {
+        ZoneId zone = ZoneId.of("America/New_York");
+        LocalDateTimeColumnSetter localDateTime = new LocalDateTimeColumnSetter(batch, null, null, zone, false);
+        LocalDateTimeColumnSetter offsetDateTime = new LocalDateTimeColumnSetter(batch, null, null, zone, true);
+        LocalDateColumnSetter localDate = new LocalDateColumnSetter(batch, null, null, zone);
+        LocalTimeColumnSetter localTime = new LocalTimeColumnSetter(batch, null, null, zone);
+
+        Instant start = Instant.parse("2020-03-07T12:00:00.123456789Z");
+        for (int i = 0; i < 48; i++) {
+            Instant v = start.plusSeconds(1800L * i);
+            values.clear();
+            localDateTime.timestampValue(v);
+            offsetDateTime.timestampValue(v);
+            localDate.timestampValue(v);
+            localTime.timestampValue(v);
+            assertEquals(v.atZone(zone).toLocalDateTime(), values.get(0));
+            assertEquals(OffsetDateTime.ofInstant(v, zone), values.get(1));
+            assertEquals(LocalDate.from(v.atZone(zone)), values.get(2));
+            assertEquals(LocalTime.from(v.atZone(zone)), values.get(3));
+        }
+    }
+
+    @Test
+    public void testBeforeEpoch() throws Exception
+    {
+        ZoneId zone = ZoneId.of("Asia/Tokyo");
+        Instant v = Instant.parse("1969-12-31T14:59:59.5Z");
+        new LocalDateColumnSetter(batch, null, null, zone).timestampValue(v);
+        new LocalTimeColumnSetter(batch, null, null, zone).timestampValue(v);
+        assertEquals(LocalDate.of(1969, 12, 31), values.get(0));
+        assertEquals(LocalTime.of(23, 59, 59, 500000000), values.get(1));
+    }
+}
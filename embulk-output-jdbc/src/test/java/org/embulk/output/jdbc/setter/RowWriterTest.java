@@ -0,0 +1,98 @@
+package org.embulk.output.jdbc.setter;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.output.jdbc.RecordBuffer;
+import org.embulk.spi.Column;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+import org.msgpack.value.Value;
+
+public class RowWriterTest
+{
+    private static class RecordingColumnSetter
+            extends ColumnSetter
+    {
+        private final List<Object> values;
+
+        RecordingColumnSetter(List<Object> values)
+        {
+            super(null, null, null);
+            this.values = values;
+        }
+
+        @Override
+        public void nullValue()
+        {
+            values.add(null);
+        }
+
+        @Override
+        public void booleanValue(boolean v)
+        {
+            values.add(v);
+        }
+
+        @Override
+        public void longValue(long v)
+        {
+            values.add(v);
+        }
+
+        @Override
+        public void doubleValue(double v)
+        {
+            values.add(v);
+        }
+
+        @Override
+        public void stringValue(String v)
+        {
+            values.add(v);
+        }
+
+        @Override
+        public void timestampValue(Instant v)
+        {
+            values.add(v);
+        }
+
+        @Override
+        public void jsonValue(Value v)
+        {
+            values.add(v);
+        }
+    }
+
+    @Test
+    public void testWrite() throws Exception
+    {
+        Column booleanColumn = new Column(0, "b", Types.BOOLEAN);
+        Column longColumn = new Column(1, "l", Types.LONG);
+        Column skippedColumn = new Column(2, "skipped", Types.LONG);
+        Column doubleColumn = new Column(3, "d", Types.DOUBLE);
+        Column stringColumn = new Column(4, "s", Types.STRING);
+        Column timestampColumn = new Column(5, "t", Types.TIMESTAMP);
+        List<Column> columns = Arrays.asList(booleanColumn, longColumn, skippedColumn, doubleColumn, stringColumn, timestampColumn);
+
+        List<Object> values = new ArrayList<>();
+        ColumnSetter setter = new RecordingColumnSetter(values);
+        RowWriter writer = new RowWriter(columns, Arrays.asList(setter, setter, new SkipColumnSetter(null), setter, setter, setter));
+
+        RecordBuffer record = new RecordBuffer(columns);
+        record.addRow();
+        record.setBoolean(booleanColumn, true);
+        record.setLong(longColumn, 1L);
+        record.setLong(skippedColumn, 2L);
+        record.setString(stringColumn, "a");
+        record.setTimestamp(timestampColumn, Instant.ofEpochSecond(3));
+        writer.write(record);
+
+        assertEquals(Arrays.asList(true, 1L, null, "a", Instant.ofEpochSecond(3)), values);
+    }
+}
@@ -7,7 +7,9 @@ import java.util.List;
 
 import org.embulk.EmbulkEmbed;
 import org.embulk.EmbulkEmbed.Bootstrap;
+import org.embulk.EmbulkEmbed.ResumableResult;
 import org.embulk.config.ConfigSource;
+import org.embulk.exec.ResumeState;
 import org.embulk.spi.DecoderPlugin;
 import org.embulk.spi.EncoderPlugin;
 import org.embulk.spi.ExecutorPlugin;
@@ -74,8 +76,31 @@ public class EmbulkPluginTester
         return Collections.unmodifiableList(this.plugins.get(OutputPlugin.class));
     }
 
-    @SuppressWarnings("unchecked")
     public void run(String yml) throws Exception
+    {
+        embulk().run(loadConfig(yml));
+    }
+
+    /**
+     * Runs the transaction, and returns the state to resume it if it failed.
+     */
+    public ResumableResult resumableRun(String yml) throws Exception
+    {
+        return embulk().resumableRun(loadConfig(yml));
+    }
+
+    public void resume(String yml, ResumeState resumeState) throws Exception
+    {
+        embulk().resume(loadConfig(yml), resumeState);
+    }
+
+    private ConfigSource loadConfig(String yml)
+    {
+        return embulk().newConfigLoader().fromYamlString(yml);
+    }
+
+    @SuppressWarnings("unchecked")
+    private EmbulkEmbed embulk()
     {
         if (embulk == null) {
             Bootstrap bootstrap = new EmbulkEmbed.Bootstrap();
@@ -114,8 +139,7 @@ public class EmbulkPluginTester
             }
             embulk = bootstrap.initialize();
         }
-        ConfigSource config = embulk.newConfigLoader().fromYamlString(yml);
-        embulk.run(config);
+        return embulk;
     }
 
     public void destroy()
@@ -122,7 +122,7 @@ public class MySQLOutputPlugin
         props.setProperty("password", t.getPassword());
         logConnectionProperties(url, props);
 
-        return new MySQLOutputConnector(url, props, task.getTransactionIsolation());
+        return configureConnectionPool(task, new MySQLOutputConnector(url, props, task.getTransactionIsolation()));
     }
 
     @Override
@@ -156,10 +156,10 @@ public class MySQLOutputPlugin
 
     @Override
     protected void doBegin(JdbcOutputConnection con,
-                           PluginTask task, final Schema schema, int taskCount) throws SQLException
+                           PluginTask task, final Schema schema, int taskCount, boolean resuming) throws SQLException
     {
         MySQLOutputConnection mySQLCon = (MySQLOutputConnection)con;
         mySQLCon.compareTimeZone();
-        super.doBegin(con,task,schema,taskCount);
+        super.doBegin(con,task,schema,taskCount,resuming);
     }
 }
@@ -22,6 +22,19 @@ public class MySQLOutputConnection
         super(connection, null);
     }
 
+    @Override
+    public int getMaxParameterCount()
+    {
+        // the number of parameters is sent as 2 bytes in COM_STMT_PREPARE response
+        return 65535;
+    }
+
+    @Override
+    protected String getCurrentSchemaSql()
+    {
+        return "DATABASE()";
+    }
+
     @Override
     protected String buildPreparedMergeSql(TableIdentifier toTable, JdbcSchema toTableSchema, MergeConfig mergeConfig) throws SQLException
     {
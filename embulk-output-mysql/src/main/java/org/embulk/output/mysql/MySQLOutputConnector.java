@@ -38,4 +38,10 @@ public class MySQLOutputConnector
             }
         }
     }
+
+    @Override
+    protected String getConnectionPoolKey()
+    {
+        return buildConnectionPoolKey(url, properties);
+    }
 }
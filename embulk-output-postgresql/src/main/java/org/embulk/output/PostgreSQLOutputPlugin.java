@@ -12,10 +12,17 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.Optional;
 
+import org.embulk.config.ConfigException;
 import org.embulk.output.jdbc.*;
 import org.embulk.output.jdbc.setter.ColumnSetterFactory;
+import org.embulk.output.postgresql.CopyFormat;
+import org.embulk.output.postgresql.CopyMethod;
+import org.embulk.output.postgresql.MergeMethod;
+import org.embulk.output.postgresql.PostgreSQLBinaryCopyBatchInsert;
 import org.embulk.output.postgresql.PostgreSQLCopyBatchInsert;
 import org.embulk.output.postgresql.PostgreSQLOutputConnector;
+import org.embulk.output.postgresql.PostgreSQLStreamCopyBatchInsert;
+import org.embulk.output.postgresql.PostgreSQLUnnestMergeBatchInsert;
 import org.embulk.output.postgresql.setter.PostgreSQLColumnSetterFactory;
 import org.embulk.spi.Column;
 import org.embulk.spi.ColumnVisitor;
@@ -65,6 +72,18 @@ public class PostgreSQLOutputPlugin
         @Config("role_name")
         @ConfigDefault("null")
         public Optional<String> getRoleName();
+
+        @Config("merge_method")
+        @ConfigDefault("\"normal\"")
+        public MergeMethod getMergeMethod();
+
+        @Config("copy_method")
+        @ConfigDefault("\"file\"")
+        public CopyMethod getCopyMethod();
+
+        @Config("copy_format")
+        @ConfigDefault("\"text\"")
+        public CopyFormat getCopyFormat();
     }
 
     @Override
@@ -121,8 +140,37 @@ public class PostgreSQLOutputPlugin
         props.setProperty("password", t.getPassword());
         logConnectionProperties(url, props);
 
-        return new PostgreSQLOutputConnector(url, props, t.getSchema(), t.getTransactionIsolation(),
-                t.getRoleName().orElse(null));
+        return configureConnectionPool(task, new PostgreSQLOutputConnector(url, props, t.getSchema(), t.getTransactionIsolation(),
+                t.getRoleName().orElse(null)));
+    }
+
+    @Override
+    protected void doBegin(JdbcOutputConnection con,
+            PluginTask task, final Schema schema, int taskCount, boolean resuming) throws SQLException
+    {
+        PostgreSQLPluginTask t = (PostgreSQLPluginTask) task;
+        if (t.getMergeMethod() == MergeMethod.UNNEST) {
+            if (task.getMode() != Mode.MERGE_DIRECT) {
+                throw new ConfigException("'merge_method: unnest' is supported only in merge_direct mode.");
+            }
+            if (!task.getDeduplicateMergeKeys()) {
+                // rows with the same keys in a statement would be inserted twice
+                throw new ConfigException("'merge_method: unnest' requires 'deduplicate_merge_keys: true'.");
+            }
+        }
+        if (t.getCopyFormat() == CopyFormat.BINARY) {
+            if (task.getMode() == Mode.MERGE_DIRECT) {
+                throw new ConfigException("'copy_format: binary' is not supported in merge_direct mode.");
+            }
+            if (t.getCopyMethod() == CopyMethod.STREAM) {
+                throw new ConfigException("'copy_format: binary' doesn't support 'copy_method: stream'.");
+            }
+        }
+        super.doBegin(con, task, schema, taskCount, resuming);
+
+        if (t.getCopyFormat() == CopyFormat.BINARY) {
+            PostgreSQLBinaryCopyBatchInsert.checkColumnTypes(JdbcSchema.filterSkipColumns(task.getTargetTableSchema()));
+        }
     }
 
     @Override
@@ -138,9 +186,19 @@ public class PostgreSQLOutputPlugin
     @Override
     protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
     {
+        PostgreSQLPluginTask t = (PostgreSQLPluginTask) task;
         if (mergeConfig.isPresent()) {
+            if (t.getMergeMethod() == MergeMethod.UNNEST) {
+                return new PostgreSQLUnnestMergeBatchInsert(getConnector(task, true), mergeConfig.get());
+            }
             return new StandardBatchInsert(getConnector(task, true), mergeConfig);
         }
+        if (t.getCopyFormat() == CopyFormat.BINARY) {
+            return new PostgreSQLBinaryCopyBatchInsert(getConnector(task, true));
+        }
+        if (t.getCopyMethod() == CopyMethod.STREAM) {
+            return new PostgreSQLStreamCopyBatchInsert(getConnector(task, true), task.getRetryCapture().orElse(RetryCaptureMode.MEMORY));
+        }
         return new PostgreSQLCopyBatchInsert(getConnector(task, true));
     }
 
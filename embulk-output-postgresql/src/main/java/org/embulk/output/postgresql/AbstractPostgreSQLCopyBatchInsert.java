@@ -1,7 +1,6 @@
 package org.embulk.output.postgresql;
 
 import java.util.Calendar;
-import java.util.Locale;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.BufferedWriter;
@@ -10,7 +9,9 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.Arrays;
 import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.RetryCaptureMode;
 
 public abstract class AbstractPostgreSQLCopyBatchInsert
         implements BatchInsert
@@ -21,17 +22,33 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
     protected static final String newLineString = "\n";
     protected static final String delimiterString = "\t";
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     protected File currentFile;
     protected BufferedWriter writer;
     protected int index;
     protected int batchRows;
 
+    // reused to render numbers, dates and times
+    private final char[] chars = new char[64];
+    private CopyDateTimeRenderer[] renderers = new CopyDateTimeRenderer[0];
+
     protected AbstractPostgreSQLCopyBatchInsert() throws IOException
     {
         this.index = 0;
         openNewFile();
     }
 
+    /**
+     * Creates a BatchInsert which writes rows to the writer instead of temporary files.
+     * The subclass must override {@link #getBatchWeight()}.
+     */
+    protected AbstractPostgreSQLCopyBatchInsert(BufferedWriter writer)
+    {
+        this.index = 0;
+        this.writer = writer;
+    }
+
     private File createTempFile() throws IOException
     {
         return File.createTempFile("embulk-output-postgres-copy-", ".tsv.tmp");  // TODO configurable temporary file path
@@ -100,25 +117,25 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
     public void setByte(byte v) throws IOException
     {
         appendDelimiter();
-        setEscapedString(String.valueOf(v));
+        writeLong(v);
     }
 
     public void setShort(short v) throws IOException
     {
         appendDelimiter();
-        writer.write(String.valueOf(v));
+        writeLong(v);
     }
 
     public void setInt(int v) throws IOException
     {
         appendDelimiter();
-        writer.write(String.valueOf(v));
+        writeLong(v);
     }
 
     public void setLong(long v) throws IOException
     {
         appendDelimiter();
-        writer.write(String.valueOf(v));
+        writeLong(v);
     }
 
     public void setFloat(float v) throws IOException
@@ -154,65 +171,201 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
     public void setBytes(byte[] v) throws IOException
     {
         appendDelimiter();
-        setEscapedString(String.valueOf(v));
+        // hex format of bytea. Its backslash is escaped like strings.
+        setEscapedString("\\x");
+        for (byte b : v) {
+            writer.write(HEX_DIGITS[(b >> 4) & 0xf]);
+            writer.write(HEX_DIGITS[b & 0xf]);
+        }
     }
 
     public void setSqlDate(final Instant v, final Calendar cal) throws IOException
     {
         appendDelimiter();
-        cal.setTimeInMillis(v.getEpochSecond() * 1000);
-        String f = String.format(Locale.ENGLISH, "%02d-%02d-%02d",
-                cal.get(Calendar.YEAR),
-                cal.get(Calendar.MONTH) + 1,
-                cal.get(Calendar.DAY_OF_MONTH));
-        writer.write(f);
+        if (CopyDateTimeRenderer.isSupported(v)) {
+            writer.write(chars, 0, getRenderer(cal).renderDate(chars, 0, v));
+        } else {
+            writer.write(chars, 0, renderSqlDate(chars, v, cal));
+        }
     }
 
     public void setSqlTime(final Instant v, final Calendar cal) throws IOException
     {
         appendDelimiter();
-        cal.setTimeInMillis(v.getEpochSecond() * 1000);
-        String f = String.format(Locale.ENGLISH, "%02d:%02d:%02d.%06d",
-                cal.get(Calendar.HOUR_OF_DAY),
-                cal.get(Calendar.MINUTE),
-                cal.get(Calendar.SECOND),
-                v.getNano() / 1000);
-        writer.write(f);
+        if (CopyDateTimeRenderer.isSupported(v)) {
+            writer.write(chars, 0, getRenderer(cal).renderTime(chars, 0, v));
+        } else {
+            writer.write(chars, 0, renderSqlTime(chars, v, cal));
+        }
     }
 
     public void setSqlTimestamp(final Instant v, final Calendar cal) throws IOException
     {
         appendDelimiter();
+        if (CopyDateTimeRenderer.isSupported(v)) {
+            writer.write(chars, 0, getRenderer(cal).renderTimestamp(chars, 0, v));
+        } else {
+            writer.write(chars, 0, renderSqlTimestamp(chars, v, cal));
+        }
+    }
+
+    private CopyDateTimeRenderer getRenderer(final Calendar cal)
+    {
+        // a renderer is kept for each column, and is replaced if the column uses another time zone
+        int column = index - 1;
+        if (column >= renderers.length) {
+            renderers = Arrays.copyOf(renderers, column + 1);
+        }
+        CopyDateTimeRenderer renderer = renderers[column];
+        if (renderer == null || !renderer.isFor(cal.getTimeZone())) {
+            renderer = new CopyDateTimeRenderer(cal.getTimeZone());
+            renderers[column] = renderer;
+        }
+        return renderer;
+    }
+
+    protected static String formatSqlDate(final Instant v, final Calendar cal)
+    {
+        char[] buffer = new char[32];
+        return new String(buffer, 0, renderSqlDate(buffer, v, cal));
+    }
+
+    protected static String formatSqlTime(final Instant v, final Calendar cal)
+    {
+        char[] buffer = new char[32];
+        return new String(buffer, 0, renderSqlTime(buffer, v, cal));
+    }
+
+    protected static String formatSqlTimestamp(final Instant v, final Calendar cal)
+    {
+        char[] buffer = new char[64];
+        return new String(buffer, 0, renderSqlTimestamp(buffer, v, cal));
+    }
+
+    // yyyy-MM-dd
+    static int renderSqlDate(final char[] buffer, final Instant v, final Calendar cal)
+    {
+        cal.setTimeInMillis(v.getEpochSecond() * 1000);
+        return renderDate(buffer, 0, cal, 2);
+    }
+
+    // HH:mm:ss.SSSSSS
+    static int renderSqlTime(final char[] buffer, final Instant v, final Calendar cal)
+    {
+        cal.setTimeInMillis(v.getEpochSecond() * 1000);
+        return renderTime(buffer, 0, cal, v.getNano());
+    }
+
+    // yyyy-MM-dd HH:mm:ss.SSSSSS+hhmm
+    static int renderSqlTimestamp(final char[] buffer, final Instant v, final Calendar cal)
+    {
         cal.setTimeInMillis(v.getEpochSecond() * 1000);
-        int zoneOffset = cal.get(Calendar.ZONE_OFFSET) / 1000 / 60;  // zone offset considering DST in minute
-        String offset;
+        int pos = renderDate(buffer, 0, cal, 1);
+        buffer[pos++] = ' ';
+        pos = renderTime(buffer, pos, cal, v.getNano());
+        int zoneOffset = (cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET)) / 1000 / 60;  // zone offset considering DST in minute
         if (zoneOffset >= 0) {
-            offset = String.format(Locale.ENGLISH, "+%02d%02d", zoneOffset / 60, zoneOffset % 60);
+            buffer[pos++] = '+';
         } else {
-            offset = String.format(Locale.ENGLISH, "-%02d%02d", -zoneOffset / 60, -zoneOffset % 60);
+            buffer[pos++] = '-';
+            zoneOffset = -zoneOffset;
+        }
+        pos = renderDigits(buffer, pos, zoneOffset / 60, 2);
+        return renderDigits(buffer, pos, zoneOffset % 60, 2);
+    }
+
+    private static int renderDate(final char[] buffer, int pos, final Calendar cal, int yearDigits)
+    {
+        pos = renderDigits(buffer, pos, cal.get(Calendar.YEAR), yearDigits);
+        buffer[pos++] = '-';
+        pos = renderDigits(buffer, pos, cal.get(Calendar.MONTH) + 1, 2);
+        buffer[pos++] = '-';
+        return renderDigits(buffer, pos, cal.get(Calendar.DAY_OF_MONTH), 2);
+    }
+
+    private static int renderTime(final char[] buffer, int pos, final Calendar cal, int nano)
+    {
+        pos = renderDigits(buffer, pos, cal.get(Calendar.HOUR_OF_DAY), 2);
+        buffer[pos++] = ':';
+        pos = renderDigits(buffer, pos, cal.get(Calendar.MINUTE), 2);
+        buffer[pos++] = ':';
+        pos = renderDigits(buffer, pos, cal.get(Calendar.SECOND), 2);
+        buffer[pos++] = '.';
+        return renderDigits(buffer, pos, nano / 1000, 6);
+    }
+
+    /**
+     * Renders a non-negative value with leading zeros up to minDigits, and returns the position after it.
+     */
+    static int renderDigits(final char[] buffer, int pos, int value, int minDigits)
+    {
+        int digits = 1;
+        for (int v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
         }
-        String f = String.format(Locale.ENGLISH, "%d-%02d-%02d %02d:%02d:%02d.%06d%s",
-                cal.get(Calendar.YEAR),
-                cal.get(Calendar.MONTH) + 1,
-                cal.get(Calendar.DAY_OF_MONTH),
-                cal.get(Calendar.HOUR_OF_DAY),
-                cal.get(Calendar.MINUTE),
-                cal.get(Calendar.SECOND),
-                v.getNano() / 1000,
-                offset);
-        writer.write(f);
+        return pos + digits;
+    }
+
+    /**
+     * Renders a long value like String.valueOf, and returns the position after it.
+     */
+    static int renderLong(final char[] buffer, int pos, long value)
+    {
+        if (value == Long.MIN_VALUE) {
+            // can't be negated
+            String s = "-9223372036854775808";
+            s.getChars(0, s.length(), buffer, pos);
+            return pos + s.length();
+        }
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+
+    private void writeLong(long v) throws IOException
+    {
+        writer.write(chars, 0, renderLong(chars, 0, v));
     }
 
     private void setEscapedString(String v) throws IOException
     {
-        for (char c : v.toCharArray()) {
-            writer.write(escape(c));
+        // characters which don't need escape are written by runs
+        int length = v.length();
+        int runStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = v.charAt(i);
+            if (c < 0x20 || c == '\\') {
+                String escaped = escapeSpecialCharacter(c);
+                if (escaped != null) {
+                    writer.write(v, runStart, i - runStart);
+                    writer.write(escaped);
+                    runStart = i + 1;
+                }
+            }
         }
+        writer.write(v, runStart, length - runStart);
     }
 
     // Escape \, \n, \t, \r
     // Remove \0
-    protected String escape(char c)
+    // Called only for \ and control characters below 0x20, and other characters are written as is.
+    // Returns null if the character is written as is.
+    protected String escapeSpecialCharacter(char c)
     {
         switch (c) {
         case '\\':
@@ -226,7 +379,7 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
         case 0:
             return "";
         default:
-            return String.valueOf(c);
+            return null;
         }
     }
 
@@ -236,4 +389,11 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
         // need not be implemented because AbstractPostgreSQLCopyBatchInsert won't retry.
         return new int[]{};
     }
+
+    @Override
+    public RetryCaptureMode getRetryCaptureMode()
+    {
+        // the file written until the last flush is kept and copied again on retry.
+        return RetryCaptureMode.OFF;
+    }
 }
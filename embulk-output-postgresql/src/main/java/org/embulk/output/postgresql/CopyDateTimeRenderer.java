@@ -0,0 +1,109 @@
+package org.embulk.output.postgresql;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+import org.embulk.output.jdbc.ZoneOffsetCache;
+
+/**
+ * Renders dates, times and timestamps in a time zone to the COPY text format without Calendar.
+ *
+ * The offset is cached between transitions of the time zone, and the date is rendered once a day.
+ * Dates out of 1583-9999 are not supported, because Calendar renders dates before 1583 in the Julian
+ * calendar. Not thread-safe.
+ */
+class CopyDateTimeRenderer
+{
+    private static final int SECONDS_PER_DAY = 86400;
+    // a day inside of the range so that local dates don't go out of it by offsets
+    private static final long MIN_EPOCH_SECOND = LocalDate.of(1583, 1, 2).toEpochDay() * SECONDS_PER_DAY;
+    private static final long MAX_EPOCH_SECOND = LocalDate.of(9999, 12, 31).toEpochDay() * SECONDS_PER_DAY;
+
+    private final TimeZone timeZone;
+    private final ZoneOffsetCache offsets;
+    private final char[] date = new char[10];
+    private long cachedEpochDay = Long.MIN_VALUE;
+
+    CopyDateTimeRenderer(TimeZone timeZone)
+    {
+        this.timeZone = timeZone;
+        this.offsets = new ZoneOffsetCache(timeZone.toZoneId());
+    }
+
+    boolean isFor(TimeZone timeZone)
+    {
+        return this.timeZone == timeZone;
+    }
+
+    static boolean isSupported(Instant v)
+    {
+        long epochSecond = v.getEpochSecond();
+        return epochSecond >= MIN_EPOCH_SECOND && epochSecond < MAX_EPOCH_SECOND;
+    }
+
+    // yyyy-MM-dd
+    int renderDate(char[] buffer, int pos, Instant v)
+    {
+        return putDate(buffer, pos, localEpochSecond(v.getEpochSecond()));
+    }
+
+    // HH:mm:ss.SSSSSS
+    int renderTime(char[] buffer, int pos, Instant v)
+    {
+        return putTime(buffer, pos, localEpochSecond(v.getEpochSecond()), v.getNano());
+    }
+
+    // yyyy-MM-dd HH:mm:ss.SSSSSS+hhmm
+    int renderTimestamp(char[] buffer, int pos, Instant v)
+    {
+        long epochSecond = v.getEpochSecond();
+        int offsetSeconds = offsets.getOffsetSeconds(epochSecond);
+        long localSecond = epochSecond + offsetSeconds;
+        pos = putDate(buffer, pos, localSecond);
+        buffer[pos++] = ' ';
+        pos = putTime(buffer, pos, localSecond, v.getNano());
+        int offsetMinutes = offsetSeconds / 60;
+        if (offsetMinutes >= 0) {
+            buffer[pos++] = '+';
+        } else {
+            buffer[pos++] = '-';
+            offsetMinutes = -offsetMinutes;
+        }
+        pos = AbstractPostgreSQLCopyBatchInsert.renderDigits(buffer, pos, offsetMinutes / 60, 2);
+        return AbstractPostgreSQLCopyBatchInsert.renderDigits(buffer, pos, offsetMinutes % 60, 2);
+    }
+
+    private long localEpochSecond(long epochSecond)
+    {
+        return epochSecond + offsets.getOffsetSeconds(epochSecond);
+    }
+
+    private int putDate(char[] buffer, int pos, long localSecond)
+    {
+        long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+        if (epochDay != cachedEpochDay) {
+            LocalDate localDate = LocalDate.ofEpochDay(epochDay);
+            int p = AbstractPostgreSQLCopyBatchInsert.renderDigits(date, 0, localDate.getYear(), 4);
+            date[p++] = '-';
+            p = AbstractPostgreSQLCopyBatchInsert.renderDigits(date, p, localDate.getMonthValue(), 2);
+            date[p++] = '-';
+            AbstractPostgreSQLCopyBatchInsert.renderDigits(date, p, localDate.getDayOfMonth(), 2);
+            cachedEpochDay = epochDay;
+        }
+        System.arraycopy(date, 0, buffer, pos, date.length);
+        return pos + date.length;
+    }
+
+    private int putTime(char[] buffer, int pos, long localSecond, int nano)
+    {
+        int secondOfDay = (int) Math.floorMod(localSecond, SECONDS_PER_DAY);
+        pos = AbstractPostgreSQLCopyBatchInsert.renderDigits(buffer, pos, secondOfDay / 3600, 2);
+        buffer[pos++] = ':';
+        pos = AbstractPostgreSQLCopyBatchInsert.renderDigits(buffer, pos, secondOfDay / 60 % 60, 2);
+        buffer[pos++] = ':';
+        pos = AbstractPostgreSQLCopyBatchInsert.renderDigits(buffer, pos, secondOfDay % 60, 2);
+        buffer[pos++] = '.';
+        return AbstractPostgreSQLCopyBatchInsert.renderDigits(buffer, pos, nano / 1000, 6);
+    }
+}
@@ -0,0 +1,42 @@
+package org.embulk.output.postgresql;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Format of rows sent by COPY.
+ */
+public enum CopyFormat
+{
+    /**
+     * Tab-separated text, parsed by the server.
+     */
+    TEXT,
+
+    /**
+     * Binary representation of each column type, which the server doesn't need to parse.
+     */
+    BINARY;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static CopyFormat fromString(String value)
+    {
+        for (CopyFormat copyFormat : CopyFormat.values()) {
+            if (copyFormat.toString().equals(value)) {
+                return copyFormat;
+            }
+        }
+        throw new ConfigException(String.format("Unknown copy_format '%s'. Supported values are text and binary.", value));
+    }
+}
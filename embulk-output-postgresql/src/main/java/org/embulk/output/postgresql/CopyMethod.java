@@ -0,0 +1,42 @@
+package org.embulk.output.postgresql;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How rows of a batch are sent by COPY.
+ */
+public enum CopyMethod
+{
+    /**
+     * Rows are written to a temporary file, which is copied when the batch is flushed.
+     */
+    FILE,
+
+    /**
+     * Rows are streamed to COPY while they are added, and the COPY is ended when the batch is flushed.
+     */
+    STREAM;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static CopyMethod fromString(String value)
+    {
+        for (CopyMethod copyMethod : CopyMethod.values()) {
+            if (copyMethod.toString().equals(value)) {
+                return copyMethod;
+            }
+        }
+        throw new ConfigException(String.format("Unknown copy_method '%s'. Supported values are file and stream.", value));
+    }
+}
@@ -0,0 +1,42 @@
+package org.embulk.output.postgresql;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How records are merged into the target table in merge_direct mode.
+ */
+public enum MergeMethod
+{
+    /**
+     * A statement merging a row is executed in batch.
+     */
+    NORMAL,
+
+    /**
+     * A statement merging all rows of a batch, passed as arrays of column values, is executed.
+     */
+    UNNEST;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static MergeMethod fromString(String value)
+    {
+        for (MergeMethod mergeMethod : MergeMethod.values()) {
+            if (mergeMethod.toString().equals(value)) {
+                return mergeMethod;
+            }
+        }
+        throw new ConfigException(String.format("Unknown merge_method '%s'. Supported values are normal and unnest.", value));
+    }
+}
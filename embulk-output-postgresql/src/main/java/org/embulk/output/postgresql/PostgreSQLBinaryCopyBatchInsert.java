@@ -0,0 +1,678 @@
+package org.embulk.output.postgresql;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.JdbcOutputConnector;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.RetryCaptureMode;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.jdbc.jfr.EventScope;
+import org.embulk.output.jdbc.jfr.JdbcOutputEvents;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BatchInsert which writes rows in the binary format of COPY to a temporary file, and copies it by flush.
+ *
+ * Values are encoded in the binary representation of the type of each column into a direct ByteBuffer,
+ * which is written to the file when it is full. Only types listed in {@link BinaryType} are supported,
+ * because the binary representation must match the column type exactly. Columns are checked by
+ * {@link #checkColumnTypes(JdbcSchema)} before loading.
+ */
+public class PostgreSQLBinaryCopyBatchInsert
+        implements BatchInsert
+{
+    private static final Logger logger = LoggerFactory.getLogger(PostgreSQLBinaryCopyBatchInsert.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+
+    // 2000-01-01, the epoch of date and timestamp of PostgreSQL
+    private static final long POSTGRES_EPOCH_DAY = 10957;
+    private static final long POSTGRES_EPOCH_MICROS = POSTGRES_EPOCH_DAY * 86400L * 1000000L;
+
+    private static final short NUMERIC_POSITIVE = 0x0000;
+    private static final short NUMERIC_NEGATIVE = 0x4000;
+    private static final short NUMERIC_NAN = (short) 0xC000;
+
+    enum BinaryType
+    {
+        BOOL, INT2, INT4, INT8, FLOAT4, FLOAT8, NUMERIC, TEXT, JSONB, BYTEA, DATE, TIME, TIMESTAMP, TIMESTAMPTZ;
+    }
+
+    private final JdbcOutputConnector connector;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private PostgreSQLOutputConnection connection = null;
+    private CopyManager copyManager = null;
+    private String copySql = null;
+    private String tableName = null;
+    private JdbcSchema insertSchema;
+    private BinaryType[] types;
+
+    private File currentFile;
+    private FileOutputStream out;
+    private FileChannel channel;
+    private long fileBytes;
+    private boolean headerWritten;
+    private int index;
+    private int batchRows;
+    private long totalRows;
+
+    public PostgreSQLBinaryCopyBatchInsert(JdbcOutputConnector connector) throws IOException
+    {
+        this.connector = connector;
+        openNewFile();
+    }
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
+    {
+        this.insertSchema = insertSchema;
+        this.types = new BinaryType[insertSchema.getCount()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = getBinaryType(insertSchema.getColumn(i).getSimpleTypeName());
+        }
+
+        this.connection = (PostgreSQLOutputConnection) connector.connect(true);
+        this.copySql = connection.buildBinaryCopySql(loadTable, insertSchema);
+        this.tableName = loadTable.getTableName();
+        this.copyManager = connection.newCopyManager();
+        logger.info("Copy SQL: " + copySql);
+    }
+
+    /**
+     * Throws ConfigException if a column has a type which can't be written in the binary format, like uuid, enums and citext.
+     */
+    public static void checkColumnTypes(JdbcSchema insertSchema)
+    {
+        for (int i = 0; i < insertSchema.getCount(); i++) {
+            if (getBinaryType(insertSchema.getColumn(i).getSimpleTypeName()) == null) {
+                throw new ConfigException(String.format("'copy_format: binary' doesn't support column '%s' of type %s.",
+                            insertSchema.getColumnName(i), insertSchema.getColumn(i).getSimpleTypeName()));
+            }
+        }
+    }
+
+    static BinaryType getBinaryType(String typeName)
+    {
+        // type parameters like varchar(10) or timestamp(3) with time zone are removed
+        String name = typeName.replaceAll("\\s*\\([^)]*\\)", "").toLowerCase(Locale.ENGLISH);
+        switch (name) {
+        case "bool":
+        case "boolean":
+            return BinaryType.BOOL;
+        case "int2":
+        case "smallint":
+        case "smallserial":
+            return BinaryType.INT2;
+        case "int4":
+        case "int":
+        case "integer":
+        case "serial":
+            return BinaryType.INT4;
+        case "int8":
+        case "bigint":
+        case "bigserial":
+            return BinaryType.INT8;
+        case "float4":
+        case "real":
+            return BinaryType.FLOAT4;
+        case "float8":
+        case "double precision":
+            return BinaryType.FLOAT8;
+        case "numeric":
+        case "decimal":
+            return BinaryType.NUMERIC;
+        case "text":
+        case "varchar":
+        case "character varying":
+        case "bpchar":
+        case "character":
+        case "name":
+        case "json":
+            return BinaryType.TEXT;
+        case "jsonb":
+            return BinaryType.JSONB;
+        case "bytea":
+            return BinaryType.BYTEA;
+        case "date":
+            return BinaryType.DATE;
+        case "time":
+        case "time without time zone":
+            return BinaryType.TIME;
+        case "timestamp":
+        case "timestamp without time zone":
+            return BinaryType.TIMESTAMP;
+        case "timestamptz":
+        case "timestamp with time zone":
+            return BinaryType.TIMESTAMPTZ;
+        default:
+            // e.g. "char", the internal 1-byte type, whose binary format is not text
+            return null;
+        }
+    }
+
+    @Override
+    public int getBatchWeight()
+    {
+        long bytes = fileBytes + buffer.position();
+        return bytes > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) bytes;
+    }
+
+    @Override
+    public void add() throws IOException
+    {
+        batchRows++;
+        index = 0;
+    }
+
+    @Override
+    public void flush() throws IOException, SQLException
+    {
+        if (batchRows == 0) return;
+
+        File file = closeCurrentFile();  // the file is kept and copied again on retry
+        logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, file.length()));
+        long startTime = System.currentTimeMillis();
+        try (FileInputStream in = new FileInputStream(file);
+                EventScope event = JdbcOutputEvents.bulkLoad("copy", tableName)) {
+            event.setRows(batchRows).setBytes(file.length());
+            copyManager.copyIn(copySql, in);
+        }
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+        totalRows += batchRows;
+        batchRows = 0;
+        logger.info(String.format("> %.2f seconds (loaded %,d rows in total)", seconds, totalRows));
+
+        openNewFile();
+        file.delete();
+    }
+
+    @Override
+    public int[] getLastUpdateCounts()
+    {
+        // need not be implemented because the file is copied again on retry.
+        return new int[]{};
+    }
+
+    @Override
+    public RetryCaptureMode getRetryCaptureMode()
+    {
+        return RetryCaptureMode.OFF;
+    }
+
+    @Override
+    public void finish() throws IOException, SQLException
+    {
+    }
+
+    @Override
+    public void close() throws IOException, SQLException
+    {
+        File file = closeCurrentFile();
+        if (file != null) {
+            file.delete();
+        }
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    @Override
+    public void setNull(int sqlType) throws IOException
+    {
+        beginField();
+        ensure(4);
+        buffer.putInt(-1);
+    }
+
+    @Override
+    public void setBoolean(boolean v) throws IOException, SQLException
+    {
+        BinaryType type = beginField();
+        switch (type) {
+        case BOOL:
+            ensure(5);
+            buffer.putInt(1).put((byte) (v ? 1 : 0));
+            break;
+        case TEXT:
+            writeText(String.valueOf(v));
+            break;
+        default:
+            throw unsupportedValue("boolean");
+        }
+    }
+
+    @Override
+    public void setByte(byte v) throws IOException, SQLException
+    {
+        writeLong(beginField(), v);
+    }
+
+    @Override
+    public void setShort(short v) throws IOException, SQLException
+    {
+        writeLong(beginField(), v);
+    }
+
+    @Override
+    public void setInt(int v) throws IOException, SQLException
+    {
+        writeLong(beginField(), v);
+    }
+
+    @Override
+    public void setLong(long v) throws IOException, SQLException
+    {
+        writeLong(beginField(), v);
+    }
+
+    @Override
+    public void setFloat(float v) throws IOException, SQLException
+    {
+        writeDouble(beginField(), v, Float.toString(v));
+    }
+
+    @Override
+    public void setDouble(double v) throws IOException, SQLException
+    {
+        writeDouble(beginField(), v, Double.toString(v));
+    }
+
+    @Override
+    public void setBigDecimal(BigDecimal v) throws IOException, SQLException
+    {
+        BinaryType type = beginField();
+        switch (type) {
+        case NUMERIC:
+            writeBytes(encodeNumeric(v));
+            break;
+        case INT2:
+        case INT4:
+        case INT8:
+            long longValue;
+            try {
+                longValue = v.longValueExact();
+            } catch (ArithmeticException ex) {
+                // a fraction, or out of range of bigint
+                throw notExact(v);
+            }
+            writeLong(type, longValue);
+            break;
+        case FLOAT4:
+        case FLOAT8:
+            writeDouble(type, v.doubleValue(), v.toString());
+            break;
+        case TEXT:
+            writeText(v.toString());
+            break;
+        default:
+            throw unsupportedValue("decimal");
+        }
+    }
+
+    @Override
+    public void setString(String v) throws IOException, SQLException
+    {
+        BinaryType type = beginField();
+        switch (type) {
+        case TEXT:
+            writeText(v);
+            break;
+        case JSONB:
+            writeJsonb(v);
+            break;
+        default:
+            throw unsupportedValue("string");
+        }
+    }
+
+    @Override
+    public void setNString(String v) throws IOException, SQLException
+    {
+        setString(v);
+    }
+
+    @Override
+    public void setBytes(byte[] v) throws IOException, SQLException
+    {
+        if (beginField() != BinaryType.BYTEA) {
+            throw unsupportedValue("bytes");
+        }
+        writeBytes(v);
+    }
+
+    @Override
+    public void setSqlDate(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        BinaryType type = beginField();
+        switch (type) {
+        case DATE:
+            writeDate(v, cal);
+            break;
+        case TEXT:
+            writeText(AbstractPostgreSQLCopyBatchInsert.formatSqlDate(v, cal));
+            break;
+        default:
+            throw unsupportedValue("date");
+        }
+    }
+
+    @Override
+    public void setSqlTime(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        BinaryType type = beginField();
+        switch (type) {
+        case TIME:
+            ensure(12);
+            buffer.putInt(8).putLong(Math.floorMod(localEpochSecond(v, cal), 86400) * 1000000L + v.getNano() / 1000);
+            break;
+        case TEXT:
+            writeText(AbstractPostgreSQLCopyBatchInsert.formatSqlTime(v, cal));
+            break;
+        default:
+            throw unsupportedValue("time");
+        }
+    }
+
+    @Override
+    public void setSqlTimestamp(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        BinaryType type = beginField();
+        switch (type) {
+        case TIMESTAMP:
+            // local time in the time zone of the column, like the text format
+            ensure(12);
+            buffer.putInt(8).putLong(toPostgresMicros(localEpochSecond(v, cal), v.getNano()));
+            break;
+        case TIMESTAMPTZ:
+            ensure(12);
+            buffer.putInt(8).putLong(toPostgresMicros(v.getEpochSecond(), v.getNano()));
+            break;
+        case DATE:
+            writeDate(v, cal);
+            break;
+        case TEXT:
+            writeText(AbstractPostgreSQLCopyBatchInsert.formatSqlTimestamp(v, cal));
+            break;
+        default:
+            throw unsupportedValue("timestamp");
+        }
+    }
+
+    static long toPostgresMicros(long epochSecond, int nano)
+    {
+        return epochSecond * 1000000L + nano / 1000 - POSTGRES_EPOCH_MICROS;
+    }
+
+    /**
+     * Encodes a decimal to the binary representation of numeric, which consists of digits in base 10000
+     * and the weight of the first digit, with the sign and the display scale.
+     */
+    static byte[] encodeNumeric(BigDecimal v)
+    {
+        if (v.scale() < 0) {
+            v = v.setScale(0);
+        }
+        int scale = v.scale();
+        String digits = v.unscaledValue().abs().toString();
+        int integerLength = digits.length() - scale;
+        if (integerLength < 0) {
+            digits = zeros(-integerLength) + digits;
+            integerLength = 0;
+        }
+        // align digits to groups of 4 from the decimal point
+        int padLeft = (4 - integerLength % 4) % 4;
+        int padRight = (4 - (digits.length() - integerLength) % 4) % 4;
+        String padded = zeros(padLeft) + digits + zeros(padRight);
+
+        int groups = padded.length() / 4;
+        int weight = (integerLength + padLeft) / 4 - 1;
+        int start = 0;
+        while (start < groups && isZeroGroup(padded, start)) {
+            start++;
+            weight--;
+        }
+        int end = groups;
+        while (end > start && isZeroGroup(padded, end - 1)) {
+            end--;
+        }
+        int count = end - start;
+
+        ByteBuffer bytes = ByteBuffer.allocate(8 + count * 2);
+        bytes.putShort((short) count);
+        bytes.putShort((short) (count == 0 ? 0 : weight));
+        bytes.putShort(v.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE);
+        bytes.putShort((short) scale);
+        for (int i = start; i < end; i++) {
+            bytes.putShort(Short.parseShort(padded.substring(i * 4, i * 4 + 4)));
+        }
+        return bytes.array();
+    }
+
+    private static boolean isZeroGroup(String padded, int group)
+    {
+        return padded.startsWith("0000", group * 4);
+    }
+
+    private static String zeros(int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append('0');
+        }
+        return sb.toString();
+    }
+
+    private void writeLong(BinaryType type, long v) throws IOException, SQLException
+    {
+        switch (type) {
+        case INT2:
+            if (v < Short.MIN_VALUE || v > Short.MAX_VALUE) {
+                throw outOfRange(v);
+            }
+            ensure(6);
+            buffer.putInt(2).putShort((short) v);
+            break;
+        case INT4:
+            if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+                throw outOfRange(v);
+            }
+            ensure(8);
+            buffer.putInt(4).putInt((int) v);
+            break;
+        case INT8:
+            ensure(12);
+            buffer.putInt(8).putLong(v);
+            break;
+        case FLOAT4:
+            ensure(8);
+            buffer.putInt(4).putFloat(v);
+            break;
+        case FLOAT8:
+            ensure(12);
+            buffer.putInt(8).putDouble(v);
+            break;
+        case NUMERIC:
+            writeBytes(encodeNumeric(BigDecimal.valueOf(v)));
+            break;
+        case TEXT:
+            writeText(String.valueOf(v));
+            break;
+        default:
+            throw unsupportedValue("integer");
+        }
+    }
+
+    private void writeDouble(BinaryType type, double v, String text) throws IOException, SQLException
+    {
+        switch (type) {
+        case FLOAT4:
+            ensure(8);
+            buffer.putInt(4).putFloat((float) v);
+            break;
+        case FLOAT8:
+            ensure(12);
+            buffer.putInt(8).putDouble(v);
+            break;
+        case NUMERIC:
+            if (Double.isNaN(v)) {
+                ensure(12);
+                buffer.putInt(8).putShort((short) 0).putShort((short) 0).putShort(NUMERIC_NAN).putShort((short) 0);
+            } else if (Double.isInfinite(v)) {
+                throw unsupportedValue("infinite");
+            } else {
+                writeBytes(encodeNumeric(new BigDecimal(text)));
+            }
+            break;
+        case TEXT:
+            writeText(text);
+            break;
+        default:
+            throw unsupportedValue("floating point");
+        }
+    }
+
+    private void writeDate(Instant v, Calendar cal) throws IOException
+    {
+        ensure(8);
+        buffer.putInt(4).putInt((int) (Math.floorDiv(localEpochSecond(v, cal), 86400) - POSTGRES_EPOCH_DAY));
+    }
+
+    private void writeText(String v) throws IOException
+    {
+        if (v.indexOf('\0') >= 0) {
+            // text can't contain \0, which the text format removes too
+            v = v.replace("\0", "");
+        }
+        writeBytes(v.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeJsonb(String v) throws IOException
+    {
+        byte[] bytes = v.getBytes(StandardCharsets.UTF_8);
+        ensure(5);
+        buffer.putInt(bytes.length + 1).put((byte) 1);  // version of jsonb
+        put(bytes);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException
+    {
+        ensure(4);
+        buffer.putInt(bytes.length);
+        put(bytes);
+    }
+
+    /**
+     * Starts a field, and returns the type of the column. The header and the field count are written before the first field.
+     */
+    private BinaryType beginField() throws IOException
+    {
+        if (index == 0) {
+            ensure(SIGNATURE.length + 8 + 2);
+            if (!headerWritten) {
+                buffer.put(SIGNATURE).putInt(0).putInt(0);  // flags and length of header extension
+                headerWritten = true;
+            }
+            buffer.putShort((short) types.length);
+        }
+        return types[index++];
+    }
+
+    private void ensure(int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void put(byte[] bytes) throws IOException
+    {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void drain() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private long localEpochSecond(Instant v, Calendar cal)
+    {
+        return v.getEpochSecond() + cal.getTimeZone().getOffset(v.toEpochMilli()) / 1000;
+    }
+
+    private SQLException unsupportedValue(String valueType)
+    {
+        int i = index - 1;
+        return new SQLException(String.format("Can't write %s value to column '%s' of type %s by binary COPY.",
+                    valueType, insertSchema.getColumnName(i), insertSchema.getColumn(i).getSimpleTypeName()));
+    }
+
+    private SQLException outOfRange(long v)
+    {
+        int i = index - 1;
+        return new SQLException(String.format("Value %d is out of range of column '%s' of type %s.",
+                    v, insertSchema.getColumnName(i), insertSchema.getColumn(i).getSimpleTypeName()));
+    }
+
+    private SQLException notExact(BigDecimal v)
+    {
+        int i = index - 1;
+        return new SQLException(String.format("Value %s can't be written exactly to column '%s' of type %s.",
+                    v.toPlainString(), insertSchema.getColumnName(i), insertSchema.getColumn(i).getSimpleTypeName()));
+    }
+
+    private void openNewFile() throws IOException
+    {
+        this.currentFile = File.createTempFile("embulk-output-postgres-copy-", ".bin.tmp");
+        this.out = new FileOutputStream(currentFile);
+        this.channel = out.getChannel();
+        this.fileBytes = 0;
+        this.headerWritten = false;
+    }
+
+    private File closeCurrentFile() throws IOException
+    {
+        if (out != null) {
+            if (headerWritten) {
+                ensure(2);
+                buffer.putShort((short) -1);  // trailer
+            }
+            drain();
+            out.close();
+            out = null;
+            channel = null;
+        }
+        return currentFile;
+    }
+}
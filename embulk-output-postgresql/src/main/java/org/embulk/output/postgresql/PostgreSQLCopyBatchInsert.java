@@ -8,6 +8,8 @@ import java.sql.SQLException;
 import org.embulk.output.jdbc.JdbcOutputConnector;
 import org.embulk.output.jdbc.JdbcSchema;
 import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.jdbc.jfr.EventScope;
+import org.embulk.output.jdbc.jfr.JdbcOutputEvents;
 import org.postgresql.copy.CopyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +23,7 @@ public class PostgreSQLCopyBatchInsert
     private PostgreSQLOutputConnection connection = null;
     private CopyManager copyManager = null;
     private String copySql = null;
+    private String tableName = null;
     private long totalRows;
 
     public PostgreSQLCopyBatchInsert(JdbcOutputConnector connector) throws IOException, SQLException
@@ -34,6 +37,7 @@ public class PostgreSQLCopyBatchInsert
     {
         this.connection = (PostgreSQLOutputConnection)connector.connect(true);
         this.copySql = connection.buildCopySql(loadTable, insertSchema);
+        this.tableName = loadTable.getTableName();
         this.copyManager = connection.newCopyManager();
         logger.info("Copy SQL: "+copySql);
     }
@@ -47,7 +51,8 @@ public class PostgreSQLCopyBatchInsert
         logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, file.length()));
         long startTime = System.currentTimeMillis();
         FileInputStream in = new FileInputStream(file);
-        try {
+        try (EventScope event = JdbcOutputEvents.bulkLoad("copy", tableName)) {
+            event.setRows(batchRows).setBytes(file.length());
             // TODO check age of connection and call isValid if it's old and reconnect if it's invalid
             copyManager.copyIn(copySql, in);
         } finally {
@@ -1,9 +1,15 @@
 package org.embulk.output.postgresql;
 
+import java.sql.Array;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.embulk.output.jdbc.JdbcColumn;
 import org.embulk.output.jdbc.JdbcOutputConnection;
@@ -19,10 +25,13 @@ public class PostgreSQLOutputConnection
     private static final int MIN_NUMERIC_PRECISION = 1;
     private static final int MAX_NUMERIC_PRECISION = 1000;
 
+    private final String roleName;
+
     public PostgreSQLOutputConnection(Connection connection, String schemaName, String roleName)
             throws SQLException
     {
         super(connection, schemaName);
+        this.roleName = roleName;
 
         // SET ROLE changes execution role of the session. The same syntax is available
         // in DB2. MySQL and Oracle support SET ROLE with some extensions. Redshift
@@ -33,6 +42,13 @@ public class PostgreSQLOutputConnection
         }
     }
 
+    @Override
+    public int getMaxParameterCount()
+    {
+        // the number of parameters is sent as a 16-bit signed integer in Bind messages by older drivers
+        return 32767;
+    }
+
     public String buildCopySql(TableIdentifier toTable, JdbcSchema toTableSchema)
     {
         StringBuilder sb = new StringBuilder();
@@ -50,17 +66,91 @@ public class PostgreSQLOutputConnection
         return sb.toString();
     }
 
+    public String buildBinaryCopySql(TableIdentifier toTable, JdbcSchema toTableSchema)
+    {
+        return buildCopySql(toTable, toTableSchema) + " WITH BINARY";
+    }
+
     public CopyManager newCopyManager() throws SQLException
     {
         return new CopyManager((BaseConnection) connection);
     }
 
+    @Override
+    protected void resetSession() throws SQLException
+    {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            // DISCARD ALL cannot run inside a transaction block. Auto-commit is set again when the connection is borrowed.
+            connection.setAutoCommit(true);
+        }
+
+        // drops temporary tables, prepared statements, locks and settings of the session, including search_path and role
+        Statement stmt = connection.createStatement();
+        try {
+            executeUpdate(stmt, "DISCARD ALL");
+        } finally {
+            stmt.close();
+        }
+
+        // restores transaction isolation and search_path
+        super.resetSession();
+        if (roleName != null) {
+            setRole(roleName);
+        }
+    }
+
+    @Override
+    protected String getCurrentSchemaSql()
+    {
+        return "current_schema()";
+    }
+
+    public PreparedStatement prepareUnnestMergeStatement(TableIdentifier toTable, JdbcSchema schema, MergeConfig mergeConfig) throws SQLException
+    {
+        String sql = buildUnnestMergeSql(toTable, schema, getColumnTypeNames(toTable, schema), mergeConfig);
+        logger.info("Prepared SQL: {}", sql);
+        return connection.prepareStatement(sql);
+    }
+
+    // returns type names of the columns by format_type, which are quoted and qualified by schema if necessary,
+    // and include modifiers and arrays, like character varying(10), s."Mood" and integer[].
+    protected List<String> getColumnTypeNames(TableIdentifier table, JdbcSchema schema) throws SQLException
+    {
+        String sql = "SELECT a.attname, pg_catalog.format_type(a.atttypid, a.atttypmod) FROM pg_catalog.pg_attribute a"
+                + " WHERE a.attrelid = CAST(? AS regclass) AND a.attnum > 0 AND NOT a.attisdropped";
+        logger.info("SQL: " + sql);
+        Map<String, String> typeNames = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, quoteTableIdentifier(table));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    typeNames.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < schema.getCount(); i++) {
+            String typeName = typeNames.get(schema.getColumnName(i));
+            if (typeName == null) {
+                throw new SQLException(String.format("Column '%s' is not found in %s.", schema.getColumnName(i), quoteTableIdentifier(table)));
+            }
+            result.add(typeName);
+        }
+        return result;
+    }
+
+    public Array createTextArray(String[] values) throws SQLException
+    {
+        return connection.createArrayOf("text", values);
+    }
+
     @Override
     protected String buildPreparedMergeSql(TableIdentifier toTable, JdbcSchema schema, MergeConfig mergeConfig) throws SQLException
     {
         StringBuilder sb = new StringBuilder();
 
-        sb.append("WITH S AS (");
         sb.append("SELECT ");
         for (int i = 0; i < schema.getCount(); i++) {
             JdbcColumn column = schema.getColumn(i);
@@ -68,6 +158,45 @@ public class PostgreSQLOutputConnection
             sb.append("CAST(? AS " + column.getSimpleTypeName() + ") AS ");
             quoteIdentifierString(sb, column.getName());
         }
+
+        return buildMergeSql(toTable, schema, mergeConfig, sb.toString());
+    }
+
+    // merges all rows of a batch by a statement. Each parameter is a text array of values of a column, which is
+    // unnested and cast to the column type, so that types of any name and arrays are cast from text in the same way.
+    protected String buildUnnestMergeSql(TableIdentifier toTable, JdbcSchema schema, List<String> typeNames, MergeConfig mergeConfig) throws SQLException
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("SELECT ");
+        for (int i = 0; i < schema.getCount(); i++) {
+            if (i != 0) { sb.append(", "); }
+            sb.append("CAST(U.");
+            quoteIdentifierString(sb, schema.getColumnName(i));
+            sb.append(" AS " + typeNames.get(i) + ") AS ");
+            quoteIdentifierString(sb, schema.getColumnName(i));
+        }
+        sb.append(" FROM unnest(");
+        for (int i = 0; i < schema.getCount(); i++) {
+            if (i != 0) { sb.append(", "); }
+            sb.append("CAST(? AS text[])");
+        }
+        sb.append(") AS U (");
+        for (int i = 0; i < schema.getCount(); i++) {
+            if (i != 0) { sb.append(", "); }
+            quoteIdentifierString(sb, schema.getColumnName(i));
+        }
+        sb.append(")");
+
+        return buildMergeSql(toTable, schema, mergeConfig, sb.toString());
+    }
+
+    private String buildMergeSql(TableIdentifier toTable, JdbcSchema schema, MergeConfig mergeConfig, String sourceSql) throws SQLException
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("WITH S AS (");
+        sb.append(sourceSql);
         sb.append("),");
         sb.append("updated AS (");
         sb.append("UPDATE ");
@@ -42,4 +42,10 @@ public class PostgreSQLOutputConnector
             }
         }
     }
+
+    @Override
+    protected String getConnectionPoolKey()
+    {
+        return buildConnectionPoolKey(url, properties, schemaName, roleName);
+    }
 }
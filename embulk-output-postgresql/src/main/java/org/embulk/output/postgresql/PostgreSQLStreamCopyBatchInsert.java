@@ -0,0 +1,217 @@
+package org.embulk.output.postgresql;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.sql.SQLException;
+
+import org.embulk.output.jdbc.JdbcOutputConnector;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.RetryCaptureMode;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.jdbc.jfr.EventScope;
+import org.embulk.output.jdbc.jfr.JdbcOutputEvents;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BatchInsert which streams rows to COPY while they are added, without temporary files.
+ *
+ * COPY is started by the first row of a batch and ended by flush, so that each batch is committed
+ * separately. An error while streaming is thrown by flush, and the batch is retried from the records
+ * kept by retry_capture, because rows already sent can't be sent again.
+ */
+public class PostgreSQLStreamCopyBatchInsert
+        extends AbstractPostgreSQLCopyBatchInsert
+{
+    private static final Logger logger = LoggerFactory.getLogger(PostgreSQLStreamCopyBatchInsert.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcOutputConnector connector;
+    private final CopyStream stream;
+    private final RetryCaptureMode retryCaptureMode;
+
+    private PostgreSQLOutputConnection connection = null;
+    private String tableName = null;
+    private long totalRows;
+
+    public PostgreSQLStreamCopyBatchInsert(JdbcOutputConnector connector, RetryCaptureMode retryCaptureMode)
+    {
+        this(connector, new CopyStream(BUFFER_SIZE), retryCaptureMode);
+    }
+
+    private PostgreSQLStreamCopyBatchInsert(JdbcOutputConnector connector, CopyStream stream, RetryCaptureMode retryCaptureMode)
+    {
+        super(new BufferedWriter(new OutputStreamWriter(stream, FILE_CHARSET)));
+        this.connector = connector;
+        this.stream = stream;
+        this.retryCaptureMode = retryCaptureMode;
+    }
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
+    {
+        this.connection = (PostgreSQLOutputConnection) connector.connect(true);
+        String copySql = connection.buildCopySql(loadTable, insertSchema);
+        this.tableName = loadTable.getTableName();
+        stream.prepare(connection.newCopyManager(), copySql);
+        logger.info("Copy SQL: " + copySql);
+    }
+
+    @Override
+    public int getBatchWeight()
+    {
+        // characters buffered in the writer are not counted
+        long bytes = stream.getBytes();
+        return bytes > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) bytes;
+    }
+
+    @Override
+    public void flush() throws IOException, SQLException
+    {
+        if (batchRows == 0) return;
+
+        logger.info(String.format("Loading %,d rows", batchRows));
+        long startTime = System.currentTimeMillis();
+        try (EventScope event = JdbcOutputEvents.bulkLoad("copy", tableName)) {
+            writer.flush();
+            event.setRows(batchRows).setBytes(stream.getBytes());
+            stream.endCopy();
+            totalRows += batchRows;
+        } finally {
+            // rows which were not sent are discarded, and the batch is retried from the beginning
+            stream.reset();
+            batchRows = 0;
+        }
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+        logger.info(String.format("> %.2f seconds (loaded %,d rows in total)", seconds, totalRows));
+    }
+
+    @Override
+    public RetryCaptureMode getRetryCaptureMode()
+    {
+        // the mode of retry_capture. OFF fails the batch without retry.
+        return retryCaptureMode;
+    }
+
+    @Override
+    public void finish() throws IOException, SQLException
+    {
+    }
+
+    @Override
+    public void close() throws IOException, SQLException
+    {
+        stream.reset();
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    /**
+     * OutputStream which starts COPY by the first byte and writes to it through a buffer reused for all batches.
+     * A failure to write is kept until endCopy, and following bytes are discarded.
+     */
+    private static class CopyStream
+            extends OutputStream
+    {
+        private final byte[] buffer;
+        private int position;
+        private long bytes;
+        private CopyManager copyManager;
+        private String copySql;
+        private CopyIn copyIn;
+        private SQLException failure;
+
+        CopyStream(int bufferSize)
+        {
+            this.buffer = new byte[bufferSize];
+        }
+
+        void prepare(CopyManager copyManager, String copySql)
+        {
+            this.copyManager = copyManager;
+            this.copySql = copySql;
+        }
+
+        long getBytes()
+        {
+            return bytes + position;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            if (position == buffer.length) {
+                sendBuffer();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            while (len > 0) {
+                if (position == buffer.length) {
+                    sendBuffer();
+                }
+                int n = Math.min(len, buffer.length - position);
+                System.arraycopy(b, off, buffer, position, n);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        void endCopy() throws SQLException
+        {
+            sendBuffer();
+            if (failure != null) {
+                throw failure;
+            }
+            if (copyIn != null) {
+                copyIn.endCopy();
+                copyIn = null;
+            }
+        }
+
+        void reset()
+        {
+            position = 0;
+            bytes = 0;
+            failure = null;
+            if (copyIn != null) {
+                CopyIn active = copyIn;
+                copyIn = null;
+                try {
+                    if (active.isActive()) {
+                        active.cancelCopy();
+                    }
+                } catch (SQLException ex) {
+                    logger.warn("Failed to cancel COPY: {}", ex.getMessage());
+                }
+            }
+        }
+
+        private void sendBuffer()
+        {
+            if (failure == null && position > 0) {
+                try {
+                    if (copyIn == null) {
+                        copyIn = copyManager.copyIn(copySql);
+                    }
+                    copyIn.writeToCopy(buffer, 0, position);
+                } catch (SQLException ex) {
+                    failure = ex;
+                }
+            }
+            bytes += position;
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.embulk.output.postgresql;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.embulk.output.jdbc.BatchCheckpoint;
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.BatchWeightEstimator;
+import org.embulk.output.jdbc.JdbcOutputConnector;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.MergeConfig;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BatchInsert which merges all rows of a batch by a statement, instead of a statement for each row.
+ *
+ * Values are kept as text per column, and bound as a text array for each column, which is unnested
+ * and cast to the column type in the statement. Merge keys must be unique in a batch,
+ * because the rows are merged at the same time. The whole batch fails or succeeds.
+ */
+public class PostgreSQLUnnestMergeBatchInsert
+        implements BatchInsert
+{
+    private static final Logger logger = LoggerFactory.getLogger(PostgreSQLUnnestMergeBatchInsert.class);
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final JdbcOutputConnector connector;
+    private final MergeConfig mergeConfig;
+    private final BatchWeightEstimator weightEstimator = BatchWeightEstimator.UTF_8;
+
+    private PostgreSQLOutputConnection connection;
+    private PreparedStatement statement;
+    private List<List<String>> columnValues;
+    private int index;
+    private int batchWeight;
+    private int rowWeight;
+    private int batchRows;
+    private long totalRows;
+    private int[] lastUpdateCounts = new int[]{};
+    private BatchCheckpoint checkpoint;
+
+    public PostgreSQLUnnestMergeBatchInsert(JdbcOutputConnector connector, MergeConfig mergeConfig)
+    {
+        this.connector = connector;
+        this.mergeConfig = mergeConfig;
+    }
+
+    @Override
+    public boolean setCheckpoint(BatchCheckpoint checkpoint)
+    {
+        this.checkpoint = checkpoint;
+        return true;
+    }
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
+    {
+        // each batch is committed with the checkpoint
+        this.connection = (PostgreSQLOutputConnection) connector.connect(checkpoint == null);
+        this.statement = connection.prepareUnnestMergeStatement(loadTable, insertSchema, mergeConfig);
+        this.columnValues = new ArrayList<>();
+        for (int i = 0; i < insertSchema.getCount(); i++) {
+            columnValues.add(new ArrayList<String>());
+        }
+        this.rowWeight = weightEstimator.getRowWeight(insertSchema.getCount());
+        this.index = 0;
+        this.batchRows = 0;
+        this.totalRows = 0;
+    }
+
+    @Override
+    public int getBatchWeight()
+    {
+        return batchWeight;
+    }
+
+    @Override
+    public void add() throws IOException, SQLException
+    {
+        index = 0;
+        batchRows++;
+        batchWeight += rowWeight;
+    }
+
+    @Override
+    public void close() throws IOException, SQLException
+    {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException, SQLException
+    {
+        lastUpdateCounts = new int[]{};
+
+        if (batchRows == 0) return;
+
+        logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, batchWeight));
+        long startTime = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < columnValues.size(); i++) {
+                List<String> values = columnValues.get(i);
+                statement.setArray(i + 1, connection.createTextArray(values.toArray(new String[values.size()])));
+            }
+            statement.executeUpdate();
+            if (checkpoint != null) {
+                checkpoint.commit(connection, batchRows);
+            }
+            // rows are merged by a statement, so the count of each row is unknown
+            lastUpdateCounts = new int[batchRows];
+
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            totalRows += batchRows;
+            logger.info(String.format("> %.2f seconds (loaded %,d rows in total)", seconds, totalRows));
+
+        } catch (SQLException e) {
+            // all rows of the batch failed, and are retried
+            if (checkpoint != null) {
+                throw connection.rollbackBatch(e);
+            }
+            throw e;
+
+        } finally {
+            // clear for retry
+            for (List<String> values : columnValues) {
+                values.clear();
+            }
+            batchRows = 0;
+            batchWeight = 0;
+        }
+    }
+
+    @Override
+    public int[] getLastUpdateCounts()
+    {
+        return lastUpdateCounts;
+    }
+
+    @Override
+    public void finish() throws IOException, SQLException
+    {
+    }
+
+    @Override
+    public void setNull(int sqlType) throws IOException, SQLException
+    {
+        columnValues.get(index++).add(null);
+        batchWeight += weightEstimator.getNullWeight();
+    }
+
+    @Override
+    public void setBoolean(boolean v) throws IOException, SQLException
+    {
+        setText(String.valueOf(v));
+    }
+
+    @Override
+    public void setByte(byte v) throws IOException, SQLException
+    {
+        setText(String.valueOf(v));
+    }
+
+    @Override
+    public void setShort(short v) throws IOException, SQLException
+    {
+        setText(String.valueOf(v));
+    }
+
+    @Override
+    public void setInt(int v) throws IOException, SQLException
+    {
+        setText(String.valueOf(v));
+    }
+
+    @Override
+    public void setLong(long v) throws IOException, SQLException
+    {
+        setText(String.valueOf(v));
+    }
+
+    @Override
+    public void setFloat(float v) throws IOException, SQLException
+    {
+        setText(String.valueOf(v));
+    }
+
+    @Override
+    public void setDouble(double v) throws IOException, SQLException
+    {
+        setText(String.valueOf(v));
+    }
+
+    @Override
+    public void setBigDecimal(BigDecimal v) throws IOException, SQLException
+    {
+        setText(v.toPlainString());
+    }
+
+    @Override
+    public void setString(String v) throws IOException, SQLException
+    {
+        setText(v);
+    }
+
+    @Override
+    public void setNString(String v) throws IOException, SQLException
+    {
+        setText(v);
+    }
+
+    @Override
+    public void setBytes(byte[] v) throws IOException, SQLException
+    {
+        // hex format of bytea
+        char[] chars = new char[2 + v.length * 2];
+        chars[0] = '\\';
+        chars[1] = 'x';
+        for (int i = 0; i < v.length; i++) {
+            chars[2 + i * 2] = HEX_DIGITS[(v[i] >> 4) & 0xf];
+            chars[3 + i * 2] = HEX_DIGITS[v[i] & 0xf];
+        }
+        setText(new String(chars));
+    }
+
+    @Override
+    public void setSqlDate(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        setText(AbstractPostgreSQLCopyBatchInsert.formatSqlDate(v, cal));
+    }
+
+    @Override
+    public void setSqlTime(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        setText(AbstractPostgreSQLCopyBatchInsert.formatSqlTime(v, cal));
+    }
+
+    @Override
+    public void setSqlTimestamp(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        setText(AbstractPostgreSQLCopyBatchInsert.formatSqlTimestamp(v, cal));
+    }
+
+    private void setText(String v)
+    {
+        columnValues.get(index++).add(v);
+        batchWeight += weightEstimator.getStringWeight(v);
+    }
+}
@@ -0,0 +1,133 @@
+package org.embulk.output.postgresql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.junit.Test;
+
+public class AbstractPostgreSQLCopyBatchInsertTest
+{
+    private final StringWriter output = new StringWriter();
+    private final TestBatchInsert batch = new TestBatchInsert(new BufferedWriter(output));
+
+    @Test
+    public void testEscape() throws IOException
+    {
+        batch.setString("plain");
+        batch.setString("a\\b\tc\nd\re\0f");
+        batch.setString("");
+        batch.add();
+        assertEquals("plain\ta\\\\b\\tc\\nd\\re" + "f\t\n", written());
+    }
+
+    @Test
+    public void testBytes() throws IOException
+    {
+        batch.setBytes(new byte[] {0, 10, (byte) 0x7f, (byte) 0xff});
+        batch.setBytes(new byte[0]);
+        batch.add();
+        // hex format of bytea with the backslash escaped
+        assertEquals("\\\\x000a7fff\t\\\\x\n", written());
+    }
+
+    @Test
+    public void testNumbers() throws IOException
+    {
+        batch.setByte((byte) -8);
+        batch.setShort((short) 0);
+        batch.setInt(Integer.MAX_VALUE);
+        batch.setLong(Long.MIN_VALUE);
+        batch.setLong(1234567890123L);
+        batch.add();
+        assertEquals("-8\t0\t2147483647\t-9223372036854775808\t1234567890123\n", written());
+    }
+
+    @Test
+    public void testDateTime() throws IOException
+    {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Asia/Tokyo"), Locale.ENGLISH);
+        Instant v = Instant.parse("2016-01-02T18:04:05.123456789Z");
+        batch.setSqlDate(v, cal);
+        batch.setSqlTime(v, cal);
+        batch.setSqlTimestamp(v, cal);
+        batch.add();
+        assertEquals("2016-01-03\t03:04:05.123456\t2016-01-03 03:04:05.123456+0900\n", written());
+
+        cal = Calendar.getInstance(TimeZone.getTimeZone("America/St_Johns"), Locale.ENGLISH);
+        assertEquals("2016-01-02 14:34:05.123456-0330", AbstractPostgreSQLCopyBatchInsert.formatSqlTimestamp(v, cal));
+    }
+
+    @Test
+    public void testDateTimeAcrossDaysAndTransitions() throws IOException
+    {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Europe/London"), Locale.ENGLISH);
+        Instant[] values = {
+            Instant.parse("2016-03-26T23:59:59.999999Z"),
+            Instant.parse("2016-03-27T00:59:59Z"),
+            Instant.parse("2016-03-27T01:00:00Z"),
+            Instant.parse("2016-03-27T23:00:00.5Z"),
+            Instant.parse("1200-06-01T12:00:00Z"),
+        };
+        StringBuilder expected = new StringBuilder();
+        for (Instant v : values) {
+            batch.setSqlTimestamp(v, cal);
+            batch.add();
+            expected.append(AbstractPostgreSQLCopyBatchInsert.formatSqlTimestamp(v, cal)).append('\n');
+        }
+        assertEquals(expected.toString(), written());
+        assertEquals("2016-03-27 00:59:59.000000+0000\n", expected.substring(32, 64));
+        assertEquals("2016-03-27 02:00:00.000000+0100\n", expected.substring(64, 96));
+        assertEquals("2016-03-28 00:00:00.500000+0100\n", expected.substring(96, 128));
+    }
+
+    private String written() throws IOException
+    {
+        batch.flush();
+        return output.toString();
+    }
+
+    private static class TestBatchInsert
+            extends AbstractPostgreSQLCopyBatchInsert
+    {
+        TestBatchInsert(BufferedWriter writer)
+        {
+            super(writer);
+        }
+
+        @Override
+        public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+        {
+        }
+
+        @Override
+        public int getBatchWeight()
+        {
+            return 0;
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            writer.flush();
+        }
+
+        @Override
+        public void finish()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
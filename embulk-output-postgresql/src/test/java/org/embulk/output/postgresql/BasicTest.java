@@ -86,6 +86,26 @@ public class BasicTest
         //assertThat(result1.getConfigDiff(), is((ConfigDiff) loadYamlResource(embulk, "test_expected.diff")));
     }
 
+    @Test
+    public void testStringStreamCopy() throws Exception
+    {
+        Path in1 = toPath("test_string.csv");
+        ConfigSource config = baseConfig.merge(loadYamlResource(embulk, "test_string.yml"))
+                .set("copy_method", "stream")
+                .set("retry_capture", "spill");
+        TestingEmbulk.RunResult result1 = embulk.runOutput(config, in1);
+        assertThat(selectRecords(embulk, "test_string"), is(readResource("test_string_expected.csv")));
+    }
+
+    @Test
+    public void testBinaryCopy() throws Exception
+    {
+        // values written in the binary format are read back as they are written by the text format
+        Path in1 = toPath("test_binary_copy.csv");
+        TestingEmbulk.RunResult result1 = embulk.runOutput(baseConfig.merge(loadYamlResource(embulk, "test_binary_copy.yml")), in1);
+        assertThat(selectRecords(embulk, "test_binary_copy"), is(readResource("test_binary_copy_expected.csv")));
+    }
+
     @Test
     public void testTimestamp() throws Exception
     {
@@ -128,6 +148,14 @@ public class BasicTest
         assertThat(selectRecords(embulk, "test_merge"), is(readResource("test_merge_rule_expected.csv")));
     }
 
+    @Test
+    public void testMergeUnnest() throws Exception
+    {
+        Path in1 = toPath("test_merge.csv");
+        TestingEmbulk.RunResult result1 = embulk.runOutput(baseConfig.merge(loadYamlResource(embulk, "test_merge_unnest.yml")), in1);
+        assertThat(selectRecords(embulk, "test_merge"), is(readResource("test_merge_expected.csv")));
+    }
+
     @Test
     public void testReplace() throws Exception
     {
@@ -0,0 +1,131 @@
+package org.embulk.output.postgresql;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.embulk.config.ConfigException;
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.postgresql.PostgreSQLBinaryCopyBatchInsert.BinaryType;
+import org.junit.Test;
+import org.postgresql.core.BaseConnection;
+
+public class PostgreSQLBinaryCopyBatchInsertTest
+{
+    @Test
+    public void testEncodeNumeric()
+    {
+        // ndigits, weight, sign, dscale, digits in base 10000
+        assertNumeric(new int[] {3, 1, 0, 3, 1, 2345, 6780}, "12345.678");
+        assertNumeric(new int[] {1, -1, 0x4000, 1, 5000}, "-0.5");
+        assertNumeric(new int[] {1, -2, 0, 6, 1200}, "0.000012");
+        assertNumeric(new int[] {1, 1, 0, 0, 1}, "10000");
+        assertNumeric(new int[] {1, 1, 0, 0, 12}, "1.2E+5");
+        assertNumeric(new int[] {0, 0, 0, 2}, "0.00");
+    }
+
+    @Test
+    public void testBinaryType()
+    {
+        assertEquals(BinaryType.TIMESTAMPTZ, PostgreSQLBinaryCopyBatchInsert.getBinaryType("TIMESTAMP WITH TIME ZONE"));
+        assertEquals(BinaryType.TIMESTAMP, PostgreSQLBinaryCopyBatchInsert.getBinaryType("timestamp(3) without time zone"));
+        assertEquals(BinaryType.TEXT, PostgreSQLBinaryCopyBatchInsert.getBinaryType("varchar(10)"));
+        assertEquals(BinaryType.NUMERIC, PostgreSQLBinaryCopyBatchInsert.getBinaryType("NUMERIC(10, 2)"));
+        assertEquals(BinaryType.FLOAT8, PostgreSQLBinaryCopyBatchInsert.getBinaryType("DOUBLE PRECISION"));
+        assertNull(PostgreSQLBinaryCopyBatchInsert.getBinaryType("uuid"));
+        // character(n) is reported as bpchar, and "char" is the internal 1-byte type
+        assertEquals(BinaryType.TEXT, PostgreSQLBinaryCopyBatchInsert.getBinaryType("bpchar"));
+        assertNull(PostgreSQLBinaryCopyBatchInsert.getBinaryType("char"));
+    }
+
+    @Test
+    public void testCheckColumnTypes()
+    {
+        PostgreSQLBinaryCopyBatchInsert.checkColumnTypes(new JdbcSchema(Arrays.asList(
+                JdbcColumn.newGenericTypeColumn("a", Types.INTEGER, "int4", 10, 0, false, false),
+                JdbcColumn.newGenericTypeColumn("b", Types.TIMESTAMP, "timestamptz", 35, 6, false, false))));
+        try {
+            PostgreSQLBinaryCopyBatchInsert.checkColumnTypes(new JdbcSchema(Arrays.asList(
+                    JdbcColumn.newGenericTypeColumn("a", Types.INTEGER, "int4", 10, 0, false, false),
+                    JdbcColumn.newGenericTypeColumn("b", Types.VARCHAR, "citext", 0, 0, false, false))));
+            fail();
+        } catch (ConfigException ex) {
+            assertTrue(ex.getMessage().contains("'b'"));
+        }
+    }
+
+    @Test
+    public void testDecimalToInteger() throws Exception
+    {
+        for (String value : new String[] {"1.5", "1E+20"}) {
+            PostgreSQLBinaryCopyBatchInsert batch = new PostgreSQLBinaryCopyBatchInsert(autoCommit -> newConnection());
+            batch.prepare(new TableIdentifier(null, null, "t"), new JdbcSchema(Arrays.asList(
+                    JdbcColumn.newGenericTypeColumn("a", Types.INTEGER, "int4", 10, 0, false, false))));
+            try {
+                batch.setBigDecimal(new BigDecimal("12"));
+                batch.add();
+                batch.setBigDecimal(new BigDecimal(value));
+                fail();
+            } catch (SQLException ex) {
+                // thrown with the column instead of ArithmeticException
+                assertTrue(ex.getMessage(), ex.getMessage().contains("column 'a'"));
+            } finally {
+                batch.close();
+            }
+        }
+    }
+
+    @Test
+    public void testPostgresMicros()
+    {
+        Instant epoch = Instant.parse("2000-01-01T00:00:00Z");
+        assertEquals(0L, PostgreSQLBinaryCopyBatchInsert.toPostgresMicros(epoch.getEpochSecond(), 0));
+        assertEquals(-1000000L + 999999L, PostgreSQLBinaryCopyBatchInsert.toPostgresMicros(epoch.getEpochSecond() - 1, 999999999));
+    }
+
+    private static PostgreSQLOutputConnection newConnection() throws SQLException
+    {
+        final DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(
+                PostgreSQLBinaryCopyBatchInsertTest.class.getClassLoader(), new Class<?>[] { DatabaseMetaData.class },
+                (proxy, method, args) -> "\"");
+        // BaseConnection is required by CopyManager
+        Connection connection = (Connection) Proxy.newProxyInstance(
+                PostgreSQLBinaryCopyBatchInsertTest.class.getClassLoader(), new Class<?>[] { BaseConnection.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getMetaData":
+                        return metaData;
+                    case "getAutoCommit":
+                    case "isClosed":
+                        return true;
+                    default:
+                        return null;
+                    }
+                });
+        return new PostgreSQLOutputConnection(connection, null, null);
+    }
+
+    private void assertNumeric(int[] expected, String value)
+    {
+        ByteBuffer bytes = ByteBuffer.wrap(PostgreSQLBinaryCopyBatchInsert.encodeNumeric(new BigDecimal(value)));
+        int[] actual = new int[bytes.remaining() / 2];
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = bytes.getShort();
+        }
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,115 @@
+package org.embulk.output.postgresql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.MergeConfig;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.junit.Test;
+
+public class PostgreSQLOutputConnectionTest
+{
+    private final TableIdentifier table = new TableIdentifier(null, "s", "t");
+    private final JdbcSchema schema = new JdbcSchema(Arrays.asList(
+            JdbcColumn.newGenericTypeColumn("id", Types.INTEGER, "int4", 10, 0, false, true),
+            JdbcColumn.newGenericTypeColumn("Mood", Types.VARCHAR, "\"s\".\"Mood\"", 0, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("tags", Types.ARRAY, "_text", 0, 0, false, false)));
+
+    // parameters set to prepared statements
+    private final List<Object> parameters = new ArrayList<>();
+
+    @Test
+    public void testUnnestMergeSql() throws Exception
+    {
+        PostgreSQLOutputConnection con = newConnection(null);
+        String sql = con.buildUnnestMergeSql(table, schema, Arrays.asList("integer", "s.\"Mood\"", "text[]"),
+                new MergeConfig(Arrays.asList("id"), Optional.empty()));
+        // values are unnested from text arrays and cast to the type names as they are
+        assertEquals("WITH S AS (SELECT CAST(U.\"id\" AS integer) AS \"id\", CAST(U.\"Mood\" AS s.\"Mood\") AS \"Mood\", "
+                + "CAST(U.\"tags\" AS text[]) AS \"tags\" "
+                + "FROM unnest(CAST(? AS text[]), CAST(? AS text[]), CAST(? AS text[])) AS U (\"id\", \"Mood\", \"tags\")),"
+                + "updated AS (UPDATE \"s\".\"t\" SET \"id\" = S.\"id\", \"Mood\" = S.\"Mood\", \"tags\" = S.\"tags\" "
+                + "FROM S WHERE \"s\".\"t\".\"id\" = S.\"id\" RETURNING S.\"id\") "
+                + "INSERT INTO \"s\".\"t\" (\"id\", \"Mood\", \"tags\") SELECT \"id\", \"Mood\", \"tags\" FROM S "
+                + "WHERE NOT EXISTS (SELECT 1 FROM updated WHERE S.\"id\" = updated.\"id\") ", sql);
+    }
+
+    @Test
+    public void testColumnTypeNames() throws Exception
+    {
+        // rows of attname and format_type, in the order of the table
+        PostgreSQLOutputConnection con = newConnection(Arrays.asList(
+                new String[] { "tags", "text[]" },
+                new String[] { "Mood", "s.\"Mood\"" },
+                new String[] { "id", "integer" }));
+        assertEquals(Arrays.asList("integer", "s.\"Mood\"", "text[]"), con.getColumnTypeNames(table, schema));
+        assertEquals(Arrays.<Object>asList("\"s\".\"t\""), parameters);
+    }
+
+    @Test(expected = SQLException.class)
+    public void testColumnTypeNameNotFound() throws Exception
+    {
+        PostgreSQLOutputConnection con = newConnection(Arrays.<String[]>asList(
+                new String[] { "id", "integer" }));
+        con.getColumnTypeNames(table, schema);
+    }
+
+    private PostgreSQLOutputConnection newConnection(final List<String[]> rows) throws SQLException
+    {
+        final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (proxy, method, args) -> "\"");
+        final PreparedStatement statement = proxy(PreparedStatement.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "setString":
+                parameters.add(args[1]);
+                return null;
+            case "executeQuery":
+                final Iterator<String[]> iterator = rows.iterator();
+                final String[][] current = new String[1][];
+                return proxy(ResultSet.class, (rsProxy, rsMethod, rsArgs) -> {
+                    switch (rsMethod.getName()) {
+                    case "next":
+                        current[0] = iterator.hasNext() ? iterator.next() : null;
+                        return current[0] != null;
+                    case "getString":
+                        return current[0][(Integer) rsArgs[0] - 1];
+                    default:
+                        return null;
+                    }
+                });
+            default:
+                return null;
+            }
+        });
+        Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+            case "getMetaData":
+                return metaData;
+            case "prepareStatement":
+                return statement;
+            default:
+                return null;
+            }
+        });
+        return new PostgreSQLOutputConnection(connection, null, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler)
+    {
+        return (T) Proxy.newProxyInstance(PostgreSQLOutputConnectionTest.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+}
@@ -0,0 +1,20 @@
+package org.embulk.output.postgresql;
+
+import static org.junit.Assert.assertEquals;
+
+import org.embulk.output.jdbc.RetryCaptureMode;
+import org.junit.Test;
+
+public class PostgreSQLStreamCopyBatchInsertTest
+{
+    @Test
+    public void testRetryCaptureMode() throws Exception
+    {
+        // records are kept as configured by retry_capture, because rows already sent can't be sent again
+        for (RetryCaptureMode mode : RetryCaptureMode.values()) {
+            PostgreSQLStreamCopyBatchInsert batch = new PostgreSQLStreamCopyBatchInsert(null, mode);
+            assertEquals(mode, batch.getRetryCaptureMode());
+            batch.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.embulk.output.postgresql;
+
+import static org.embulk.output.postgresql.PostgreSQLTests.execute;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.embulk.EmbulkEmbed.ResumableResult;
+import org.embulk.config.ConfigSource;
+import org.embulk.input.file.LocalFileInputPlugin;
+import org.embulk.output.PostgreSQLOutputPlugin;
+import org.embulk.output.jdbc.tester.EmbulkPluginTester;
+import org.embulk.parser.csv.CsvParserPlugin;
+import org.embulk.spi.FileInputPlugin;
+import org.embulk.spi.OutputPlugin;
+import org.embulk.spi.ParserPlugin;
+import org.embulk.test.EmbulkTests;
+import org.embulk.test.TestingEmbulk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ResumeTest
+{
+    private static final String RESUME_RESOURCE_PATH = "/org/embulk/output/postgresql/test/expect/resume/";
+
+    private static String readResource(String fileName)
+    {
+        return EmbulkTests.readResource(RESUME_RESOURCE_PATH + fileName);
+    }
+
+    // used to create temporary files
+    @Rule
+    public TestingEmbulk embulk = TestingEmbulk.builder().build();
+
+    private EmbulkPluginTester tester;
+
+    @Before
+    public void setup()
+    {
+        execute(readResource("setup.sql"));
+        tester = new EmbulkPluginTester();
+        tester.addPlugin(FileInputPlugin.class, "file", LocalFileInputPlugin.class);
+        tester.addPlugin(ParserPlugin.class, "csv", CsvParserPlugin.class);
+        tester.addPlugin(OutputPlugin.class, "postgresql", PostgreSQLOutputPlugin.class);
+    }
+
+    @After
+    public void teardown()
+    {
+        tester.destroy();
+    }
+
+    @Test
+    public void testResumeMergeDirect() throws Exception
+    {
+        execute("insert into test1 values('B001', 0, 'z')");
+
+        // A004 violates the check constraint after A001 to A003 are committed one by one
+        String yml = buildConfig("merge_direct");
+        ResumableResult result = tester.resumableRun(yml);
+        assertThat(result.isSuccessful(), is(false));
+        assertThat(selectRecords("test1"), is("A001,9,a\nA002,0,b\nA003,9,c\n"));
+
+        execute("alter table test1 drop constraint test1_int_item_check");
+        tester.resume(yml, result.getResumeState());
+
+        // before_load isn't executed again, and committed rows are not loaded twice
+        assertThat(selectRecords("test1"), is(readResource("test_resume_expected.csv")));
+        // checkpoints of the transaction are removed when it is committed
+        assertThat(selectRecords("test1_checkpoint"), is(""));
+    }
+
+    private String buildConfig(String mode) throws URISyntaxException
+    {
+        ConfigSource config = PostgreSQLTests.baseConfig();
+        return String.join("\n",
+                "in:",
+                "  type: file",
+                "  path_prefix: '" + toPath("test1.csv") + "'",
+                "  parser:",
+                "    type: csv",
+                "    columns:",
+                "      - {name: id, type: string}",
+                "      - {name: int_item, type: long}",
+                "      - {name: varchar_item, type: string}",
+                "out:",
+                "  type: postgresql",
+                "  host: " + config.get(String.class, "host"),
+                "  user: " + config.get(String.class, "user"),
+                "  password: " + config.get(String.class, "password"),
+                "  database: " + config.get(String.class, "database"),
+                "  table: test1",
+                "  mode: " + mode,
+                "  batch_size: 1",
+                "  checkpoint_table: test1_checkpoint",
+                "  before_load: 'delete from test1'",
+                "");
+    }
+
+    private String toPath(String fileName) throws URISyntaxException
+    {
+        URL url = EmbulkTests.class.getResource(RESUME_RESOURCE_PATH + fileName);
+        return new File(url.toURI()).getAbsolutePath();
+    }
+
+    private String selectRecords(String tableName) throws Exception
+    {
+        if (tableName.equals("test1")) {
+            return PostgreSQLTests.selectRecords(embulk, tableName, Arrays.asList("id", "int_item", "varchar_item"));
+        }
+        return PostgreSQLTests.selectRecords(embulk, tableName);
+    }
+}
@@ -55,3 +55,23 @@ insert into test_merge values(11, 'A1', 'B1');
 insert into test_merge values(12, 'A2', 'B2');
 insert into test_merge values(13, 'A3', 'B3');
 
+
+drop table if exists test_binary_copy;
+
+create table test_binary_copy (
+    id               int,
+    bool_item        bool,
+    smallint_item    smallint,
+    int_item         int,
+    bigint_item      bigint,
+    real_item        real,
+    double_item      double precision,
+    numeric_item     numeric(8,3),
+    text_item        text,
+    varchar_item     varchar(8),
+    jsonb_item       jsonb,
+    date_item        date,
+    time_item        time,
+    timestamp_item   timestamp,
+    primary key (id)
+);
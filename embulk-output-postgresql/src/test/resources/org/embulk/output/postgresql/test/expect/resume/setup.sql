@@ -0,0 +1,9 @@
+drop table if exists test1;
+drop table if exists test1_checkpoint;
+
+create table test1 (
+    id              char(4),
+    int_item        int constraint test1_int_item_check check (int_item < 100),
+    varchar_item    varchar(8),
+    primary key (id)
+);
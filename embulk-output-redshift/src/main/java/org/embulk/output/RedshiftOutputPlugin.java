@@ -19,10 +19,14 @@ import org.embulk.output.jdbc.BatchInsert;
 import org.embulk.output.jdbc.JdbcOutputConnection;
 import org.embulk.output.jdbc.JdbcOutputConnector;
 import org.embulk.output.jdbc.MergeConfig;
+import org.embulk.output.jdbc.OnRowError;
+import org.embulk.output.jdbc.RejectSink;
 import org.embulk.output.jdbc.TableIdentifier;
 import org.embulk.output.jdbc.Ssl;
 import org.embulk.output.redshift.RedshiftOutputConnector;
 import org.embulk.output.redshift.RedshiftCopyBatchInsert;
+import org.embulk.config.ConfigException;
+import org.embulk.spi.Schema;
 import org.embulk.util.config.Config;
 import org.embulk.util.config.ConfigDefault;
 
@@ -157,7 +161,7 @@ public class RedshiftOutputPlugin
         props.setProperty("password", t.getPassword());
         logConnectionProperties(url, props);
 
-        return new RedshiftOutputConnector(url, props, t.getSchema(), t.getTransactionIsolation());
+        return configureConnectionPool(task, new RedshiftOutputConnector(url, props, t.getSchema(), t.getTransactionIsolation()));
     }
 
     private static AWSCredentialsProvider getAWSCredentialsProvider(RedshiftPluginTask task)
@@ -200,6 +204,16 @@ public class RedshiftOutputPlugin
         return namePrefix.toLowerCase();
     }
 
+    @Override
+    protected RejectSink newRejectSink(PluginTask task, Schema schema, int taskIndex) throws SQLException
+    {
+        if (task.getOnRowError() == OnRowError.REJECT) {
+            // rows loaded by COPY from S3 can't be told apart
+            throw new ConfigException("Redshift output plugin doesn't support 'on_row_error: reject'.");
+        }
+        return null;
+    }
+
     @Override
     protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
     {
@@ -20,6 +20,8 @@ import java.util.zip.GZIPOutputStream;
 import org.embulk.output.jdbc.JdbcOutputConnector;
 import org.embulk.output.jdbc.JdbcSchema;
 import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.jdbc.jfr.EventScope;
+import org.embulk.output.jdbc.jfr.JdbcOutputEvents;
 import org.embulk.output.postgresql.AbstractPostgreSQLCopyBatchInsert;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +61,7 @@ public class RedshiftCopyBatchInsert
 
     private RedshiftOutputConnection connection = null;
     private String copySqlBeforeFrom = null;
+    private String tableName = null;
     private long totalRows;
     private int fileCount;
     private List<Future<Void>> uploadAndCopyFutures;
@@ -121,6 +124,7 @@ public class RedshiftCopyBatchInsert
     {
         this.connection = (RedshiftOutputConnection)connector.connect(true);
         this.copySqlBeforeFrom = connection.buildCopySQLBeforeFrom(loadTable, insertSchema);
+        this.tableName = loadTable.getTableName();
         logger.info("Copy SQL: "+copySqlBeforeFrom+" ? "+COPY_AFTER_FROM);
     }
 
@@ -145,7 +149,7 @@ public class RedshiftCopyBatchInsert
         Future<Void> uploadFuture = executorService.submit(uploadTask);
         uploadAndCopyFutures.add(uploadFuture);
 
-        CopyTask copyTask = new CopyTask(uploadFuture, s3KeyName);
+        CopyTask copyTask = new CopyTask(uploadFuture, s3KeyName, batchRows);
         uploadAndCopyFutures.add(executorService.submit(copyTask));
 
         fileCount++;
@@ -194,7 +198,7 @@ public class RedshiftCopyBatchInsert
     // Add \ before \, \n, \t
     // Remove \0
     @Override
-    protected String escape(char c)
+    protected String escapeSpecialCharacter(char c)
     {
         switch (c) {
         case '\n':
@@ -202,9 +206,9 @@ public class RedshiftCopyBatchInsert
         case '\t':
             return "\\\t";
         case '\r':
-            return String.valueOf(c);
+            return null;  // as is
         default:
-            return super.escape(c);
+            return super.escapeSpecialCharacter(c);
         }
     }
 
@@ -277,11 +281,13 @@ public class RedshiftCopyBatchInsert
     {
         private final Future<Void> uploadFuture;
         private final String s3KeyName;
+        private final int batchRows;
 
-        public CopyTask(Future<Void> uploadFuture, String s3KeyName)
+        public CopyTask(Future<Void> uploadFuture, String s3KeyName, int batchRows)
         {
             this.uploadFuture = uploadFuture;
             this.s3KeyName = s3KeyName;
+            this.batchRows = batchRows;
         }
 
         public Void call() throws SQLException, InterruptedException, ExecutionException {
@@ -297,7 +303,10 @@ public class RedshiftCopyBatchInsert
                     BasicSessionCredentials creds = generateReaderSessionCredentials(s3KeyName);
 
                     long startTime = System.currentTimeMillis();
-                    con.runCopy(buildCopySQL(creds));
+                    try (EventScope event = JdbcOutputEvents.bulkLoad("copy", tableName)) {
+                        event.setRows(batchRows);
+                        con.runCopy(buildCopySQL(creds));
+                    }
                     double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
 
                     logger.info(String.format("Loaded file %s (%.2f seconds for COPY)", s3KeyName, seconds));
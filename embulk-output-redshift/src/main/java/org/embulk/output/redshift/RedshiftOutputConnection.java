@@ -25,12 +25,25 @@ public class RedshiftOutputConnection
         super(connection, schemaName);
     }
 
+    @Override
+    public int getMaxParameterCount()
+    {
+        // same as PostgreSQL
+        return 32767;
+    }
+
     // ALTER TABLE cannot change the schema of a table
     //
     // Standard JDBC:
     //     ALTER TABLE "public"."source" RENAME TO "public"."target"
     // Redshift:
     //     ALTER TABLE "public"."source" RENAME TO "target"
+    @Override
+    protected String getCurrentSchemaSql()
+    {
+        return "current_schema()";
+    }
+
     @Override
     protected String buildRenameTableSql(TableIdentifier fromTable, TableIdentifier toTable)
     {
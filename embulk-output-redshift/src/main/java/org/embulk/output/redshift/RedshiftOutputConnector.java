@@ -42,4 +42,10 @@ public class RedshiftOutputConnector
             }
         }
     }
+
+    @Override
+    protected String getConnectionPoolKey()
+    {
+        return buildConnectionPoolKey(url, properties, schemaName);
+    }
 }
@@ -3,6 +3,7 @@ package org.embulk.output;
 import org.embulk.config.ConfigException;
 import org.embulk.output.jdbc.AbstractJdbcOutputPlugin;
 import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.BatchWeightEstimator;
 import org.embulk.output.jdbc.JdbcOutputConnection;
 import org.embulk.output.jdbc.JdbcOutputConnector;
 import org.embulk.output.jdbc.MergeConfig;
@@ -183,8 +184,8 @@ public class SQLServerOutputPlugin
 
         UrlAndProperties urlProps = getUrlAndProperties(sqlServerTask, useJtdsDriver);
         logConnectionProperties(urlProps.getUrl(), urlProps.getProps());
-        return new SQLServerOutputConnector(urlProps.getUrl(), urlProps.getProps(), sqlServerTask.getSchema().orElse(null),
-                sqlServerTask.getTransactionIsolation(), sqlServerTask.getProduct());
+        return configureConnectionPool(task, new SQLServerOutputConnector(urlProps.getUrl(), urlProps.getProps(), sqlServerTask.getSchema().orElse(null),
+                sqlServerTask.getTransactionIsolation(), sqlServerTask.getProduct()));
     }
 
     private UrlAndProperties getUrlAndProperties(SQLServerPluginTask sqlServerTask, boolean useJtdsDriver)
@@ -321,7 +322,8 @@ public class SQLServerOutputPlugin
                     sqlServerTask.getDatabase().get(), sqlServerTask.getUser(), sqlServerTask.getPassword(),
                     sqlServerTask.getNativeDriverName(), sqlServerTask.getDatabaseEncoding());
         }
-        return new StandardBatchInsert(getConnector(task, true), mergeConfig);
+        // Microsoft JDBC driver sends string parameters as Unicode (UTF-16) by default
+        return new StandardBatchInsert(getConnector(task, true), mergeConfig, BatchWeightEstimator.UTF_16);
     }
 
     @Override
@@ -13,9 +13,12 @@ import java.util.Optional;
 import org.embulk.output.jdbc.BatchInsert;
 import org.embulk.output.jdbc.JdbcColumn;
 import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.RetryCaptureMode;
 import org.embulk.output.jdbc.StandardBatchInsert;
 import org.embulk.output.jdbc.TableIdentifier;
 import org.embulk.output.jdbc.TimestampFormat;
+import org.embulk.output.jdbc.jfr.EventScope;
+import org.embulk.output.jdbc.jfr.JdbcOutputEvents;
 import org.embulk.output.sqlserver.nativeclient.NativeClientWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +43,7 @@ public class NativeBatchInsert implements BatchInsert
     private long totalRows;
 
     private int columnCount;
+    private String tableName;
     private int lastColumnIndex;
 
     private DateFormat[] formats;
@@ -65,6 +69,7 @@ public class NativeBatchInsert implements BatchInsert
     public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
     {
         columnCount = insertSchema.getCount();
+        tableName = loadTable.getTableName();
         client.open(server, port, instance, database, user, password,
                 loadTable.getSchemaName(), loadTable.getTableName(), nativeDriverName, databaseEncoding);
         formats = new DateFormat[insertSchema.getCount()];
@@ -224,7 +229,10 @@ public class NativeBatchInsert implements BatchInsert
         logger.info(String.format("Loading %,d rows", batchRows));
         long startTime = System.currentTimeMillis();
 
-        client.commit(false);
+        try (EventScope event = JdbcOutputEvents.bulkLoad("bcp", tableName)) {
+            event.setRows(batchRows).setBytes(batchWeight);
+            client.commit(false);
+        }
 
         double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
         totalRows += batchRows;
@@ -242,10 +250,18 @@ public class NativeBatchInsert implements BatchInsert
         return new int[]{};
     }
 
+    @Override
+    public RetryCaptureMode getRetryCaptureMode()
+    {
+        return RetryCaptureMode.OFF;
+    }
+
     @Override
     public void finish() throws IOException, SQLException
     {
-        client.commit(true);
+        try (EventScope event = JdbcOutputEvents.bulkLoad("bcp", tableName)) {
+            client.commit(true);
+        }
     }
 
     @Override
@@ -25,6 +25,19 @@ public class SQLServerOutputConnection
         this.product = product;
     }
 
+    @Override
+    public int getMaxParameterCount()
+    {
+        // SQL Server accepts 2100 parameters at most, and the driver may use one of them
+        return 2100 - 1;
+    }
+
+    @Override
+    protected String getCurrentSchemaSql()
+    {
+        return "SCHEMA_NAME()";
+    }
+
     @Override
     protected String buildRenameTableSql(TableIdentifier fromTable, TableIdentifier toTable)
     {
@@ -71,4 +71,10 @@ public class SQLServerOutputConnector
             }
         }
     }
+
+    @Override
+    protected String getConnectionPoolKey()
+    {
+        return buildConnectionPoolKey(url, properties, schemaName, product);
+    }
 }
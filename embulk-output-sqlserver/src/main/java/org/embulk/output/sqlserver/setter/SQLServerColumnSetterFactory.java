@@ -50,7 +50,7 @@ public class SQLServerColumnSetterFactory
             case "sql_variant":
             case "datetimeoffset":
                 // because jTDS driver, default JDBC driver for older embulk-output-sqlserver, returns Types.VARCHAR as JDBC type for these types.
-                return new StringColumnSetter(batch, column, newDefaultValueSetter(column, option), newTimestampFormatter(option));
+                return new StringColumnSetter(batch, column, newDefaultValueSetter(column, option), newCachedTimestampFormatter(option));
             default:
                 return super.newColumnSetter(column, option);
             }